@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.bench;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.ntru.encrypt.EncryptionParameters;
+import net.sf.ntru.sign.SignatureParameters;
+
+/**
+ * Looks up the predefined parameter sets by the name of their constant,
+ * so benchmarks can take a <code>@Param</code> string and resolve it in their setup method.
+ */
+public class ParameterSets {
+    
+    private ParameterSets() { }
+    
+    /**
+     * Returns the <code>EncryptionParameters</code> constant with a given name.
+     * @param name the name of a constant in {@link EncryptionParameters}, for example <code>APR2011_439_FAST</code>
+     * @return the parameter set
+     * @throws IllegalArgumentException if there is no such constant
+     */
+    public static EncryptionParameters encryption(String name) {
+        return lookup(EncryptionParameters.class, name);
+    }
+    
+    /**
+     * Returns the <code>SignatureParameters</code> constant with a given name.
+     * @param name the name of a constant in {@link SignatureParameters}, for example <code>APR2011_439_PROD</code>
+     * @return the parameter set
+     * @throws IllegalArgumentException if there is no such constant
+     */
+    public static SignatureParameters signature(String name) {
+        return lookup(SignatureParameters.class, name);
+    }
+    
+    /**
+     * Returns <code>N</code> and <code>q</code> for an encryption or signature parameter set.
+     * Encryption parameter sets take precedence if both classes define a constant with the same name.
+     * @param name the name of a constant in {@link EncryptionParameters} or {@link SignatureParameters}
+     * @return an array containing <code>N</code> and <code>q</code>
+     * @throws IllegalArgumentException if neither class has such a constant
+     */
+    public static int[] dimensions(String name) {
+        if (names(EncryptionParameters.class).contains(name)) {
+            EncryptionParameters params = encryption(name);
+            return new int[] {params.N, params.q};
+        }
+        else {
+            SignatureParameters params = signature(name);
+            return new int[] {params.N, signatureQ(params)};
+        }
+    }
+    
+    /** <code>SignatureParameters.q</code> is package-private, so read it reflectively. */
+    private static int signatureQ(SignatureParameters params) {
+        try {
+            Field qField = SignatureParameters.class.getDeclaredField("q");
+            qField.setAccessible(true);
+            return qField.getInt(params);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Returns the names of all <code>public static final</code> fields of a given type.
+     * @param type a parameter class
+     * @return a list of constant names in declaration order
+     */
+    public static <T> List<String> names(Class<T> type) {
+        List<String> names = new ArrayList<String>();
+        for (Field field: type.getFields()) {
+            int mod = field.getModifiers();
+            if (Modifier.isStatic(mod) && Modifier.isFinal(mod) && field.getType()==type)
+                names.add(field.getName());
+        }
+        return names;
+    }
+    
+    private static <T> T lookup(Class<T> type, String name) {
+        try {
+            Field field = type.getField(name);
+            if (field.getType() != type)
+                throw new IllegalArgumentException(name + " is not a " + type.getSimpleName());
+            return type.cast(field.get(null));
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("Unknown parameter set: " + name, e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ntru.bench.ParameterSets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks key generation, encryption, and decryption for all predefined {@link EncryptionParameters}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NtruEncryptBenchmark {
+    private static final int BATCH_SIZE = 256;
+    
+    @Param({"EES1087EP2", "EES1087EP2_FAST", "EES1171EP1", "EES1171EP1_FAST", "EES1499EP1", "EES1499EP1_FAST",
+            "APR2011_439", "APR2011_439_FAST", "APR2011_743", "APR2011_743_FAST"})
+    public String paramSet;
+    
+    private NtruEncrypt ntru;
+    private EncryptionKeyPair kp;
+    private PreparedPublicKey preparedPub;
+    private PreparedPrivateKey preparedKp;
+    private byte[] plainText;
+    private byte[] encrypted;
+    private List<byte[]> batch;
+    
+    @Setup
+    public void setup() {
+        EncryptionParameters params = ParameterSets.encryption(paramSet);
+        ntru = new NtruEncrypt(params);
+        kp = ntru.generateKeyPair();
+        plainText = new byte[Math.min(32, params.getMaxMessageLength())];
+        for (int i=0; i<plainText.length; i++)
+            plainText[i] = (byte)i;
+        encrypted = ntru.encrypt(plainText, kp.getPublic());
+        preparedPub = new PreparedPublicKey(kp.getPublic(), params);
+        preparedKp = new PreparedPrivateKey(kp, params);
+        batch = new ArrayList<byte[]>();
+        for (int i=0; i<BATCH_SIZE; i++)
+            batch.add(plainText);
+    }
+    
+    @Benchmark
+    public EncryptionKeyPair generateKeyPair() {
+        return ntru.generateKeyPair();
+    }
+    
+    @Benchmark
+    public EncryptionKeyPair generateKeyPairSingleThread() {
+        return ntru.generateKeyPairSingleThread();
+    }
+    
+    @Benchmark
+    public byte[] encrypt() {
+        return ntru.encrypt(plainText, kp.getPublic());
+    }
+    
+    @Benchmark
+    public byte[] encryptPrepared() {
+        return ntru.encrypt(plainText, preparedPub);
+    }
+    
+    /** Encrypts with one shared instance from as many threads as there are processors */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] encryptConcurrent() {
+        return ntru.encrypt(plainText, preparedPub);
+    }
+    
+    /** Reports the time per message so the result is comparable to {@link #encrypt()} */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<byte[]> encryptBatch() {
+        return ntru.encryptBatch(batch, kp.getPublic());
+    }
+    
+    @Benchmark
+    public byte[] decrypt() {
+        return ntru.decrypt(encrypted, kp);
+    }
+    
+    @Benchmark
+    public byte[] decryptPrepared() {
+        return ntru.decrypt(encrypted, preparedKp);
+    }
+}
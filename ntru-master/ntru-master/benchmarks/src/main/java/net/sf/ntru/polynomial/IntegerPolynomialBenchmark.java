@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ntru.bench.ParameterSets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the expensive <code>IntegerPolynomial</code> operations for the <code>N</code> and <code>q</code>
+ * of every predefined encryption and signature parameter set.<br/>
+ * The inputs are fixed per trial and chosen so that the inverses exist, which keeps retry loops out of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegerPolynomialBenchmark {
+    @Param({"EES1087EP2", "EES1087EP2_FAST", "EES1171EP1", "EES1171EP1_FAST", "EES1499EP1", "EES1499EP1_FAST",
+            "APR2011_439", "APR2011_439_FAST", "APR2011_743", "APR2011_743_FAST",
+            "APR2011_439_PROD", "APR2011_743_PROD", "TEST157", "TEST157_PROD"})
+    public String paramSet;
+    
+    private int q;
+    private IntegerPolynomial a;
+    private IntegerPolynomial b;
+    private IntegerPolynomial invertibleModQ;
+    private IntegerPolynomial invertibleMod3;
+    
+    @Setup
+    public void setup() {
+        int[] dims = ParameterSets.dimensions(paramSet);
+        int N = dims[0];
+        q = dims[1];
+        Random rng = new Random(N);
+        
+        a = randomModQ(N, q, rng);
+        b = randomModQ(N, q, rng);
+        do {
+            invertibleModQ = DenseTernaryPolynomial.generateRandom(N, N/3, N/3-1, rng);
+        } while (invertibleModQ.invertFq(q) == null);
+        do {
+            invertibleMod3 = DenseTernaryPolynomial.generateRandom(N, N/3, N/3-1, rng);
+        } while (invertibleMod3.invertF3() == null);
+    }
+    
+    private static IntegerPolynomial randomModQ(int N, int q, Random rng) {
+        IntegerPolynomial p = new IntegerPolynomial(N);
+        for (int i=0; i<N; i++)
+            p.coeffs[i] = rng.nextInt(q);
+        return p;
+    }
+    
+    @Benchmark
+    public IntegerPolynomial mult() {
+        return a.mult(b, q);
+    }
+    
+    @Benchmark
+    public IntegerPolynomial invertFq() {
+        return invertibleModQ.invertFq(q);
+    }
+    
+    @Benchmark
+    public IntegerPolynomial invertF3() {
+        return invertibleMod3.invertF3();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Resultant resultant() {
+        return invertibleModQ.resultant();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Resultant resultantMultiThread() {
+        return invertibleModQ.resultantMultiThread();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link PolynomialMultiplier} implementations. A random polynomial mod 2048 is multiplied by
+ * another one mod 2048, which takes two NTT primes, and by a ternary polynomial, which takes one prime.
+ * The results are used to determine {@link CrossoverMultiplier#DEFAULT_CROSSOVER} and
+ * {@link CrossoverMultiplier#DEFAULT_CROSSOVER_SMALL}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolynomialMultiplierBenchmark {
+    @Param({"107", "251", "439", "743", "887", "1087", "1171", "1499", "2048"})
+    public int N;
+    
+    @Param({"karatsuba", "ntt"})
+    public String algorithm;
+    
+    private PolynomialMultiplier multiplier;
+    private int[] a;
+    private int[] b;
+    private int[] ternary;
+    
+    @Setup
+    public void setup() {
+        multiplier = "ntt".equals(algorithm) ? new NttMultiplier() : new KaratsubaMultiplier();
+        Random rng = new Random(N);
+        a = new int[N];
+        b = new int[N];
+        ternary = new int[N];
+        for (int i=0; i<N; i++) {
+            a[i] = rng.nextInt(2048);
+            b[i] = rng.nextInt(2048);
+            ternary[i] = rng.nextInt(3) - 1;
+        }
+    }
+    
+    @Benchmark
+    public int[] multModQ() {
+        return multiplier.multiply(a, b);
+    }
+    
+    @Benchmark
+    public int[] multTernary() {
+        return multiplier.multiply(a, ternary);
+    }
+}
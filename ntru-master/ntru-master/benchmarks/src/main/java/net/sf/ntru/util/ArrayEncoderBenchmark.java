@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ntru.bench.ParameterSets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks mod <code>q</code> and SVES mod 3 encoding and decoding, which happen on every encryption and decryption.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayEncoderBenchmark {
+    @Param({"EES1087EP2", "EES1087EP2_FAST", "EES1171EP1", "EES1171EP1_FAST", "EES1499EP1", "EES1499EP1_FAST",
+            "APR2011_439", "APR2011_439_FAST", "APR2011_743", "APR2011_743_FAST",
+            "APR2011_439_PROD", "APR2011_743_PROD", "TEST157", "TEST157_PROD"})
+    public String paramSet;
+    
+    private int N;
+    private int q;
+    private int[] coeffs;
+    private byte[] encoded;
+    private int[] trits;
+    private byte[] encodedTrits;
+    
+    @Setup
+    public void setup() {
+        int[] dims = ParameterSets.dimensions(paramSet);
+        N = dims[0];
+        q = dims[1];
+        Random rng = new Random(N);
+        coeffs = new int[N];
+        for (int i=0; i<N; i++)
+            coeffs[i] = rng.nextInt(q);
+        encoded = ArrayEncoder.encodeModQ(coeffs, q);
+        encodedTrits = new byte[ArrayEncoder.getMod3SvesLength(N)];
+        rng.nextBytes(encodedTrits);
+        trits = ArrayEncoder.decodeMod3Sves(encodedTrits, N, true);
+    }
+    
+    @Benchmark
+    public byte[] encodeModQ() {
+        return ArrayEncoder.encodeModQ(coeffs, q);
+    }
+    
+    @Benchmark
+    public int[] decodeModQ() {
+        return ArrayEncoder.decodeModQ(encoded, N, q);
+    }
+    
+    @Benchmark
+    public byte[] encodeMod3Sves() {
+        return ArrayEncoder.encodeMod3Sves(trits, true);
+    }
+    
+    @Benchmark
+    public int[] decodeMod3Sves() {
+        return ArrayEncoder.decodeMod3Sves(encodedTrits, N, true);
+    }
+}
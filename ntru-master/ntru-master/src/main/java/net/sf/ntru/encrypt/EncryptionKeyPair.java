@@ -104,7 +104,7 @@ public class EncryptionKeyPair {
         
         if (priv.t.toIntegerPolynomial().coeffs.length != N)
             return false;
-        IntegerPolynomial h = pub.h.toIntegerPolynomial();
+        IntegerPolynomial h = pub.getH();
         if (h.coeffs.length != N)
             return false;
         
@@ -34,15 +34,21 @@ import java.io.OutputStream;
 
 import net.sf.ntru.exception.NtruException;
 import net.sf.ntru.polynomial.IntegerPolynomial;
+import net.sf.ntru.polynomial.ShortPolynomial;
 import net.sf.ntru.util.ArrayEncoder;
 
 /**
- * A NtruEncrypt public key is essentially a polynomial named <code>h</code>.
+ * A NtruEncrypt public key is essentially a polynomial named <code>h</code>.<br/>
+ * If <code>q</code> is a power of 2 no greater than <code>2^16</code>, which is the case for all predefined
+ * parameter sets, <code>h</code> is stored in a {@link ShortPolynomial} to save memory.
  */
 public class EncryptionPublicKey {
     int N;
     int q;
-    IntegerPolynomial h;
+    /** <code>h</code> if <code>q</code> is supported by <code>ShortPolynomial</code>, <code>null</code> otherwise */
+    ShortPolynomial hShort;
+    /** <code>h</code> if <code>q</code> is not supported by <code>ShortPolynomial</code>, <code>null</code> otherwise */
+    IntegerPolynomial hInt;
 
     /**
      * Constructs a new public key from a polynomial
@@ -51,7 +57,12 @@ public class EncryptionPublicKey {
      * @param q the "big" NtruEncrypt modulus
      */
     EncryptionPublicKey(IntegerPolynomial h, int N, int q) {
-        this.h = h;
+        if (ShortPolynomial.isSupported(q)) {
+            hShort = new ShortPolynomial(h);
+            hShort.mod(q);
+        }
+        else
+            hInt = h;
         this.N = N;
         this.q = q;
     }
@@ -76,19 +87,37 @@ public class EncryptionPublicKey {
         try {
             N = dataStream.readShort();
             q = dataStream.readShort();
-            h = IntegerPolynomial.fromBinary(dataStream, N, q);
+            if (ShortPolynomial.isSupported(q))
+                hShort = ShortPolynomial.fromBinary(dataStream, N, q);
+            else
+                hInt = IntegerPolynomial.fromBinary(dataStream, N, q);
         } catch (IOException e) {
             throw new NtruException(e);
         }
     }
     
+    /**
+     * Returns the polynomial <code>h</code>.
+     * @return a new <code>IntegerPolynomial</code>; changing it does not change the key
+     */
+    IntegerPolynomial getH() {
+        if (hShort == null)
+            return hInt.clone();
+        
+        // ShortPolynomial.toIntegerPolynomial() sign-extends, which would turn coefficients >=2^15 negative
+        int[] coeffs = new int[hShort.coeffs.length];
+        for (int i=0; i<coeffs.length; i++)
+            coeffs[i] = hShort.coeffs[i] & 0xFFFF;
+        return new IntegerPolynomial(coeffs);
+    }
+    
     /**
      * Converts the key to a byte array
      * @return the encoded key
      * @see #EncryptionPublicKey(byte[])
      */
     public byte[] getEncoded() {
-        return ArrayEncoder.concatenate(ArrayEncoder.toByteArray(N), ArrayEncoder.toByteArray(q), h.toBinary(q));
+        return ArrayEncoder.concatenate(ArrayEncoder.toByteArray(N), ArrayEncoder.toByteArray(q), hShort!=null ? hShort.toBinary(q) : hInt.toBinary(q));
     }
     
     /**
@@ -106,7 +135,8 @@ public class EncryptionPublicKey {
         final int prime = 31;
         int result = 1;
         result = prime * result + N;
-        result = prime * result + ((h == null) ? 0 : h.hashCode());
+        result = prime * result + ((hShort == null) ? 0 : hShort.hashCode());
+        result = prime * result + ((hInt == null) ? 0 : hInt.hashCode());
         result = prime * result + q;
         return result;
     }
@@ -122,10 +152,15 @@ public class EncryptionPublicKey {
         EncryptionPublicKey other = (EncryptionPublicKey) obj;
         if (N != other.N)
             return false;
-        if (h == null) {
-            if (other.h != null)
+        if (hShort == null) {
+            if (other.hShort != null)
+                return false;
+        } else if (!hShort.equals(other.hShort))
+            return false;
+        if (hInt == null) {
+            if (other.hInt != null)
                 return false;
-        } else if (!h.equals(other.h))
+        } else if (!hInt.equals(other.hInt))
             return false;
         if (q != other.q)
             return false;
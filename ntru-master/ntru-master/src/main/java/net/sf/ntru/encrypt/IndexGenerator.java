@@ -26,7 +26,7 @@
 
 package net.sf.ntru.encrypt;
 
-import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -35,14 +35,22 @@ import net.sf.ntru.exception.NtruException;
 
 /**
  * An implementation of the Index Generation Function IGF-2
- * in IEEE P1363.1 section 8.4.2.1.
+ * in IEEE P1363.1 section 8.4.2.1.<br/>
+ * Hash outputs are appended to a bit buffer made of <code>long</code>s, and indices are read from the end of the
+ * buffer <code>c</code> bits at a time. The hash input and output arrays are allocated once per index generator.
  */
 public class IndexGenerator {
     private int N;
     private int c;
-    private byte[] Z;
-    private int remLen;
-    private BitString buf;
+    /** indices less than this are accepted, the rest are discarded so all indices are equally likely */
+    private int limit;
+    /** <code>ceil(2^40/N)</code>, for computing <code>i%N</code> without a division */
+    private long nInv;
+    private byte[] hashInput;   // the seed followed by a 4-byte counter
+    private byte[] hash;
+    /** bit <code>i</code> of the buffer is bit <code>i%64</code> of <code>bits[i/64]</code> */
+    private long[] bits;
+    private int numBits;
     private int counter;
     private MessageDigest hashAlg;
     private int hLen;
@@ -54,29 +62,78 @@ public class IndexGenerator {
      * @throws NtruException if the JRE doesn't implement the specified hash algorithm
      */
     IndexGenerator(byte[] seed, EncryptionParameters params) {
+        this(seed, params, createDigest(params.hashAlg));
+    }
+    
+    /**
+     * Constructs a new index generator that uses an existing message digest.
+     * @param seed a seed of arbitrary length to initialize the index generator with
+     * @param params NtruEncrypt parameters
+     * @param hashAlg a message digest for <code>params.hashAlg</code>; must not be used by another thread while this index generator is in use
+     */
+    IndexGenerator(byte[] seed, EncryptionParameters params, MessageDigest hashAlg) {
         N = params.N;
         c = params.c;
+        limit = (1<<c) - (1<<c)%N;
+        nInv = ((1L<<40)+N-1) / N;
         int minCallsR = params.minCallsR;
         
+        this.hashAlg = hashAlg;
+        hLen = hashAlg.getDigestLength();   // hash length
+        
+        hashInput = Arrays.copyOf(seed, seed.length+4);
+        hash = new byte[hLen];
+        
+        // the buffer holds the initial hashes, or fewer than c bits plus one more hash
+        int maxBits = Math.max(minCallsR*8*hLen, c-1+8*hLen);
+        bits = new long[maxBits/64 + 2];
+        counter = 0;
+        while (counter < minCallsR)
+            appendHash();
+    }
+    
+    private static MessageDigest createDigest(String algorithm) {
         try {
-            hashAlg = MessageDigest.getInstance(params.hashAlg);
+            return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new NtruException(e);
         }
-        hLen = hashAlg.getDigestLength();   // hash length
+    }
+    
+    /** Computes <code>H(Z||counter)</code>, appends it to the bit buffer, and increments the counter. */
+    private void appendHash() {
+        int zLen = hashInput.length - 4;
+        hashInput[zLen] = (byte)(counter >>> 24);
+        hashInput[zLen+1] = (byte)(counter >>> 16);
+        hashInput[zLen+2] = (byte)(counter >>> 8);
+        hashInput[zLen+3] = (byte)counter;
+        hashAlg.update(hashInput, 0, hashInput.length);
+        try {
+            hashAlg.digest(hash, 0, hLen);
+        } catch (DigestException e) {
+            throw new NtruException(e);
+        }
+        counter++;
         
-        Z = seed;
-        counter = 0;
-        buf = new BitString();
-        while (counter < minCallsR) {
-            ByteBuffer hashInput = ByteBuffer.allocate(Z.length + 4);
-            hashInput.put(Z);
-            hashInput.putInt(counter);
-            byte[] H = hashAlg.digest(hashInput.array());
-            buf.appendBits(H);
-            counter++;
+        // clear everything past the end of the buffer
+        int wordIdx = numBits / 64;
+        bits[wordIdx] &= (1L<<(numBits%64)) - 1;
+        for (int i=wordIdx+1; i<bits.length; i++)
+            bits[i] = 0;
+        
+        // append the hash in 64-bit chunks, first byte = lowest bits
+        for (int i=0; i<hLen; i+=8) {
+            int chunkLen = Math.min(8, hLen-i);
+            long chunk = 0;
+            for (int j=chunkLen-1; j>=0; j--)
+                chunk = (chunk<<8) | (hash[i+j]&0xFF);
+            int shift = numBits % 64;
+            wordIdx = numBits / 64;
+            bits[wordIdx] |= chunk << shift;
+            if (shift != 0)
+                bits[wordIdx+1] |= chunk >>> (64-shift);
+            numBits += 8 * chunkLen;
         }
-        remLen = minCallsR * 8 * hLen;
     }
     
     /**
@@ -85,138 +142,157 @@ public class IndexGenerator {
      */
     public int nextIndex() {
         while (true) {
-            if (remLen < c) {
-                BitString M = buf.getTrailing(remLen);
-                int tmpLen = c - remLen;
-                int cThreshold = counter + (tmpLen+hLen-1)/hLen;
-                while (counter < cThreshold) {
-                    ByteBuffer hashInput = ByteBuffer.allocate(Z.length + 4);
-                    hashInput.put(Z);
-                    hashInput.putInt(counter);
-                    byte[] H = hashAlg.digest(hashInput.array());
-                    M.appendBits(H);
-                    counter++;
-                    remLen += 8 * hLen;
-                }
-                buf = M;
-            }
-            
-            int i = buf.pop(c);   // assume c<32
-            remLen -= c;
-            if (i < (1<<c)-((1<<c)%N))
+            int i = nextCandidate();
+            if (i < limit)
                 return i % N;
         }
     }
     
     /**
-     * Represents a string of bits and supports appending, reading the head, and reading the tail.
+     * Removes the last <code>c</code> bits from the buffer, appending a hash first if there are not enough.
+     * Whether a hash is appended only depends on the number of candidates read so far, not on their values.
+     * @return a number between <code>0</code> and <code>2^c-1</code>
      */
-    static class BitString {
-        private static int INITIAL_SIZE = 4;
-        
-        byte[] bytes = new byte[INITIAL_SIZE];
-        private int numBytes;   // includes the last byte even if only some of its bits are used
-        private int lastByteBits;   // lastByteBits <= 8
+    private int nextCandidate() {
+        if (numBits < c)
+            appendHash();
         
-        /**
-         * Appends all bits in a byte array to the end of the bit string.
-         * @param bytes a byte array
-         */
-        private void appendBits(byte[] bytes) {
-            for (byte b: bytes)
-                appendBits(b);
-        }
-        
-        /**
-         * Appends all bits in a byte to the end of the bit string.
-         * @param b a byte
-         */
-        void appendBits(byte b) {
-            if (numBytes == bytes.length)
-                bytes = Arrays.copyOf(bytes, Math.max(2*bytes.length, INITIAL_SIZE));
-            
-            if (numBytes == 0) {
-                numBytes = 1;
-                bytes[0] = b;
-                lastByteBits = 8;
-            }
-            else if (lastByteBits == 8)
-                bytes[numBytes++] = b;
-            else {
-                int s = 8 - lastByteBits;
-                bytes[numBytes-1] |= (b&0xFF) << lastByteBits;
-                bytes[numBytes++] = (byte)((b&0xFF) >> s);
+        numBits -= c;
+        int wordIdx = numBits / 64;
+        int shift = numBits % 64;
+        long i = bits[wordIdx] >>> shift;
+        if (shift+c > 64)
+            i |= bits[wordIdx+1] << (64-shift);
+        return (int)(i & ((1<<c)-1));   // assume c<32
+    }
+    
+    /**
+     * Generates the indices of a blinding polynomial with <code>dr</code> ones and <code>dr</code> negative ones
+     * in a single pass. Indices that have already been generated are skipped.
+     * @param dr the number of ones / negative ones
+     * @return an array of length <code>2*dr</code> containing the indices of the ones followed by the indices of the negative ones
+     */
+    public int[] nextBlindingIndices(int dr) {
+        int[] indices = new int[2*dr];
+        boolean[] used = new boolean[N];
+        int t = 0;
+        while (t < indices.length) {
+            int i = nextIndex();
+            if (!used[i]) {
+                used[i] = true;
+                indices[t] = i;
+                t++;
             }
         }
+        return indices;
+    }
+    
+    /**
+     * Generates one or more blinding polynomials, one after the other, from the same index sequence.
+     * The result is the same as calling {@link #nextBlindingIndices(int)} for each polynomial and
+     * setting the coefficients at the indices, but the index candidates are processed without branching
+     * on their values or using them as array indices, so the running time does not reveal the polynomials.
+     * This matters in decryption, which derives the blinding polynomial from the secret message.<br/>
+     * To make this possible, a fixed number of candidates is read, which is enough for all polynomials
+     * except with a probability below <code>2^-64</code>. In that case, more candidates are read until
+     * all polynomials are complete.<br/>
+     * Unlike {@link #nextBlindingIndices(int)}, this method may read past the last index it uses, so the
+     * index generator should not be used afterwards.
+     * @param dr the number of ones and negative ones of each polynomial
+     * @param negOnesFirst if <code>true</code>, the first <code>dr</code> indices of each polynomial become
+     *                     negative ones and the next <code>dr</code> ones; if <code>false</code>, the other way around
+     * @return the coefficients of the polynomials, each array of length <code>N</code>
+     */
+    public int[][] nextBlindingCoeffs(int[] dr, boolean negOnesFirst) {
+        int numPolys = dr.length;
+        int numWords = (N+63) / 64;
+        long[][] firstBits = new long[numPolys][numWords];   // the first dr indices of each polynomial
+        long[][] secondBits = new long[numPolys][numWords];   // the next dr indices
+        int[] numIndices = new int[numPolys];
         
-        /**
-         * Returns the last <code>numBits</code> bits from the end of the bit string.
-         * @param numBits number of bits
-         * @return a new <code>BitString</code> of length <code>numBits</code>
-         */
-        BitString getTrailing(int numBits) {
-            BitString newStr = new BitString();
-            newStr.numBytes = (numBits+7) / 8;
-            newStr.bytes = new byte[newStr.numBytes];
-            for (int i=0; i<newStr.numBytes; i++)
-                newStr.bytes[i] = bytes[i];
+        int numCandidates = numCandidates(dr);
+        for (int m=0; m<numCandidates || !isComplete(numIndices, dr); m++) {
+            int i = nextCandidate();
+            long valid = (i-limit) >> 31;   // all ones if i<limit
+            int idx = (int)((i*nInv) >>> 40);   // i/N
+            idx = i - idx*N;
+            int wordIdx = idx >>> 6;
+            long bit = 1L << (idx&63);
             
-            newStr.lastByteBits = numBits % 8;
-            if (newStr.lastByteBits == 0)
-                newStr.lastByteBits = 8;
-            else {
-                int s = 32 - newStr.lastByteBits;
-                newStr.bytes[newStr.numBytes-1] = (byte)(newStr.bytes[newStr.numBytes-1] << s >>> s);
+            // the candidate goes to the first polynomial that isn't complete
+            long prevDone = -1;
+            for (int k=0; k<numPolys; k++) {
+                long done = mask(numIndices[k]-2*dr[k]);
+                long active = valid & prevDone & ~done;
+                prevDone &= done;
+                
+                // look for idx among the indices of polynomial k without indexing by idx
+                long[] first = firstBits[k];
+                long[] second = secondBits[k];
+                long used = 0;
+                for (int w=0; w<numWords; w++)
+                    used |= (first[w]|second[w]) & mask(w^wordIdx);
+                used &= bit;
+                long accept = active & ~(-used>>63);   // -used>>63 is all ones if used!=0
+                
+                long isFirst = accept & ((numIndices[k]-dr[k]) >> 31);   // all ones if numIndices[k]<dr[k]
+                long isSecond = accept & ~isFirst;
+                for (int w=0; w<numWords; w++) {
+                    long wordMask = mask(w^wordIdx);
+                    first[w] |= bit & wordMask & isFirst;
+                    second[w] |= bit & wordMask & isSecond;
+                }
+                numIndices[k] += (int)(accept & 1);
             }
-            
-            return newStr;
         }
         
-        /**
-         * Returns up to 32 bits from the beginning of the bit string,
-         * and removes those bits from the bit string.
-         * @param numBits number of bits
-         * @return an <code>int</code> whose lower <code>numBits</code> bits are the beginning of the bit string
-         */
-        int pop(int numBits) {
-            int i = getLeadingAsInt(numBits);
-            truncate(numBits);
-            return i;
-        }
-        
-        /**
-         * Returns up to 32 bits from the beginning of the bit string.
-         * @param numBits number of bits
-         * @return an <code>int</code> whose lower <code>numBits</code> bits are the beginning of the bit string
-         */
-        int getLeadingAsInt(int numBits) {
-            int startBit = (numBytes-1)*8 + lastByteBits - numBits;
-            int startByte = startBit / 8;
-            
-            int startBitInStartByte = startBit % 8;
-            int sum = (bytes[startByte]&0xFF) >>> startBitInStartByte;
-            int shift = 8 - startBitInStartByte;
-            for (int i=startByte+1; i<numBytes-1; i++) {
-                sum |= (bytes[i]&0xFF) << shift;
-                shift += 8;
+        int[][] coeffs = new int[numPolys][N];
+        int firstValue = negOnesFirst ? -1 : 1;
+        for (int k=0; k<numPolys; k++)
+            for (int j=0; j<N; j++) {
+                int f = (int)(firstBits[k][j>>>6] >>> (j&63)) & 1;
+                int s = (int)(secondBits[k][j>>>6] >>> (j&63)) & 1;
+                coeffs[k][j] = (f-s) * firstValue;
             }
-            int finalBits = numBits - shift;   // #bits in the final byte
-            sum |= (bytes[numBytes-1] & (0xFF>>>(8-finalBits))) << shift;   // append finalBits more bits
-            
-            return sum;
-        }
-        
-        /**
-         * Removes a given number of bits from the end of the bit string.
-         * @param numBits number of bits to remove
-         */
-        void truncate(int numBits) {
-            numBytes -= numBits / 8;
-            lastByteBits -= numBits % 8;
-            if (lastByteBits < 0) {
-                lastByteBits += 8;
-                numBytes--;
+        return coeffs;
+    }
+    
+    private static boolean isComplete(int[] numIndices, int[] dr) {
+        for (int k=0; k<dr.length; k++)
+            if (numIndices[k] < 2*dr[k])
+                return false;
+        return true;
+    }
+    
+    /** Returns all ones if <code>x=0</code>, zero otherwise */
+    private static long mask(int x) {
+        return ~((long)(x|-x) >> 63);
+    }
+    
+    /**
+     * Returns a number of candidates that yields <code>dr[k]</code> ones and negative ones for each polynomial
+     * except with a probability below <code>2^-64</code>.<br/>
+     * The number of candidates needed is a sum of geometric random variables, one for each index, whose success
+     * probability is the chance of a candidate being below <code>limit</code> and not a duplicate. The tail bound
+     * <code>P(X &gt;= l*E[X]) &lt;= exp(-pMin*E[X]*(l-1-ln(l)))</code> from Janson, "Tail bounds for sums of
+     * geometric and exponential variables" (2018), gives the factor <code>l</code>.
+     */
+    private int numCandidates(int[] dr) {
+        double pValid = (double)limit / (1<<c);
+        double expected = 0;
+        double pMin = 1;
+        for (int k=0; k<dr.length; k++)
+            for (int j=0; j<2*dr[k]; j++) {
+                double p = pValid * (N-j) / N;
+                expected += 1 / p;
+                pMin = Math.min(pMin, p);
             }
-        }
+        if (expected == 0)
+            return 0;
+        
+        double l = 1;
+        while (pMin*expected*(l-1-Math.log(l)) < 64*Math.log(2))
+            l += 0.05;
+        return (int)Math.ceil(l*expected);
     }
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ntru.exception.NtruException;
+import net.sf.ntru.util.PlatformUtil;
+
+/**
+ * Keeps a bounded inventory of pre-generated encryption key pairs.<br/>
+ * Key generation takes tens of milliseconds and varies a lot because of the retry loops for
+ * invertibility. A pool moves that cost off the caller's path: worker threads generate key pairs
+ * in the background until the inventory is full, and refill it whenever a key pair is taken.
+ * {@link #take()} returns a ready key pair without waiting as long as the inventory is not empty.<br/>
+ * Each key pair is handed out only once. Instances are thread-safe.
+ */
+public class KeyPairPool {
+    /** how long a worker waits after the first failure; the wait doubles with each consecutive failure */
+    private static final long MIN_BACKOFF_MILLIS = 10;
+    /** the longest a worker waits before retrying a failed key generation */
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+    
+    private NtruEncrypt ntru;
+    private BlockingQueue<EncryptionKeyPair> inventory;
+    private ExecutorService executor;
+    private boolean ownExecutor;
+    private List<Future<?>> workers;
+    private volatile boolean shutdown;
+    private volatile RuntimeException lastFailure;
+    
+    /**
+     * Constructs a new pool and starts filling it in the background, using its own daemon threads.
+     * @param params encryption parameters
+     * @param capacity the maximum number of key pairs kept in the inventory
+     * @param numThreads the number of worker threads that generate key pairs
+     */
+    public KeyPairPool(EncryptionParameters params, int capacity, int numThreads) {
+        this(params, capacity, numThreads, PlatformUtil.createDaemonExecutor(numThreads, "NtruEncrypt key pool"), true);
+    }
+    
+    /**
+     * Constructs a new pool and starts filling it in the background, using threads from an existing executor.<br/>
+     * The executor must be able to run <code>numThreads</code> tasks concurrently in addition to its other work,
+     * because each worker occupies a thread until the pool is shut down. {@link #shutdown()} stops the workers
+     * but does not shut down the executor.
+     * @param params encryption parameters
+     * @param capacity the maximum number of key pairs kept in the inventory
+     * @param numThreads the number of workers to submit to the executor
+     * @param executor the executor that runs the workers
+     */
+    public KeyPairPool(EncryptionParameters params, int capacity, int numThreads, ExecutorService executor) {
+        this(params, capacity, numThreads, executor, false);
+    }
+    
+    private KeyPairPool(EncryptionParameters params, int capacity, int numThreads, ExecutorService executor, boolean ownExecutor) {
+        this(new NtruEncrypt(params), capacity, numThreads, executor, ownExecutor);
+    }
+    
+    /**
+     * Constructs a new pool that generates key pairs with a given <code>NtruEncrypt</code> instance.
+     * @param ntru the <code>NtruEncrypt</code> instance that generates the key pairs
+     * @param capacity the maximum number of key pairs kept in the inventory
+     * @param numThreads the number of workers to submit to the executor
+     * @param executor the executor that runs the workers
+     * @param ownExecutor whether {@link #shutdown()} should shut down the executor
+     */
+    KeyPairPool(NtruEncrypt ntru, int capacity, int numThreads, ExecutorService executor, boolean ownExecutor) {
+        if (capacity < 1)
+            throw new NtruException("Invalid capacity: " + capacity);
+        if (numThreads < 1)
+            throw new NtruException("Invalid number of threads: " + numThreads);
+        this.ntru = ntru;
+        inventory = new ArrayBlockingQueue<EncryptionKeyPair>(capacity);
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        workers = new ArrayList<Future<?>>(numThreads);
+        for (int i=0; i<numThreads; i++)
+            workers.add(executor.submit(new Worker()));
+    }
+    
+    /**
+     * Returns a key pair from the inventory. If the inventory is empty, a new key pair is generated
+     * in the calling thread, so this method never waits for the workers.
+     * @return a key pair that has not been returned before
+     */
+    public EncryptionKeyPair take() {
+        EncryptionKeyPair kp = inventory.poll();
+        if (kp == null)
+            kp = ntru.generateKeyPair();
+        return kp;
+    }
+    
+    /**
+     * Returns a key pair from the inventory, waiting up to a given time for one to become available.
+     * @param timeout how long to wait
+     * @param unit the unit of <code>timeout</code>
+     * @return a key pair, or <code>null</code> if none became available in time
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public EncryptionKeyPair poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return inventory.poll(timeout, unit);
+    }
+    
+    /**
+     * Returns the number of key pairs that are currently available without waiting.
+     * @return the size of the inventory
+     */
+    public int size() {
+        return inventory.size();
+    }
+    
+    /**
+     * Returns the most recent exception thrown while generating a key pair in the background.<br/>
+     * The workers keep running after a failure, waiting longer after each consecutive failure, so a pool
+     * whose inventory doesn't fill up can be diagnosed with this method.
+     * @return the last exception, or <code>null</code> if key generation has never failed
+     */
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+    
+    /**
+     * Stops the background workers and discards all key pairs in the inventory.<br/>
+     * {@link #take()} can still be called after shutdown; it then always generates a new key pair.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Future<?> worker: workers)
+            worker.cancel(true);
+        if (ownExecutor)
+            executor.shutdownNow();
+        inventory.clear();
+    }
+    
+    /**
+     * Generates key pairs until the pool is shut down, blocking while the inventory is full.
+     * A failed key generation is recorded and retried after a wait that doubles with each consecutive
+     * failure, so a failure that always recurs does not keep a core busy.
+     */
+    private class Worker implements Runnable {
+        
+        @Override
+        public void run() {
+            try {
+                long backoff = MIN_BACKOFF_MILLIS;
+                while (!shutdown) {
+                    EncryptionKeyPair kp;
+                    try {
+                        kp = ntru.generateKeyPairSingleThread();
+                    } catch (RuntimeException e) {
+                        lastFailure = e;
+                        Thread.sleep(backoff);
+                        backoff = Math.min(2*backoff, MAX_BACKOFF_MILLIS);
+                        continue;
+                    }
+                    backoff = MIN_BACKOFF_MILLIS;
+                    inventory.put(kp);
+                    if (shutdown)
+                        inventory.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
\ No newline at end of file
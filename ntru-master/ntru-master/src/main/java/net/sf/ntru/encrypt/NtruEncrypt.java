@@ -26,15 +26,24 @@
 
 package net.sf.ntru.encrypt;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import net.sf.ntru.encrypt.EncryptionParameters.TernaryPolynomialType;
@@ -45,14 +54,55 @@ import net.sf.ntru.polynomial.Polynomial;
 import net.sf.ntru.polynomial.PolynomialGenerator;
 import net.sf.ntru.polynomial.ProductFormPolynomial;
 import net.sf.ntru.polynomial.SparseTernaryPolynomial;
+import net.sf.ntru.util.ArrayEncoder;
+import net.sf.ntru.util.PlatformUtil;
 
 /**
  * Encrypts, decrypts data and generates key pairs.<br/>
- * The parameter p is hardcoded to 3.
+ * The parameter p is hardcoded to 3.<br/>
+ * Instances are thread-safe, provided the parameters are not modified after construction. Each thread that
+ * uses an instance gets its own message digest and <code>SecureRandom</code>, which are created on first use
+ * and reused for all subsequent operations in that thread, so a single instance can be shared by any number
+ * of threads without contention.
  */
 public class NtruEncrypt {
+    /** The number of messages a batch encryption task processes at a time */
+    private static final int BATCH_CHUNK_SIZE = 32;
+    
+    /** The base-3 digits of <code>0..242</code>, least significant first, with 2 represented as -1; five per number */
+    private static final byte[] TRITS = new byte[243*5];
+    static {
+        for (int O=0; O<243; O++) {
+            int n = O;
+            for (int j=0; j<5; j++) {
+                int rem3 = n % 3;
+                TRITS[5*O+j] = (byte)(rem3==2 ? -1 : rem3);
+                n /= 3;
+            }
+        }
+    }
+    
+    /** One random number generator per thread for encryption and key generation */
+    private static final ThreadLocal<SecureRandom> RNG = new ThreadLocal<SecureRandom>() {
+        @Override
+        protected SecureRandom initialValue() {
+            return new SecureRandom();
+        }
+    };
+    
+    /** Generates <code>g</code> in parallel with <code>f</code> during key generation; shared by all instances */
+    private static final ExecutorService KEYGEN_EXECUTOR = PlatformUtil.createDaemonExecutor(Runtime.getRuntime().availableProcessors(), "NtruEncrypt keygen");
+    
     private EncryptionParameters params;
     
+    /** One message digest for <code>params.hashAlg</code> per thread */
+    private ThreadLocal<MessageDigest> digest = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            return createDigest();
+        }
+    };
+    
     /**
      * Constructs a new instance with a set of encryption parameters.
      * @param params encryption parameters
@@ -66,7 +116,7 @@ public class NtruEncrypt {
      * @return a key pair
      */
     public EncryptionKeyPair generateKeyPair() {
-        return generateKeyPair(new SecureRandom(), true);
+        return generateKeyPair(RNG.get(), true);
     }
     
     /**
@@ -74,7 +124,7 @@ public class NtruEncrypt {
      * @return a key pair
      */
     public EncryptionKeyPair generateKeyPairSingleThread() {
-        return generateKeyPair(new SecureRandom(), false);
+        return generateKeyPair(RNG.get(), false);
     }
     
     /**
@@ -109,7 +159,7 @@ public class NtruEncrypt {
      */
     public byte[] generateSalt() {
         byte[] salt = new byte[16];
-        new SecureRandom().nextBytes(salt);
+        RNG.get().nextBytes(salt);
         return salt;
     }
     
@@ -149,9 +199,7 @@ public class NtruEncrypt {
                     return generateG(rngg);
                 }
             };
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            gResult = executor.submit(gTask);
-            executor.shutdown();
+            gResult = KEYGEN_EXECUTOR.submit(gTask);
         }
         else
             g = generateG(rngg);
@@ -234,44 +282,180 @@ public class NtruEncrypt {
      * @throws NtruException if the JRE doesn't implement the specified hash algorithm, the message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
      */
     public byte[] encrypt(byte[] m, EncryptionPublicKey pubKey) {
-        IntegerPolynomial pub = pubKey.h;
+        return encrypt(m, new PreparedPublicKey(pubKey, params), digest.get(), RNG.get());
+    }
+    
+    /**
+     * Encrypts a message using a public key whose derived values have been precomputed.<br/>
+     * See P1363.1 section 9.2.2.
+     * @param m The message to encrypt
+     * @param pubKey the prepared public key to encrypt the message with
+     * @return the encrypted message
+     * @throws NtruException if the key was prepared for different parameters, the JRE doesn't implement the specified hash algorithm, the message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
+     */
+    public byte[] encrypt(byte[] m, PreparedPublicKey pubKey) {
+        checkParams(pubKey);
+        return encrypt(m, pubKey, digest.get(), RNG.get());
+    }
+    
+    /**
+     * Encrypts the remaining bytes of a buffer and writes the result to another buffer.<br/>
+     * The plain text is read directly into the message representative and the cipher text is encoded
+     * directly into <code>dst</code>, so no intermediate arrays are created for the input or output.
+     * Both heap and direct buffers are supported.<br/>
+     * See P1363.1 section 9.2.2.
+     * @param src the message to encrypt; all remaining bytes are consumed
+     * @param dst receives the encrypted message; must have at least {@link EncryptionParameters#getOutputLength()} bytes remaining
+     * @param pubKey the public key to encrypt the message with
+     * @return the number of bytes written to <code>dst</code>
+     * @throws BufferOverflowException if <code>dst</code> is too small; neither buffer is modified in this case
+     * @throws NtruException if the JRE doesn't implement the specified hash algorithm, the message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
+     */
+    public int encrypt(ByteBuffer src, ByteBuffer dst, EncryptionPublicKey pubKey) {
+        return encrypt(src, dst, new PreparedPublicKey(pubKey, params));
+    }
+    
+    /**
+     * Like {@link #encrypt(ByteBuffer, ByteBuffer, EncryptionPublicKey)} but with a prepared public key.
+     * @param src the message to encrypt; all remaining bytes are consumed
+     * @param dst receives the encrypted message; must have at least {@link EncryptionParameters#getOutputLength()} bytes remaining
+     * @param pubKey the prepared public key to encrypt the message with
+     * @return the number of bytes written to <code>dst</code>
+     * @throws BufferOverflowException if <code>dst</code> is too small; neither buffer is modified in this case
+     * @throws NtruException if the key was prepared for different parameters, the JRE doesn't implement the specified hash algorithm, the message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
+     */
+    public int encrypt(ByteBuffer src, ByteBuffer dst, PreparedPublicKey pubKey) {
+        checkParams(pubKey);
+        int outputLength = params.getOutputLength();
+        if (dst.remaining() < outputLength)
+            throw new BufferOverflowException();
+        
+        int l = src.remaining();
+        byte[] M = createRepresentative(l);
+        src.get(M, params.db/8+1, l);
+        IntegerPolynomial R = encrypt(M, l, pubKey, digest.get(), RNG.get());
+        ArrayEncoder.encodeModQ(R.coeffs, params.q, dst);
+        return outputLength;
+    }
+    
+    /**
+     * Encrypts a number of messages with the same public key.<br/>
+     * The public key is prepared only once for all messages (see {@link PreparedPublicKey}), and each thread reuses its
+     * message digest and random number generator. If more than one virtual processor is available,
+     * the messages are encrypted in parallel.
+     * @param messages the messages to encrypt
+     * @param pubKey the public key to encrypt the messages with
+     * @return the encrypted messages, in the same order as <code>messages</code>
+     * @throws NtruException if the JRE doesn't implement the specified hash algorithm, a message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
+     * @see #encrypt(byte[], EncryptionPublicKey)
+     */
+    public List<byte[]> encryptBatch(List<byte[]> messages, EncryptionPublicKey pubKey) {
+        PreparedPublicKey pub = new PreparedPublicKey(pubKey, params);
+        
+        int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), (messages.size()+BATCH_CHUNK_SIZE-1)/BATCH_CHUNK_SIZE);
+        if (numThreads <= 1)
+            return new BatchTask(messages, pub).call();
+        
+        ExecutorService executor = createBatchExecutor(numThreads);
+        try {
+            List<Future<List<byte[]>>> results = new ArrayList<Future<List<byte[]>>>();
+            for (int i=0; i<numThreads; i++) {
+                int start = i * messages.size() / numThreads;
+                int end = (i+1) * messages.size() / numThreads;
+                results.add(executor.submit(new BatchTask(messages.subList(start, end), pub)));
+            }
+            
+            List<byte[]> encrypted = new ArrayList<byte[]>(messages.size());
+            for (Future<List<byte[]>> result: results)
+                encrypted.addAll(getBatchResult(result));
+            return encrypted;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Encrypts a stream of messages with the same public key.<br/>
+     * Like {@link #encryptBatch(List, EncryptionPublicKey)}, the public key is processed only once, and
+     * messages are encrypted in parallel if more than one virtual processor is available. Messages are read
+     * from <code>messages</code> in chunks as the returned iterator is advanced, so only a bounded number of
+     * messages are held in memory at any time.
+     * @param messages the messages to encrypt
+     * @param pubKey the public key to encrypt the messages with
+     * @return an iterator over the encrypted messages, in the same order as <code>messages</code>
+     * @throws NtruException (when advancing the iterator) if the JRE doesn't implement the specified hash algorithm, a message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
+     * @see #encrypt(byte[], EncryptionPublicKey)
+     */
+    public Iterator<byte[]> encryptBatch(Iterator<byte[]> messages, EncryptionPublicKey pubKey) {
+        return new BatchIterator(messages, new PreparedPublicKey(pubKey, params));
+    }
+    
+    /**
+     * Encrypts a message using precomputed public key data.
+     * @param m the message to encrypt
+     * @param pub the prepared public key
+     * @param hashAlg a message digest for <code>params.hashAlg</code>
+     * @param rng the source of randomness for the <code>b</code> bits
+     * @return the encrypted message
+     */
+    private byte[] encrypt(byte[] m, PreparedPublicKey pub, MessageDigest hashAlg, SecureRandom rng) {
+        int l = m.length;
+        byte[] M = createRepresentative(l);
+        System.arraycopy(m, 0, M, params.db/8+1, l);
+        return encrypt(M, l, pub, hashAlg, rng).toBinary(params.q);
+    }
+    
+    /**
+     * Allocates the message representative <code>M = b|octL|m|p0</code> for a message of length <code>l</code>
+     * and sets <code>octL</code>. The message must be copied to <code>M</code> by the caller.
+     * @param l the message length
+     * @return a new array of length <code>bufferLenBits/8</code>
+     * @throws NtruException if the message is longer than <code>maxLenBytes</code>, or <code>maxLenBytes</code> is greater than 255
+     */
+    private byte[] createRepresentative(int l) {
+        int maxLenBytes = params.maxMsgLenBytes;
+        if (maxLenBytes > 255)
+            throw new NtruException("llen values bigger than 1 are not supported");
+        if (l > maxLenBytes)
+            throw new NtruException("Message too long: " + l + ">" + maxLenBytes);
+        
+        byte[] M = new byte[(params.bufferLenBits+7)/8];
+        M[params.db/8] = (byte)l;
+        return M;
+    }
+    
+    /**
+     * Encrypts a message representative.
+     * @param M the message representative <code>b|octL|m|p0</code> with <code>m</code> and <code>octL</code> filled in; <code>b</code> is overwritten
+     * @param l the message length
+     * @param pub the prepared public key
+     * @param hashAlg a message digest for <code>params.hashAlg</code>
+     * @param rng the source of randomness for the <code>b</code> bits
+     * @return the cipher text polynomial
+     */
+    private IntegerPolynomial encrypt(byte[] M, int l, PreparedPublicKey pub, MessageDigest hashAlg, SecureRandom rng) {
         int N = params.N;
         int q = params.q;
-        int maxLenBytes = params.maxMsgLenBytes;
         int db = params.db;
-        int bufferLenBits = params.bufferLenBits;
         int dm0 = params.dm0;
         int maxM1 = params.maxM1;
         int minCallsMask = params.minCallsMask;
         boolean hashSeed = params.hashSeed;
         
-        int l = m.length;
-        if (maxLenBytes > 255)
-            throw new NtruException("llen values bigger than 1 are not supported");
-        if (l > maxLenBytes)
-            throw new NtruException("Message too long: " + l + ">" + maxLenBytes);
-        
-        SecureRandom rng = new SecureRandom();
+        byte[] b = new byte[db/8];
         while (true) {
-            // M = b|octL|m|p0
-            byte[] b = new byte[db/8];
             rng.nextBytes(b);
-            byte[] p0 = new byte[maxLenBytes+1-l];
-            ByteBuffer mBuf = ByteBuffer.allocate((bufferLenBits+7)/8);
-            mBuf.put(b);
-            mBuf.put((byte)l);
-            mBuf.put(m);
-            mBuf.put(p0);
-            byte[] M = mBuf.array();
+            System.arraycopy(b, 0, M, 0, b.length);
             
             IntegerPolynomial mTrin = IntegerPolynomial.fromBinary3Sves(M, N, maxM1>0);   // don't use the constant coeff if maxM1 is set; see below
             
-            byte[] sData = getSeed(m, pub, b);
+            byte[] sData = getSeed(M, l, pub.hTrunc);
             
-            Polynomial r = generateBlindingPoly(sData);
-            IntegerPolynomial R = r.mult(pub, q);
+            Polynomial r = generateBlindingPoly(sData, hashAlg);
+            IntegerPolynomial R = pub.mult(r);
             byte[] oR4 = R.toBinary4();
-            IntegerPolynomial mask = MGF(oR4, N, minCallsMask, hashSeed);
+            IntegerPolynomial mask = MGF(oR4, N, minCallsMask, hashSeed, hashAlg);
             mTrin.add(mask);
             
             // If df and dr are close to N/3, and the absolute value of mTrin.sumCoeffs() is
@@ -284,57 +468,192 @@ public class NtruEncrypt {
                 mTrin.coeffs[0] = 0;
             }
             
-            mTrin.mod3();
-            
-            if (mTrin.count(-1) < dm0)
-                continue;
-            if (mTrin.count(0) < dm0)
-                continue;
-            if (mTrin.count(1) < dm0)
+            // reduce mod 3 and count -1s, 0s, and 1s in one pass
+            int[] counts = mTrin.center0Mod3(3);
+            if (counts[0]<dm0 || counts[1]<dm0 || counts[2]<dm0)
                 continue;
             
             R.add(mTrin, q);
             R.ensurePositive(q);
-            return R.toBinary(q);
+            return R;
+        }
+    }
+    
+    /**
+     * @throws NtruException if a prepared key was prepared for parameters other than <code>params</code>
+     */
+    private void checkParams(PreparedPublicKey pubKey) {
+        if (pubKey.params!=params && !pubKey.params.equals(params))
+            throw new NtruException("The key was prepared for different parameters");
+    }
+    
+    /**
+     * @return a new message digest for <code>params.hashAlg</code>
+     * @throws NtruException if the JRE doesn't implement the specified hash algorithm
+     */
+    private MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(params.hashAlg);
+        } catch (NoSuchAlgorithmException e) {
+            throw new NtruException(e);
+        }
+    }
+    
+    /**
+     * Creates a thread pool for batch encryption. The threads are daemon threads and terminate
+     * when idle, so an abandoned {@link BatchIterator} doesn't keep the JVM alive.
+     */
+    private ExecutorService createBatchExecutor(int numThreads) {
+        return PlatformUtil.createDaemonExecutor(numThreads, "NtruEncrypt batch");
+    }
+    
+    /** Waits for a batch task and rethrows its exception, if any */
+    private List<byte[]> getBatchResult(Future<List<byte[]>> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NtruException)
+                throw (NtruException)e.getCause();
+            throw new NtruException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NtruException(e);
+        }
+    }
+    
+    /** Encrypts a list of messages using the message digest and random number generator of the executing thread */
+    private class BatchTask implements Callable<List<byte[]>> {
+        private List<byte[]> messages;
+        private PreparedPublicKey pub;
+        
+        private BatchTask(List<byte[]> messages, PreparedPublicKey pub) {
+            this.messages = messages;
+            this.pub = pub;
+        }
+        
+        @Override
+        public List<byte[]> call() {
+            MessageDigest hashAlg = digest.get();
+            SecureRandom rng = RNG.get();
+            List<byte[]> encrypted = new ArrayList<byte[]>(messages.size());
+            for (byte[] m: messages)
+                encrypted.add(encrypt(m, pub, hashAlg, rng));
+            return encrypted;
+        }
+    }
+    
+    /**
+     * Reads messages in chunks of {@link NtruEncrypt#BATCH_CHUNK_SIZE}, encrypts them in a thread pool,
+     * and returns the results in order. At most two chunks per thread are in progress at any time.
+     */
+    private class BatchIterator implements Iterator<byte[]> {
+        private Iterator<byte[]> messages;
+        private PreparedPublicKey pub;
+        private ExecutorService executor;
+        private int maxPending;
+        private LinkedList<Future<List<byte[]>>> pending;
+        private Iterator<byte[]> current;
+        
+        private BatchIterator(Iterator<byte[]> messages, PreparedPublicKey pub) {
+            this.messages = messages;
+            this.pub = pub;
+            int numThreads = Runtime.getRuntime().availableProcessors();
+            if (numThreads > 1)
+                executor = createBatchExecutor(numThreads);
+            maxPending = 2 * numThreads;
+            pending = new LinkedList<Future<List<byte[]>>>();
+            current = Collections.<byte[]>emptyList().iterator();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (executor == null) {
+                    // single processor: encrypt the next chunk in the calling thread
+                    if (!messages.hasNext())
+                        return false;
+                    current = new BatchTask(nextChunk(), pub).call().iterator();
+                }
+                else {
+                    while (pending.size()<maxPending && messages.hasNext())
+                        pending.add(executor.submit(new BatchTask(nextChunk(), pub)));
+                    if (pending.isEmpty()) {
+                        executor.shutdown();
+                        return false;
+                    }
+                    try {
+                        current = getBatchResult(pending.removeFirst()).iterator();
+                    } catch (NtruException e) {
+                        executor.shutdownNow();
+                        throw e;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        private List<byte[]> nextChunk() {
+            List<byte[]> chunk = new ArrayList<byte[]>(BATCH_CHUNK_SIZE);
+            while (chunk.size()<BATCH_CHUNK_SIZE && messages.hasNext())
+                chunk.add(messages.next());
+            return chunk;
+        }
+        
+        @Override
+        public byte[] next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
     }
 
     /**
      * Generates a seed for the Blinding Polynomial Generation Function.
-     * @param m the plain-text message
-     * @param pub the public key
-     * @param b <code>db</code> bits of random data
+     * @param M a message representative <code>b|octL|m|p0</code>
+     * @param l the length of the plain-text message <code>m</code>
+     * @param hTrunc the truncated public key
      * @return a byte array containing a seed value
      */
-    private byte[] getSeed(byte[] m, IntegerPolynomial pub, byte[] b) {
+    private byte[] getSeed(byte[] M, int l, byte[] hTrunc) {
         byte[] oid = params.oid;
+        int bLen = params.db / 8;
         
-        byte[] hTrunc = pub.toBinaryTrunc(params.q, params.pkLen/8);
         // sData = OID|m|b|hTrunc
-        byte[] sData = new byte[oid.length + m.length + b.length + hTrunc.length];
+        byte[] sData = new byte[oid.length + l + bLen + hTrunc.length];
         System.arraycopy(oid, 0, sData, 0, oid.length);
         int start = oid.length;
-        System.arraycopy(m, 0, sData, start, m.length);
-        start += m.length;
-        System.arraycopy(b, 0, sData, start, b.length);
-        start += b.length;
+        System.arraycopy(M, bLen+1, sData, start, l);
+        start += l;
+        System.arraycopy(M, 0, sData, start, bLen);
+        start += bLen;
         System.arraycopy(hTrunc, 0, sData, start, hTrunc.length);
         return sData;
     }
     
     /**
-     * Deterministically generates a blinding polynomial from a seed and a message representative.
+     * Deterministically generates a blinding polynomial from a seed and a message representative.<br/>
+     * The indices are generated with {@link IndexGenerator#nextBlindingCoeffs(int[], boolean)}. Sparse and
+     * product-form polynomials are then converted to index lists, which depends on the indices, so decryption
+     * uses {@link #generateBlindingCoeffs(byte[], MessageDigest)} instead.
      * @param seed
+     * @param hashAlg a message digest for <code>params.hashAlg</code>
      * @return a blinding polynomial
      */
-    private Polynomial generateBlindingPoly(byte[] seed) {
+    private Polynomial generateBlindingPoly(byte[] seed, MessageDigest hashAlg) {
         int N = params.N;
-        IndexGenerator ig = new IndexGenerator(seed, params);
+        IndexGenerator ig = new IndexGenerator(seed, params, hashAlg);
         
         if (params.polyType == TernaryPolynomialType.PRODUCT) {
-            SparseTernaryPolynomial r1 = SparseTernaryPolynomial.generateBlindingPoly(ig, N, params.dr1);
-            SparseTernaryPolynomial r2 = SparseTernaryPolynomial.generateBlindingPoly(ig, N, params.dr2);
-            SparseTernaryPolynomial r3 = SparseTernaryPolynomial.generateBlindingPoly(ig, N, params.dr3);
+            // r1, r2, and r3 come from the same index sequence, so they are generated together
+            int[][] r = ig.nextBlindingCoeffs(new int[] {params.dr1, params.dr2, params.dr3}, false);
+            SparseTernaryPolynomial r1 = new SparseTernaryPolynomial(r[0]);
+            SparseTernaryPolynomial r2 = new SparseTernaryPolynomial(r[1]);
+            SparseTernaryPolynomial r3 = new SparseTernaryPolynomial(r[2]);
             return new ProductFormPolynomial(r1, r2, r3);
         }
         else
@@ -345,71 +664,101 @@ public class NtruEncrypt {
     }
     
     /**
-     * An implementation of MGF-TP-1 from P1363.1 section 8.4.1.1.
+     * Generates the same blinding polynomial as {@link #generateBlindingPoly(byte[], MessageDigest)} as
+     * coefficient arrays, without branching on or indexing by the coefficients.
+     * @param seed
+     * @param hashAlg a message digest for <code>params.hashAlg</code>
+     * @return the coefficients of <code>r</code>, or of <code>r1</code>, <code>r2</code>, and <code>r3</code>
+     *         if <code>r=r1*r2+r3</code>
+     * @see PreparedPublicKey#mult(int[][])
+     */
+    private int[][] generateBlindingCoeffs(byte[] seed, MessageDigest hashAlg) {
+        IndexGenerator ig = new IndexGenerator(seed, params, hashAlg);
+        if (params.polyType == TernaryPolynomialType.PRODUCT)
+            return ig.nextBlindingCoeffs(new int[] {params.dr1, params.dr2, params.dr3}, false);
+        else
+            // DenseTernaryPolynomial.generateBlindingPoly puts the negative ones first, SparseTernaryPolynomial doesn't
+            return ig.nextBlindingCoeffs(new int[] {params.dr}, !params.sparse);
+    }
+    
+    /**
+     * An implementation of MGF-TP-1 from P1363.1 section 8.4.1.1.<br/>
+     * Each hash byte less than <code>3^5</code> is turned into five coefficients by a table lookup.
+     * If the first <code>minCallsMask</code> hashes do not yield <code>N</code> coefficients, more hashes are
+     * computed one at a time and their coefficients are appended.
      * @param seed
      * @param N
      * @param minCallsMask
      * @param hashSeed whether to hash the seed
+     * @param hashAlg a message digest for <code>params.hashAlg</code>
      * @return
-     * @throws NtruException if the JRE doesn't implement the specified hash algorithm
      */
-    private IntegerPolynomial MGF(byte[] seed, int N, int minCallsMask, boolean hashSeed) {
-        MessageDigest hashAlg;
-        try {
-            hashAlg = MessageDigest.getInstance(params.hashAlg);
-        } catch (NoSuchAlgorithmException e) {
-            throw new NtruException(e);
-        }
-        
+    static IntegerPolynomial MGF(byte[] seed, int N, int minCallsMask, boolean hashSeed, MessageDigest hashAlg) {
         int hashLen = hashAlg.getDigestLength();
-        ByteBuffer buf = ByteBuffer.allocate(minCallsMask*hashLen);
+        byte[] buf = new byte[Math.max(minCallsMask, 1) * hashLen];
         byte[] Z = hashSeed ? hashAlg.digest(seed) : seed;
+        byte[] hashInput = Arrays.copyOf(Z, Z.length+4);
         int counter = 0;
         while (counter < minCallsMask) {
-            ByteBuffer hashInput = ByteBuffer.allocate(Z.length + 4);
-            hashInput.put(Z);
-            hashInput.putInt(counter);
-            byte[] hash = hashAlg.digest(hashInput.array());
-            buf.put(hash);
+            hash(hashInput, counter, hashAlg, buf, counter*hashLen);
             counter++;
         }
+        int bufLen = minCallsMask * hashLen;
         
-        IntegerPolynomial i = new IntegerPolynomial(N);
+        int[] coeffs = new int[N];
+        int cur = 0;
         while (true) {
-            int cur = 0;
-            for (byte o: buf.array()) {
-                int O = (int)o & 0xFF;
+            for (int j=0; j<bufLen; j++) {
+                int O = buf[j] & 0xFF;
                 if (O >= 243)   // 243 = 3^5
                     continue;
                 
-                for (int terIdx=0; terIdx<4; terIdx++) {
-                    int rem3 = O % 3;
-                    i.coeffs[cur] = rem3==2 ? -1 : rem3;   /* reduce to [-1..1] */
-                    cur++;
-                    if (cur == N)
-                        return i;
-                    O = (O-rem3) / 3;
+                int tritIdx = 5 * O;
+                if (cur+5 < N) {
+                    coeffs[cur] = TRITS[tritIdx];
+                    coeffs[cur+1] = TRITS[tritIdx+1];
+                    coeffs[cur+2] = TRITS[tritIdx+2];
+                    coeffs[cur+3] = TRITS[tritIdx+3];
+                    coeffs[cur+4] = TRITS[tritIdx+4];
+                    cur += 5;
+                }
+                else {
+                    while (cur < N)
+                        coeffs[cur++] = TRITS[tritIdx++];
+                    return new IntegerPolynomial(coeffs);
                 }
-                
-                i.coeffs[cur] = O==2 ? -1 : O;   /* reduce to [-1..1] */
-                cur++;
-                if (cur == N)
-                    return i;
             }
             
-            if (cur >= N)
-                return i;
-            
-            buf = ByteBuffer.allocate(hashLen);
-            ByteBuffer hashInput = ByteBuffer.allocate(Z.length + 4);
-            hashInput.put(Z);
-            hashInput.putInt(counter);
-            byte[] hash = hashAlg.digest(hashInput.array());
-            buf.put(hash);
+            // the first hashLen bytes of buf are reused for each additional hash; cur is not reset, so the new
+            // coefficients are appended (the original code restarted at cur=0 here and never returned)
+            hash(hashInput, counter, hashAlg, buf, 0);
+            bufLen = hashLen;
             counter++;
         }
     }
-
+    
+    /**
+     * Computes <code>H(Z||counter)</code>.
+     * @param hashInput <code>Z</code> followed by four bytes that are overwritten with the counter
+     * @param counter
+     * @param hashAlg
+     * @param out the array to store the hash in
+     * @param offset where to store the hash in <code>out</code>
+     */
+    private static void hash(byte[] hashInput, int counter, MessageDigest hashAlg, byte[] out, int offset) {
+        int zLen = hashInput.length - 4;
+        hashInput[zLen] = (byte)(counter >>> 24);
+        hashInput[zLen+1] = (byte)(counter >>> 16);
+        hashInput[zLen+2] = (byte)(counter >>> 8);
+        hashInput[zLen+3] = (byte)counter;
+        hashAlg.update(hashInput, 0, hashInput.length);
+        try {
+            hashAlg.digest(out, offset, hashAlg.getDigestLength());
+        } catch (DigestException e) {
+            throw new NtruException(e);
+        }
+    }
+    
     /**
      * Decrypts a message.<br/>
      * See P1363.1 section 9.2.3.
@@ -419,9 +768,80 @@ public class NtruEncrypt {
      * @throws NtruException if the JRE doesn't implement the specified hash algorithm, the encrypted data is invalid, or <code>maxLenBytes</code> is greater than 255
      */
     public byte[] decrypt(byte[] data, EncryptionKeyPair kp) {
-        Polynomial priv_t = kp.priv.t;
-        IntegerPolynomial priv_fp = kp.priv.fp;
-        IntegerPolynomial pub = kp.pub.h;
+        return decrypt(data, new PreparedPrivateKey(kp, params), digest.get());
+    }
+    
+    /**
+     * Decrypts a message using a key pair whose private polynomial and public key data have been precomputed.<br/>
+     * See P1363.1 section 9.2.3.
+     * @param data The message to decrypt
+     * @param kp a prepared key pair that contains the public key the message was encrypted with, and the corresponding private key
+     * @return the decrypted message
+     * @throws NtruException if the key pair was prepared for different parameters, the JRE doesn't implement the specified hash algorithm, the encrypted data is invalid, or <code>maxLenBytes</code> is greater than 255
+     */
+    public byte[] decrypt(byte[] data, PreparedPrivateKey kp) {
+        checkParams(kp.pub);
+        return decrypt(data, kp, digest.get());
+    }
+    
+    /**
+     * Decrypts an encrypted message read from a buffer and writes the plain text to another buffer.<br/>
+     * The cipher text is decoded directly from <code>src</code> and the plain text is copied directly from the
+     * decoded message representative to <code>dst</code>. Both heap and direct buffers are supported.<br/>
+     * See P1363.1 section 9.2.3.
+     * @param src contains the message to decrypt; {@link EncryptionParameters#getOutputLength()} bytes are consumed
+     * @param dst receives the decrypted message; must have at least {@link EncryptionParameters#getMaxMessageLength()} bytes remaining
+     * @param kp a key pair that contains the public key the message was encrypted with, and the corresponding private key
+     * @return the number of bytes written to <code>dst</code>
+     * @throws BufferUnderflowException if <code>src</code> does not contain a complete encrypted message; neither buffer is modified in this case
+     * @throws BufferOverflowException if <code>dst</code> is too small; neither buffer is modified in this case
+     * @throws NtruException if the JRE doesn't implement the specified hash algorithm, the encrypted data is invalid, or <code>maxLenBytes</code> is greater than 255
+     */
+    public int decrypt(ByteBuffer src, ByteBuffer dst, EncryptionKeyPair kp) {
+        return decrypt(src, dst, new PreparedPrivateKey(kp, params));
+    }
+    
+    /**
+     * Like {@link #decrypt(ByteBuffer, ByteBuffer, EncryptionKeyPair)} but with a prepared key pair.
+     * @param src contains the message to decrypt; {@link EncryptionParameters#getOutputLength()} bytes are consumed
+     * @param dst receives the decrypted message; must have at least {@link EncryptionParameters#getMaxMessageLength()} bytes remaining
+     * @param kp a prepared key pair that contains the public key the message was encrypted with, and the corresponding private key
+     * @return the number of bytes written to <code>dst</code>
+     * @throws BufferUnderflowException if <code>src</code> does not contain a complete encrypted message; neither buffer is modified in this case
+     * @throws BufferOverflowException if <code>dst</code> is too small; neither buffer is modified in this case
+     * @throws NtruException if the key pair was prepared for different parameters, the JRE doesn't implement the specified hash algorithm, the encrypted data is invalid, or <code>maxLenBytes</code> is greater than 255
+     */
+    public int decrypt(ByteBuffer src, ByteBuffer dst, PreparedPrivateKey kp) {
+        checkParams(kp.pub);
+        if (src.remaining() < params.getOutputLength())
+            throw new BufferUnderflowException();
+        if (dst.remaining() < params.getMaxMessageLength())
+            throw new BufferOverflowException();
+        
+        IntegerPolynomial e = new IntegerPolynomial(ArrayEncoder.decodeModQ(src, params.N, params.q));
+        byte[] cM = decrypt(e, kp, digest.get());
+        int cl = cM[params.db/8] & 0xFF;
+        dst.put(cM, params.db/8+1, cl);
+        return cl;
+    }
+    
+    private byte[] decrypt(byte[] data, PreparedPrivateKey kp, MessageDigest hashAlg) {
+        IntegerPolynomial e = IntegerPolynomial.fromBinary(data, params.N, params.q);
+        byte[] cM = decrypt(e, kp, hashAlg);
+        int bLen = params.db / 8;
+        int cl = cM[bLen] & 0xFF;
+        return Arrays.copyOfRange(cM, bLen+1, bLen+1+cl);
+    }
+    
+    /**
+     * Decrypts a cipher text polynomial and verifies the message representative.
+     * @param e the cipher text polynomial; is modified by this method
+     * @param kp the prepared key pair
+     * @param hashAlg a message digest for <code>params.hashAlg</code>
+     * @return the message representative <code>cb|octL|cm|p0</code>
+     */
+    private byte[] decrypt(IntegerPolynomial e, PreparedPrivateKey kp, MessageDigest hashAlg) {
+        PreparedPublicKey pub = kp.pub;
         int N = params.N;
         int q = params.q;
         int db = params.db;
@@ -436,73 +856,75 @@ public class NtruEncrypt {
         
         int bLen = db / 8;
         
-        IntegerPolynomial e = IntegerPolynomial.fromBinary(data, N, q);
-        IntegerPolynomial ci = decrypt(e, priv_t, priv_fp);
+        int[] counts = new int[3];
+        IntegerPolynomial ci = decrypt(e, kp, counts);
         
-        if (ci.count(-1) < dm0)
-            throw new NtruException("Less than dm0 coefficients equal -1");
-        if (ci.count(0) < dm0)
-            throw new NtruException("Less than dm0 coefficients equal 0");
-        if (ci.count(1) < dm0)
-            throw new NtruException("Less than dm0 coefficients equal 1");
+        // All checks are done without branching and a single exception is thrown at the end, so neither
+        // the exception nor the running time tells an attacker which check failed. fail is -1 if one did.
+        int fail = (counts[0]-dm0) >> 31;
+        fail |= (counts[1]-dm0) >> 31;
+        fail |= (counts[2]-dm0) >> 31;
         
         IntegerPolynomial cR = e;
         cR.sub(ci);
         cR.modPositive(q);
         byte[] coR4 = cR.toBinary4();
-        IntegerPolynomial mask = MGF(coR4, N, minCallsMask, hashSeed);
+        IntegerPolynomial mask = MGF(coR4, N, minCallsMask, hashSeed, hashAlg);
         IntegerPolynomial cMTrin = ci;
         cMTrin.sub(mask);
         cMTrin.mod3();
         byte[] cM = cMTrin.toBinary3Sves(maxM1>0);
         
-        ByteBuffer buf = ByteBuffer.wrap(cM);
-        byte[] cb = new byte[bLen];
-        buf.get(cb);
-        int cl = buf.get() & 0xFF;   // llen=1, so read one byte
-        if (cl > maxMsgLenBytes)
-            throw new NtruException("Message too long: " + cl + ">" + maxMsgLenBytes);
-        byte[] cm = new byte[cl];
-        buf.get(cm);
-        byte[] p0 = new byte[buf.remaining()];
-        buf.get(p0);
-        if (!Arrays.equals(p0, new byte[p0.length]))
-            throw new NtruException("The message is not followed by zeroes");
-        
-        byte[] sData = getSeed(cm, pub, cb);
-        
-        Polynomial cr = generateBlindingPoly(sData);
-        IntegerPolynomial cRPrime = cr.mult(pub);
+        // cM = cb|cl|cm|p0
+        int cl = cM[bLen] & 0xFF;   // llen=1, so read one byte
+        int tooLong = (maxMsgLenBytes-cl) >> 31;
+        fail |= tooLong;
+        cl &= ~tooLong;   // continue with an empty message if cl is too big
+        int padding = 0;   // must be all zeroes
+        for (int i=bLen+1+cl; i<cM.length; i++)
+            padding |= cM[i] & 0xFF;
+        fail |= -padding >> 31;
+        
+        byte[] sData = getSeed(cM, cl, pub.hTrunc);
+        
+        int[][] cr = generateBlindingCoeffs(sData, hashAlg);
+        IntegerPolynomial cRPrime = pub.mult(cr);
         cRPrime.modPositive(q);
-        if (!cRPrime.equals(cR))
+        if (!cRPrime.equalsConstantTime(cR) | fail!=0)
             throw new NtruException("Invalid message encoding");
-       
-        return cm;
+        
+        return cM;
     }
     
     /**
      * 
      * @param e
-     * @param priv_t a polynomial such that if <code>fastFp=true</code>, <code>f=1+3*priv_t</code>; otherwise, <code>f=priv_t</code>
-     * @param priv_fp
+     * @param priv the private key; if <code>fastFp=true</code>, <code>f=1+3*t</code>; otherwise, <code>f=t</code>
+     * @param counts receives the number of coefficients of the result equal to <code>-1</code>, <code>0</code>, and <code>1</code>
      * @return
      */
-    IntegerPolynomial decrypt(IntegerPolynomial e, Polynomial priv_t, IntegerPolynomial priv_fp) {
+    IntegerPolynomial decrypt(IntegerPolynomial e, PreparedPrivateKey priv, int[] counts) {
         int q = params.q;
         
         IntegerPolynomial a;
         if (params.fastFp) {
-            a = priv_t.mult(e, q);
+            a = priv.mult(e);
             a.mult(3);
             a.add(e);
         }
         else
-            a = priv_t.mult(e, q);
-        a.center0(q);
-        a.mod3();
+            a = priv.mult(e);
+        // center mod q and reduce mod 3 in one pass; the counts are only needed for the final result
+        int[] aCounts = a.center0Mod3(q);
         
-        IntegerPolynomial c = params.fastFp ? a : new DenseTernaryPolynomial(a).mult(priv_fp, 3);
-        c.center0(3);
+        IntegerPolynomial c;
+        if (params.fastFp)
+            c = a;
+        else {
+            c = a.mult(priv.fp, 3);
+            aCounts = c.center0Mod3(3);
+        }
+        System.arraycopy(aCounts, 0, counts, 0, 3);
         return c;
     }
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import net.sf.ntru.exception.NtruException;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+/**
+ * Encrypts data of arbitrary length by wrapping a random AES key with NtruEncrypt and encrypting the data
+ * with AES-GCM.<br/>
+ * Data is processed in chunks of a fixed size, so memory usage does not depend on the length of the input.
+ * This makes it possible to encrypt streams and files that do not fit on the heap.<br/>
+ * The encrypted format consists of a header followed by the encrypted chunks:
+ * <pre>
+ * version (1 byte) | parameter set OID (3 bytes) | chunk size (4 bytes) | NTRU-encrypted AES key
+ * </pre>
+ * The AES key is <code>params.db/8</code> bytes long, so its strength matches the NtruEncrypt parameter set.
+ * Each chunk is encrypted and authenticated separately with a nonce made of a chunk counter and a flag that
+ * marks the final chunk; the first 8 bytes of the header are authenticated as part of every chunk. The final
+ * chunk is always shorter than the chunk size (it is empty if the input length is a multiple of the chunk
+ * size), which allows decryption to detect reordered, removed, or truncated chunks. Decryption also fails if
+ * anything follows the final chunk, so the input must end there.<br/>
+ * Instances are thread-safe, provided the parameters are not modified after construction.
+ */
+public class NtruHybridCipher {
+    /** The version of the encrypted format */
+    public static final int VERSION = 1;
+    
+    /** The default number of plaintext bytes per chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    
+    /** The largest chunk size accepted, which limits how much memory an encrypted header can make the decryptor allocate */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    
+    /** The length of the header excluding the NTRU-encrypted key */
+    private static final int HEADER_PREFIX_LENGTH = 8;
+    
+    /** The length of the authentication tag appended to each chunk */
+    private static final int TAG_LENGTH = 16;
+    
+    /** The length of a GCM nonce */
+    private static final int NONCE_LENGTH = 12;
+    
+    private EncryptionParameters params;
+    private NtruEncrypt ntru;
+    private int chunkSize;
+    private SecureRandom rng;
+    
+    /**
+     * Constructs a new instance with a set of encryption parameters and the default chunk size.
+     * @param params NtruEncrypt parameters
+     */
+    public NtruHybridCipher(EncryptionParameters params) {
+        this(params, DEFAULT_CHUNK_SIZE);
+    }
+    
+    /**
+     * Constructs a new instance with a set of encryption parameters and a given chunk size.
+     * @param params NtruEncrypt parameters
+     * @param chunkSize the number of plaintext bytes per chunk, between 1 and {@link #MAX_CHUNK_SIZE}
+     * @throws NtruException if the chunk size is out of range
+     */
+    public NtruHybridCipher(EncryptionParameters params, int chunkSize) {
+        if (chunkSize<1 || chunkSize>MAX_CHUNK_SIZE)
+            throw new NtruException("Invalid chunk size: " + chunkSize);
+        this.params = params;
+        this.chunkSize = chunkSize;
+        ntru = new NtruEncrypt(params);
+        rng = new SecureRandom();
+    }
+    
+    /**
+     * Returns the number of bytes the encrypted form of a given amount of data occupies.
+     * @param plainLength the length of the unencrypted data
+     * @return the length of the encrypted data including the header
+     */
+    public long getOutputLength(long plainLength) {
+        long numChunks = plainLength/chunkSize + 1;
+        return HEADER_PREFIX_LENGTH + params.getOutputLength() + plainLength + numChunks*TAG_LENGTH;
+    }
+    
+    /**
+     * Encrypts all data from an input stream and writes the result to an output stream.<br/>
+     * Neither stream is closed.
+     * @param in the data to encrypt
+     * @param out the stream to write the encrypted data to
+     * @param pubKey the public key to encrypt the data with
+     * @throws IOException if an I/O error occurs
+     */
+    public void encrypt(InputStream in, OutputStream out, EncryptionPublicKey pubKey) throws IOException {
+        encrypt(Channels.newChannel(in), Channels.newChannel(out), pubKey);
+    }
+    
+    /**
+     * Encrypts all data from a channel, such as a {@link FileChannel}, and writes the result to another channel.<br/>
+     * Neither channel is closed.
+     * @param in the data to encrypt
+     * @param out the channel to write the encrypted data to
+     * @param pubKey the public key to encrypt the data with
+     * @throws IOException if an I/O error occurs
+     */
+    public void encrypt(ReadableByteChannel in, WritableByteChannel out, EncryptionPublicKey pubKey) throws IOException {
+        byte[] key = new byte[params.db/8];
+        rng.nextBytes(key);
+        try {
+            byte[] ntruBlock = ntru.encrypt(key, pubKey);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_PREFIX_LENGTH + ntruBlock.length);
+            header.put((byte)VERSION);
+            header.put(params.oid);
+            header.putInt(chunkSize);
+            header.put(ntruBlock);
+            header.flip();
+            writeFully(out, header);
+            byte[] aad = Arrays.copyOf(header.array(), HEADER_PREFIX_LENGTH);
+            
+            GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+            byte[] plain = new byte[chunkSize];
+            byte[] encrypted = new byte[chunkSize + TAG_LENGTH];
+            ByteBuffer plainBuf = ByteBuffer.wrap(plain);
+            long counter = 0;
+            boolean last;
+            do {
+                plainBuf.clear();
+                int len = readFully(in, plainBuf);
+                last = len < chunkSize;
+                int encLen = processChunk(cipher, true, key, aad, counter, last, plain, len, encrypted);
+                writeFully(out, ByteBuffer.wrap(encrypted, 0, encLen));
+                counter++;
+            } while (!last);
+        }
+        finally {
+            Arrays.fill(key, (byte)0);
+        }
+    }
+    
+    /**
+     * Decrypts data encrypted with {@link #encrypt(InputStream, OutputStream, EncryptionPublicKey)} and writes
+     * the result to an output stream.<br/>
+     * Each chunk is written as soon as it has been authenticated, so if decryption fails, <code>out</code> may
+     * already contain the beginning of the plaintext. Callers must discard that output in that case.<br/>
+     * Neither stream is closed.
+     * @param in the encrypted data
+     * @param out the stream to write the decrypted data to
+     * @param kp a key pair that contains the public key the data was encrypted with
+     * @throws IOException if an I/O error occurs
+     * @throws NtruException if the data is not in the expected format, was encrypted for different parameters
+     *                       or a different key, has been tampered with, or is followed by more data
+     */
+    public void decrypt(InputStream in, OutputStream out, EncryptionKeyPair kp) throws IOException {
+        decrypt(Channels.newChannel(in), Channels.newChannel(out), kp);
+    }
+    
+    /**
+     * Decrypts data encrypted with {@link #encrypt(ReadableByteChannel, WritableByteChannel, EncryptionPublicKey)}
+     * and writes the result to a channel such as a {@link FileChannel}.<br/>
+     * Each chunk is written as soon as it has been authenticated, so if decryption fails, <code>out</code> may
+     * already contain the beginning of the plaintext. Callers must discard that output in that case.<br/>
+     * Neither channel is closed.
+     * @param in the encrypted data
+     * @param out the channel to write the decrypted data to
+     * @param kp a key pair that contains the public key the data was encrypted with
+     * @throws IOException if an I/O error occurs
+     * @throws NtruException if the data is not in the expected format, was encrypted for different parameters
+     *                       or a different key, has been tampered with, or is followed by more data
+     */
+    public void decrypt(ReadableByteChannel in, WritableByteChannel out, EncryptionKeyPair kp) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_PREFIX_LENGTH + params.getOutputLength());
+        if (readFully(in, header) < header.capacity())
+            throw new NtruException("Truncated header");
+        header.flip();
+        int version = header.get() & 0xFF;
+        if (version != VERSION)
+            throw new NtruException("Unsupported version: " + version);
+        byte[] oid = new byte[3];
+        header.get(oid);
+        if (!Arrays.equals(oid, params.oid))
+            throw new NtruException("The data was encrypted for a different parameter set");
+        int encChunkSize = header.getInt();
+        if (encChunkSize<1 || encChunkSize>MAX_CHUNK_SIZE)
+            throw new NtruException("Invalid chunk size: " + encChunkSize);
+        byte[] ntruBlock = new byte[params.getOutputLength()];
+        header.get(ntruBlock);
+        byte[] aad = Arrays.copyOf(header.array(), HEADER_PREFIX_LENGTH);
+        
+        byte[] key = ntru.decrypt(ntruBlock, kp);
+        try {
+            if (key.length != params.db/8)
+                throw new NtruException("Invalid key length: " + key.length);
+            
+            GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+            byte[] encrypted = new byte[encChunkSize + TAG_LENGTH];
+            byte[] plain = new byte[encChunkSize];
+            ByteBuffer encBuf = ByteBuffer.wrap(encrypted);
+            long counter = 0;
+            boolean last;
+            do {
+                encBuf.clear();
+                int len = readFully(in, encBuf);
+                if (len < TAG_LENGTH)
+                    throw new NtruException("Truncated data");
+                last = len < encrypted.length;
+                int plainLen = processChunk(cipher, false, key, aad, counter, last, encrypted, len, plain);
+                if (last && readFully(in, ByteBuffer.allocate(1))>0)
+                    throw new NtruException("Unexpected data after the final chunk");
+                writeFully(out, ByteBuffer.wrap(plain, 0, plainLen));
+                counter++;
+            } while (!last);
+        }
+        finally {
+            Arrays.fill(key, (byte)0);
+        }
+    }
+    
+    /**
+     * Encrypts or decrypts one chunk.
+     * @param cipher the cipher to use; it is reinitialized for the chunk
+     * @param forEncryption <code>true</code> to encrypt, <code>false</code> to decrypt
+     * @param key the AES key
+     * @param aad the additional data to authenticate
+     * @param counter the index of the chunk
+     * @param last whether this is the final chunk
+     * @param in input data
+     * @param len the number of bytes in <code>in</code>
+     * @param out the output buffer
+     * @return the number of bytes written to <code>out</code>
+     * @throws NtruException if authentication fails
+     */
+    private int processChunk(GCMBlockCipher cipher, boolean forEncryption, byte[] key, byte[] aad, long counter, boolean last, byte[] in, int len, byte[] out) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        for (int i=0; i<8; i++)
+            nonce[10-i] = (byte)(counter >>> (8*i));
+        nonce[NONCE_LENGTH-1] = (byte)(last ? 1 : 0);
+        cipher.init(forEncryption, new AEADParameters(new KeyParameter(key), 8*TAG_LENGTH, nonce, aad));
+        int outLen = cipher.processBytes(in, 0, len, out, 0);
+        try {
+            outLen += cipher.doFinal(out, outLen);
+        } catch (InvalidCipherTextException e) {
+            throw new NtruException("Authentication failed for chunk " + counter);
+        }
+        return outLen;
+    }
+    
+    /**
+     * Reads from a channel until the buffer is full or the end of the channel is reached.
+     * @param in a channel
+     * @param buf the buffer to read into
+     * @return the number of bytes read
+     * @throws IOException if an I/O error occurs
+     */
+    private int readFully(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = in.read(buf);
+            if (n < 0)
+                break;
+            total += n;
+        }
+        return total;
+    }
+    
+    /**
+     * Writes all remaining bytes of a buffer to a channel.
+     * @param out a channel
+     * @param buf the data to write
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeFully(WritableByteChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            out.write(buf);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import net.sf.ntru.exception.NtruException;
+import net.sf.ntru.polynomial.IntegerPolynomial;
+import net.sf.ntru.polynomial.PackedLongPolynomial;
+import net.sf.ntru.polynomial.Polynomial;
+import net.sf.ntru.polynomial.ProductFormPolynomial;
+import net.sf.ntru.polynomial.SparseTernaryPolynomial;
+
+/**
+ * A key pair together with a {@link PreparedPublicKey} for the re-encryption check, the coefficients of
+ * <code>t</code> and, if <code>fastFp=false</code>, the inverse of <code>f</code> mod 3.<br/>
+ * Sparse and product-form private keys are expanded to coefficient arrays once, so the encrypted message is
+ * multiplied by <code>t</code>, or by <code>f1</code>, <code>f2</code>, and <code>f3</code>, in constant time
+ * for every polynomial type.<br/>
+ * Instances are immutable and can be shared between threads, provided the parameters are not modified.
+ * @see NtruEncrypt#decrypt(byte[], PreparedPrivateKey)
+ */
+public class PreparedPrivateKey {
+    final EncryptionKeyPair kp;
+    final PreparedPublicKey pub;
+    final EncryptionParameters params;
+    /** the coefficients of <code>t</code>, or of <code>f1</code>, <code>f2</code>, and <code>f3</code> if <code>t=f1*f2+f3</code> */
+    private final int[][] t;
+    /** the inverse of <code>f</code> mod 3, or <code>null</code> if <code>fastFp=true</code> */
+    final IntegerPolynomial fp;
+    
+    /**
+     * Constructs a new <code>PreparedPrivateKey</code>.
+     * @param kp a key pair
+     * @param params the parameters the key pair was generated with
+     * @throws NtruException if <code>N</code> or <code>q</code> of the keys don't match the parameters
+     */
+    public PreparedPrivateKey(EncryptionKeyPair kp, EncryptionParameters params) {
+        if (kp.priv.N!=params.N || kp.priv.q!=params.q)
+            throw new NtruException("Private key does not match the parameters: N=" + kp.priv.N + ", q=" + kp.priv.q);
+        
+        this.kp = kp;
+        pub = new PreparedPublicKey(kp.pub, params);
+        this.params = params;
+        Polynomial t = kp.priv.t;
+        if (t instanceof ProductFormPolynomial) {
+            SparseTernaryPolynomial[] factors = ((ProductFormPolynomial)t).getFactors();
+            this.t = new int[factors.length][];
+            for (int i=0; i<factors.length; i++)
+                this.t[i] = factors[i].toIntegerPolynomial().coeffs;
+        }
+        else
+            this.t = new int[][] {t.toIntegerPolynomial().coeffs};
+        fp = params.fastFp ? null : kp.priv.fp;
+    }
+    
+    /**
+     * Returns the key pair this object was constructed from.
+     * @return the key pair
+     */
+    public EncryptionKeyPair getKeyPair() {
+        return kp;
+    }
+    
+    /**
+     * Multiplies an encrypted message by <code>t</code> in constant time, taking the coefficients mod <code>q</code>.
+     * @param e a polynomial whose coefficients are between <code>0</code> and <code>q-1</code>
+     * @return <code>t*e mod q</code>
+     */
+    IntegerPolynomial mult(IntegerPolynomial e) {
+        int q = params.q;
+        PackedLongPolynomial ePacked = PackedLongPolynomial.isSupported(q) ? new PackedLongPolynomial(e, q) : null;
+        return PreparedPublicKey.multDense(e, ePacked, t, q);
+    }
+}
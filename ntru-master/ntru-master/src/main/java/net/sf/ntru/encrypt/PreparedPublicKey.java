@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import net.sf.ntru.exception.NtruException;
+import net.sf.ntru.polynomial.DenseTernaryPolynomial;
+import net.sf.ntru.polynomial.IntegerPolynomial;
+import net.sf.ntru.polynomial.PackedLongPolynomial;
+import net.sf.ntru.polynomial.Polynomial;
+import net.sf.ntru.polynomial.PolynomialBackend;
+
+/**
+ * A public key together with the values derived from it that every encryption needs.<br/>
+ * Encrypting many messages with a <code>PreparedPublicKey</code> is faster than using the
+ * {@link EncryptionPublicKey} directly because the truncated key and, if <code>q</code> is a power of 2,
+ * a {@link PackedLongPolynomial} of <code>h</code> are only computed once. Dense blinding polynomials are
+ * multiplied by <code>h</code> in constant time; sparse and product-form ones are multiplied through their
+ * index lists when encrypting. When decrypting, the blinding polynomial is derived from the secret message,
+ * so it is multiplied in constant time regardless of its type.<br/>
+ * Instances are immutable and can be shared between threads, provided the parameters are not modified.
+ * @see NtruEncrypt#encrypt(byte[], PreparedPublicKey)
+ */
+public class PreparedPublicKey {
+    final EncryptionPublicKey key;
+    final EncryptionParameters params;
+    /** the coefficients of the public key, reduced to <code>[0, q)</code> */
+    final IntegerPolynomial h;
+    /** <code>h</code> packed mod <code>q</code>, or <code>null</code> if <code>q</code> is not a power of 2 */
+    private final PackedLongPolynomial hPacked;
+    /** the first <code>pkLen</code> bits of the encoded key */
+    final byte[] hTrunc;
+    
+    /**
+     * Constructs a new <code>PreparedPublicKey</code>.
+     * @param key a public key
+     * @param params the parameters the key was generated with
+     * @throws NtruException if <code>N</code> or <code>q</code> of the key don't match the parameters
+     */
+    public PreparedPublicKey(EncryptionPublicKey key, EncryptionParameters params) {
+        if (key.N!=params.N || key.q!=params.q)
+            throw new NtruException("Public key does not match the parameters: N=" + key.N + ", q=" + key.q);
+        
+        this.key = key;
+        this.params = params;
+        h = key.getH();
+        hTrunc = h.toBinaryTrunc(params.q, params.pkLen/8);
+        h.modPositive(params.q);
+        hPacked = PackedLongPolynomial.isSupported(params.q) ? new PackedLongPolynomial(h, params.q) : null;
+    }
+    
+    /**
+     * Returns the public key this object was constructed from.
+     * @return the public key
+     */
+    public EncryptionPublicKey getKey() {
+        return key;
+    }
+    
+    /**
+     * Multiplies a blinding polynomial by <code>h</code>, taking the coefficients mod <code>q</code>.
+     * @param r a blinding polynomial
+     * @return <code>r*h mod q</code>
+     */
+    IntegerPolynomial mult(Polynomial r) {
+        if (r instanceof DenseTernaryPolynomial)
+            return mult(new int[][] {((DenseTernaryPolynomial)r).coeffs});
+        else
+            return r.mult(h, params.q);
+    }
+    
+    /**
+     * Multiplies a blinding polynomial given as coefficient arrays by <code>h</code> in constant time,
+     * taking the coefficients mod <code>q</code>.
+     * @param r the coefficients of a ternary polynomial, or of <code>r1</code>, <code>r2</code>, and
+     *          <code>r3</code> if the blinding polynomial is <code>r1*r2+r3</code>
+     * @return <code>r*h mod q</code>
+     */
+    IntegerPolynomial mult(int[][] r) {
+        return multDense(h, hPacked, r, params.q);
+    }
+    
+    /**
+     * Multiplies a polynomial by a ternary or product-form polynomial given as coefficient arrays through
+     * {@link PolynomialBackend#multDenseTernary(PackedLongPolynomial, int[])}, or through
+     * {@link PolynomialBackend#multDenseTernary(int[], int[], int)} if <code>b</code> is not packed.
+     * The running time does not depend on the coefficients.
+     * @param b a polynomial whose coefficients are between <code>0</code> and <code>q-1</code>
+     * @param bPacked <code>b</code> packed mod <code>q</code>, or <code>null</code>
+     * @param t the coefficients of a ternary polynomial, or of <code>f1</code>, <code>f2</code>, and
+     *          <code>f3</code> for the product-form polynomial <code>f1*f2+f3</code>
+     * @param q the modulus
+     * @return <code>t*b mod q</code>
+     */
+    static IntegerPolynomial multDense(IntegerPolynomial b, PackedLongPolynomial bPacked, int[][] t, int q) {
+        PolynomialBackend backend = IntegerPolynomial.getBackend();
+        if (bPacked != null) {
+            if (t.length == 1)
+                return backend.multDenseTernary(bPacked, t[0]).toIntegerPolynomial();
+            PackedLongPolynomial c = backend.multDenseTernary(backend.multDenseTernary(bPacked, t[1]), t[0]);
+            c.add(backend.multDenseTernary(bPacked, t[2]));
+            return c.toIntegerPolynomial();
+        }
+        else {
+            if (t.length == 1)
+                return new IntegerPolynomial(backend.multDenseTernary(b.coeffs, t[0], q));
+            int[] c = backend.multDenseTernary(backend.multDenseTernary(b.coeffs, t[1], q), t[0], q);
+            backend.add(c, backend.multDenseTernary(b.coeffs, t[2], q));
+            backend.modPositive(c, q);
+            return new IntegerPolynomial(c);
+        }
+    }
+}
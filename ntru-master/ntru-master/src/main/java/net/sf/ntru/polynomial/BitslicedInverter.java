@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+/**
+ * Inverts polynomials in <code>Z<sub>2</sub>[x]/(x<sup>N</sup>-1)</code> and <code>Z<sub>3</sub>[x]/(x<sup>N</sup>-1)</code>
+ * in constant time.<br/>
+ * Coefficients are bit-sliced: mod 2, each <code>long</code> holds 64 coefficients; mod 3, each coefficient is
+ * stored as a magnitude bit and a sign bit in two separate <code>long</code> arrays. The algorithm is the
+ * "divstep" algorithm of Bernstein and Yang (<a href="https://eprint.iacr.org/2019/266">Fast constant-time gcd
+ * computation and modular inversion</a>), which always does <code>2N-1</code> iterations and chooses between
+ * swapping and not swapping with bit masks instead of branches, so the running time does not depend on the
+ * polynomial being inverted.
+ */
+class BitslicedInverter {
+    
+    /**
+     * Computes the inverse of a polynomial mod 2.
+     * @param a the coefficients of the polynomial; they need not be reduced
+     * @return the coefficients of the inverse (0 or 1), or <code>null</code> if the polynomial is not invertible
+     */
+    static int[] invertMod2(int[] a) {
+        int N = a.length;
+        int numWords = (N+64) >>> 6;   // N+1 coefficients
+        long topMask = topMask(N);
+        
+        // f = reversed x^N-1, g = reversed a
+        long[] f = new long[numWords];
+        long[] g = new long[numWords];
+        long[] v = new long[numWords];
+        long[] r = new long[numWords];
+        f[0] = 1;
+        f[N>>>6] |= 1L << N;
+        for (int i=0; i<N; i++)
+            g[(N-1-i)>>>6] |= ((long)(a[i]&1)) << (N-1-i);
+        r[0] = 1;
+        
+        int delta = 1;
+        for (int loop=0; loop<2*N-1; loop++) {
+            shiftLeft(v, topMask);
+            
+            long g0 = g[0] & 1;
+            long swap = -(g0 & ((-delta)>>>31));   // all ones if delta>0 and g(0)!=0
+            delta ^= (int)swap & (delta^-delta);
+            delta++;
+            long sign = -g0;   // f(0) is always 1
+            
+            for (int i=0; i<numWords; i++) {
+                long t = swap & (f[i]^g[i]);
+                f[i] ^= t;
+                g[i] ^= t;
+                t = swap & (v[i]^r[i]);
+                v[i] ^= t;
+                r[i] ^= t;
+                g[i] ^= sign & f[i];
+                r[i] ^= sign & v[i];
+            }
+            
+            shiftRight(g);
+        }
+        
+        if (delta != 0)
+            return null;
+        int[] inv = new int[N];
+        for (int i=0; i<N; i++)
+            inv[i] = (int)(v[(N-1-i)>>>6] >>> (N-1-i)) & 1;
+        return inv;
+    }
+    
+    /**
+     * Computes the inverse of a polynomial mod 3.
+     * @param a the coefficients of the polynomial; they need not be reduced
+     * @return the coefficients of the inverse (between 0 and 2), or <code>null</code> if the polynomial is not invertible
+     */
+    static int[] invertMod3(int[] a) {
+        int N = a.length;
+        int numWords = (N+64) >>> 6;   // N+1 coefficients
+        long topMask = topMask(N);
+        
+        // each polynomial consists of a magnitude plane (*m) and a sign plane (*s); a coefficient is
+        // 0 if its magnitude bit is 0, and 1 or -1 depending on the sign bit otherwise.
+        // f = reversed x^N-1, g = reversed a
+        long[] fm = new long[numWords];
+        long[] fs = new long[numWords];
+        long[] gm = new long[numWords];
+        long[] gs = new long[numWords];
+        long[] vm = new long[numWords];
+        long[] vs = new long[numWords];
+        long[] rm = new long[numWords];
+        long[] rs = new long[numWords];
+        fm[0] = 1;
+        fm[N>>>6] |= 1L << N;
+        fs[N>>>6] |= 1L << N;
+        for (int i=0; i<N; i++) {
+            int c = a[i] % 3;
+            c += (c>>31) & 3;
+            long bit = 1L << (N-1-i);
+            int idx = (N-1-i) >>> 6;
+            gm[idx] |= -(long)((c+1)>>>1 & 1) & bit;   // c=1 or c=2
+            gs[idx] |= -(long)(c>>>1) & bit;   // c=2
+        }
+        rm[0] = 1;
+        
+        int delta = 1;
+        for (int loop=0; loop<2*N-1; loop++) {
+            shiftLeft(vm, topMask);
+            shiftLeft(vs, topMask);
+            
+            long g0 = gm[0] & 1;
+            long swap = -(g0 & ((-delta)>>>31));   // all ones if delta>0 and g(0)!=0
+            delta ^= (int)swap & (delta^-delta);
+            delta++;
+            // sign = -g(0)*f(0); f(0) is always nonzero
+            long signM = -g0;
+            long signS = -(1 ^ ((gs[0]^fs[0]) & 1));
+            
+            for (int i=0; i<numWords; i++) {
+                long t = swap & (fm[i]^gm[i]);
+                fm[i] ^= t;
+                gm[i] ^= t;
+                t = swap & (fs[i]^gs[i]);
+                fs[i] ^= t;
+                gs[i] ^= t;
+                t = swap & (vm[i]^rm[i]);
+                vm[i] ^= t;
+                rm[i] ^= t;
+                t = swap & (vs[i]^rs[i]);
+                vs[i] ^= t;
+                rs[i] ^= t;
+                
+                // g += sign*f, r += sign*v
+                long bm = fm[i] & signM;
+                long bs = fs[i] ^ signS;
+                long am = gm[i];
+                long as = gs[i];
+                gm[i] = (am^bm) | (am & bm & ~(as^bs));
+                gs[i] = (am & (as^bm)) | (~am & bs);
+                bm = vm[i] & signM;
+                bs = vs[i] ^ signS;
+                am = rm[i];
+                as = rs[i];
+                rm[i] = (am^bm) | (am & bm & ~(as^bs));
+                rs[i] = (am & (as^bm)) | (~am & bs);
+            }
+            
+            shiftRight(gm);
+            shiftRight(gs);
+        }
+        
+        if (delta != 0)
+            return null;
+        // the inverse is f(0)*v, reversed
+        long f0s = -(fs[0] & 1);
+        int[] inv = new int[N];
+        for (int i=0; i<N; i++) {
+            int idx = (N-1-i) >>> 6;
+            int shift = N - 1 - i;
+            int m = (int)(vm[idx] >>> shift) & 1;
+            int s = (int)((vs[idx]^f0s) >>> shift) & 1;
+            inv[i] = m << s;   // 0, 1, or 2
+        }
+        return inv;
+    }
+    
+    /** Returns a mask for the highest word of an array of <code>N+1</code> bits */
+    private static long topMask(int N) {
+        int numBits = (N+1) & 63;
+        return numBits==0 ? -1L : (1L<<numBits) - 1;
+    }
+    
+    /** Multiplies by <code>x</code>, dropping the highest coefficient */
+    private static void shiftLeft(long[] a, long topMask) {
+        for (int i=a.length-1; i>0; i--)
+            a[i] = (a[i]<<1) | (a[i-1]>>>63);
+        a[0] <<= 1;
+        a[a.length-1] &= topMask;
+    }
+    
+    /** Divides by <code>x</code>, dropping the lowest coefficient */
+    private static void shiftRight(long[] a) {
+        int last = a.length - 1;
+        for (int i=0; i<last; i++)
+            a[i] = (a[i]>>>1) | (a[i+1]<<63);
+        a[last] >>>= 1;
+    }
+}
\ No newline at end of file
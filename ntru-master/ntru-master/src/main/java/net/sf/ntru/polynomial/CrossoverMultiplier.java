@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+/**
+ * Delegates to one of two multiplication algorithms depending on the number of coefficients and their size.
+ * The default configuration uses Karatsuba multiplication for small polynomials and NTT-based
+ * multiplication for large ones.<br/>
+ * The cost of an NTT multiplication grows with the number of primes needed to hold the product coefficients
+ * (see {@link NttMultiplier}), so there is one crossover for each case: a ternary (or otherwise small) factor
+ * times a mod-<code>q</code> factor, two mod-<code>q</code> factors, and arbitrary <code>int</code> coefficients.
+ */
+public class CrossoverMultiplier implements PolynomialMultiplier {
+    /**
+     * The smallest <code>N</code> for which {@link NttMultiplier} outperforms {@link KaratsubaMultiplier} when
+     * multiplying a ternary polynomial by a polynomial mod 2048. Only one prime is needed in that case.
+     */
+    public static final int DEFAULT_CROSSOVER_SMALL = 700;
+    
+    /**
+     * The smallest <code>N</code> for which {@link NttMultiplier} outperforms {@link KaratsubaMultiplier} when
+     * multiplying two polynomials mod 2048, which takes two primes.
+     */
+    public static final int DEFAULT_CROSSOVER = 1400;
+    
+    /**
+     * The smallest <code>N</code> for which {@link NttMultiplier} outperforms {@link KaratsubaMultiplier} when
+     * multiplying polynomials with arbitrary <code>int</code> coefficients, which takes three primes.
+     */
+    public static final int DEFAULT_CROSSOVER_LARGE = 4000;
+    
+    private PolynomialMultiplier small;
+    private PolynomialMultiplier large;
+    /** crossovers for one, two, and three NTT primes */
+    private int[] crossovers;
+    
+    /**
+     * Constructs a <code>CrossoverMultiplier</code> that switches from Karatsuba to NTT at {@link #DEFAULT_CROSSOVER_SMALL},
+     * {@link #DEFAULT_CROSSOVER}, or {@link #DEFAULT_CROSSOVER_LARGE}, depending on the coefficients.
+     */
+    public CrossoverMultiplier() {
+        this(new KaratsubaMultiplier(), new NttMultiplier(), DEFAULT_CROSSOVER_SMALL, DEFAULT_CROSSOVER, DEFAULT_CROSSOVER_LARGE);
+    }
+    
+    /**
+     * Constructs a new <code>CrossoverMultiplier</code> that only looks at the number of coefficients.
+     * @param small the algorithm to use for polynomials with fewer than <code>crossover</code> coefficients
+     * @param large the algorithm to use for all other polynomials
+     * @param crossover the minimum <code>N</code> at which to use <code>large</code>
+     */
+    public CrossoverMultiplier(PolynomialMultiplier small, PolynomialMultiplier large, int crossover) {
+        this(small, large, crossover, crossover, crossover);
+    }
+    
+    /**
+     * Constructs a new <code>CrossoverMultiplier</code> that looks at the number of coefficients and their size.
+     * @param small the algorithm to use for polynomials with fewer coefficients than the crossover
+     * @param large the algorithm to use for all other polynomials
+     * @param crossoverSmall the minimum <code>N</code> at which to use <code>large</code> if the product fits into one NTT prime
+     * @param crossover the minimum <code>N</code> at which to use <code>large</code> if the product fits into two NTT primes
+     * @param crossoverLarge the minimum <code>N</code> at which to use <code>large</code> for all other polynomials
+     */
+    public CrossoverMultiplier(PolynomialMultiplier small, PolynomialMultiplier large, int crossoverSmall, int crossover, int crossoverLarge) {
+        this.small = small;
+        this.large = large;
+        crossovers = new int[] {crossoverSmall, crossover, crossoverLarge};
+    }
+    
+    @Override
+    public int[] multiply(int[] a, int[] b) {
+        int N = a.length;
+        int crossover;
+        if (N < crossovers[0] && N < crossovers[1] && N < crossovers[2])
+            crossover = Integer.MAX_VALUE;   // no need to look at the coefficients
+        else if (N >= crossovers[0] && N >= crossovers[1] && N >= crossovers[2])
+            crossover = 0;
+        else
+            crossover = crossovers[NttMultiplier.numPrimes(a, b) - 1];
+        
+        if (N < crossover)
+            return small.multiply(a, b);
+        else
+            return large.multiply(a, b);
+    }
+}
\ No newline at end of file
@@ -26,14 +26,12 @@
 
 package net.sf.ntru.polynomial;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.Random;
 
 import net.sf.ntru.encrypt.IndexGenerator;
 import net.sf.ntru.encrypt.NtruEncrypt;
+import net.sf.ntru.exception.NtruException;
 
 /**
  * A <code>TernaryPolynomial</code> with a "high" number of nonzero coefficients.<br/>
@@ -68,67 +66,37 @@ public class DenseTernaryPolynomial extends IntegerPolynomial implements Ternary
      * @param rng the random number generator to use
      */
     public static DenseTernaryPolynomial generateRandom(int N, int numOnes, int numNegOnes, Random rng) {
-        List<Integer> list = new ArrayList<Integer>();
-        for (int i=0; i<numOnes; i++)
-            list.add(1);
-        for (int i=0; i<numNegOnes; i++)
-            list.add(-1);
-        while (list.size() < N)
-            list.add(0);
-        Collections.shuffle(list, rng);
-        
-        int[] arr = new int[N];
-        for (int i=0; i<N; i++)
-            arr[i] = list.get(i);
-        return new DenseTernaryPolynomial(arr);
+        return new DenseTernaryPolynomial(TernarySampler.generateCoeffs(N, numOnes, numNegOnes, rng));
     }
     
     /**
-     * Generates a blinding polynomial using an {@link IndexGenerator}.
+     * Generates a blinding polynomial using an {@link IndexGenerator}.<br/>
+     * The indices are processed by {@link IndexGenerator#nextBlindingCoeffs(int[], boolean)}, which does not
+     * branch on them. The first <code>dr</code> indices become negative ones; changing the order would change
+     * the blinding polynomial.
      * @param ig an Index Generator
-     * @param N the number of coefficients
+     * @param N the number of coefficients; must be the same as in the parameters of <code>ig</code>
      * @param dr the number of ones / negative ones
      * @return a blinding polynomial
-     * @see NtruEncrypt#generateBlindingPoly(byte[])
+     * @see NtruEncrypt#generateBlindingPoly(byte[], java.security.MessageDigest)
      */
     public static DenseTernaryPolynomial generateBlindingPoly(IndexGenerator ig, int N, int dr) {
-        return new DenseTernaryPolynomial(generateBlindingCoeffs(ig, N, dr));
+        int[] coeffs = ig.nextBlindingCoeffs(new int[] {dr}, true)[0];
+        if (coeffs.length != N)
+            throw new NtruException("Number of coefficients must be the same");
+        return new DenseTernaryPolynomial(coeffs);
     }
     
     /**
-     * Generates an <code>int</code> array containing <code>dr</code> elements equal to <code>1</code>
-     * and <code>dr</code> elements equal to <code>-1</code> using an index generator.
-     * @param ig an index generator
-     * @param dr number of ones / negative ones
-     * @return an array containing numbers between <code>-1</code> and <code>1</code>
+     * Multiplies through {@link PolynomialBackend#multDenseTernary(int[], int[], int)}, which takes the same
+     * time for every ternary polynomial.
      */
-    private static int[] generateBlindingCoeffs(IndexGenerator ig, int N, int dr) {
-        int[] r = new int[N];
-        for (int coeff=-1; coeff<=1; coeff+=2) {
-            int t = 0;
-            while (t < dr) {
-                int i = ig.nextIndex();
-                if (r[i] == 0) {
-                    r[i] = coeff;
-                    t++;
-                }
-            }
-        }
-        
-        return r;
-    }
-    
     @Override
     public IntegerPolynomial mult(IntegerPolynomial poly2, int modulus) {
-        // even on 32-bit systems, LongPolynomial5 multiplies faster than IntegerPolynomial
-        if (modulus == 2048) {
-            IntegerPolynomial poly2Pos = poly2.clone();
-            poly2Pos.modPositive(2048);
-            LongPolynomial5 poly5 = new LongPolynomial5(poly2Pos);
-            return poly5.mult(this).toIntegerPolynomial();
-        }
-        else
-            return super.mult(poly2, modulus);
+        if (poly2.coeffs.length != coeffs.length)
+            throw new NtruException("Number of coefficients must be the same");
+        
+        return new IntegerPolynomial(IntegerPolynomial.getBackend().multDenseTernary(poly2.coeffs, coeffs, modulus));
     }
 
     @Override
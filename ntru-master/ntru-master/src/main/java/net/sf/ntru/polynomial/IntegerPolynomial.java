@@ -36,9 +36,14 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import net.sf.ntru.arith.BigIntEuclidean;
-import net.sf.ntru.arith.IntEuclidean;
 import net.sf.ntru.exception.NtruException;
 import net.sf.ntru.sign.SignatureParameters;
 import net.sf.ntru.util.ArrayEncoder;
@@ -51,6 +56,11 @@ import net.sf.ntru.util.PlatformUtil;
  */
 public class IntegerPolynomial implements Polynomial {
     private static final int NUM_EQUAL_RESULTANTS = 3;
+    /** The algorithm used by {@link #mult(IntegerPolynomial)} */
+    private static volatile PolynomialMultiplier multiplier = new CrossoverMultiplier();
+    private static final KaratsubaMultiplier KARATSUBA = new KaratsubaMultiplier();
+    /** The kernels used by <code>add</code>, <code>mod3</code>, <code>modPositive</code>, <code>center0</code>, and ternary multiplication */
+    private static volatile PolynomialBackend backend = loadBackend();
     /**
      * Prime numbers &gt; 4500 for resultant computation. Starting them below ~4400 causes incorrect results occasionally.
      * Fortunately, 4500 is about the optimum number for performance.<br/>
@@ -120,6 +130,15 @@ public class IntegerPolynomial implements Polynomial {
         9817, 9829, 9833, 9839, 9851, 9857, 9859, 9871, 9883, 9887,
         9901, 9907, 9923, 9929, 9931, 9941, 9949, 9967, 9973};
     private static final List<BigInteger> BIGINT_PRIMES;
+    /** Scratch space for {@link #resultant(int)}, one per thread */
+    private static final ThreadLocal<ResultantWorkspace> RESULTANT_WORKSPACE = new ThreadLocal<ResultantWorkspace>() {
+        @Override
+        protected ResultantWorkspace initialValue() {
+            return new ResultantWorkspace();
+        }
+    };
+    /** Computes modular resultants for {@link #resultantMultiThread()} */
+    private static final ExecutorService RESULTANT_EXECUTOR = PlatformUtil.createDaemonExecutor(Runtime.getRuntime().availableProcessors(), "IntegerPolynomial resultant");
 
     static {
         BIGINT_PRIMES = new ArrayList<BigInteger>();
@@ -301,69 +320,98 @@ public class IntegerPolynomial implements Polynomial {
     
     /** Multiplies the polynomial with another, taking the indices mod N */
     public IntegerPolynomial mult(IntegerPolynomial poly2) {
-        int N = coeffs.length;
-        if (poly2.coeffs.length != N)
+        return mult(poly2, multiplier);
+    }
+    
+    /**
+     * Multiplies the polynomial with another using a given algorithm, taking the indices mod N
+     * @param poly2 the polynomial to multiply by
+     * @param multiplier the multiplication algorithm to use
+     * @return a new polynomial
+     */
+    public IntegerPolynomial mult(IntegerPolynomial poly2, PolynomialMultiplier multiplier) {
+        if (poly2.coeffs.length != coeffs.length)
             throw new NtruException("Number of coefficients must be the same");
-        
-        IntegerPolynomial c = multRecursive(poly2);
-        
-        if (c.coeffs.length > N) {
-            for (int k=N; k<c.coeffs.length; k++)
-                c.coeffs[k-N] += c.coeffs[k];
-            c.coeffs = Arrays.copyOf(c.coeffs, N);
-        }
-        return c;
+        return new IntegerPolynomial(multiplier.multiply(coeffs, poly2.coeffs));
     }
     
-    @Override
-    public BigIntPolynomial mult(BigIntPolynomial poly2) {
-        return new BigIntPolynomial(this).multSmall(poly2);
+    /**
+     * Multiplies the polynomial with another using Karatsuba multiplication, taking the indices mod N.
+     * Apart from the result, no memory is allocated.
+     * @param poly2 the polynomial to multiply by
+     * @param workspace scratch memory for at least <code>N</code> coefficients
+     * @return a new polynomial
+     */
+    public IntegerPolynomial mult(IntegerPolynomial poly2, PolynomialWorkspace workspace) {
+        if (poly2.coeffs.length != coeffs.length)
+            throw new NtruException("Number of coefficients must be the same");
+        return new IntegerPolynomial(KARATSUBA.multiply(coeffs, poly2.coeffs, workspace));
     }
     
-    /** Karatsuba multiplication */
-    private IntegerPolynomial multRecursive(IntegerPolynomial poly2) {
-        int[] a = coeffs;
-        int[] b = poly2.coeffs;
-        
-        int n = poly2.coeffs.length;
-        if (n <= 32) {
-            int cn = 2 * n - 1;
-            IntegerPolynomial c = new IntegerPolynomial(new int[cn]);
-            for (int k=0; k<cn; k++)
-                for (int i=Math.max(0, k-n+1); i<=Math.min(k,n-1); i++)
-                    c.coeffs[k] += b[i] * a[k-i];
-            return c;
+    /**
+     * Sets the algorithm used by {@link #mult(IntegerPolynomial)} and {@link #mult(IntegerPolynomial, int)}.
+     * The default is a {@link CrossoverMultiplier}.
+     * @param multiplier the new multiplication algorithm
+     */
+    public static void setMultiplier(PolynomialMultiplier multiplier) {
+        IntegerPolynomial.multiplier = multiplier;
+    }
+    
+    /**
+     * Returns the algorithm used by {@link #mult(IntegerPolynomial)} and {@link #mult(IntegerPolynomial, int)}.
+     * @return the current multiplication algorithm
+     */
+    public static PolynomialMultiplier getMultiplier() {
+        return multiplier;
+    }
+    
+    /**
+     * Sets the kernels used for adding, reducing, and centering coefficients, and for multiplying by
+     * a {@link SparseTernaryPolynomial}.
+     * The default is the first {@link PolynomialBackend} provider that can be loaded, or a {@link ScalarBackend}.
+     * @param backend the new backend
+     */
+    public static void setBackend(PolynomialBackend backend) {
+        IntegerPolynomial.backend = backend;
+    }
+    
+    /**
+     * Returns the kernels used for adding, reducing, and centering coefficients, and for multiplying by
+     * a {@link SparseTernaryPolynomial}.
+     * @return the current backend
+     */
+    public static PolynomialBackend getBackend() {
+        return backend;
+    }
+    
+    /**
+     * Returns the first {@link PolynomialBackend} provider that can be instantiated, or a {@link ScalarBackend}
+     * if there is none.
+     * @return a backend
+     */
+    private static PolynomialBackend loadBackend() {
+        try {
+            Iterator<PolynomialBackend> providers = ServiceLoader.load(PolynomialBackend.class, PolynomialBackend.class.getClassLoader()).iterator();
+            while (providers.hasNext())
+                try {
+                    return providers.next();
+                }
+                catch (ServiceConfigurationError e) {
+                    // the provider is not supported on this JVM; try the next one
+                }
+                catch (LinkageError e) {
+                    // the provider depends on a module that is not available
+                }
         }
-        else {
-            int n1 = n / 2;
-            
-            IntegerPolynomial a1 = new IntegerPolynomial(Arrays.copyOf(a, n1));
-            IntegerPolynomial a2 = new IntegerPolynomial(Arrays.copyOfRange(a, n1, n));
-            IntegerPolynomial b1 = new IntegerPolynomial(Arrays.copyOf(b, n1));
-            IntegerPolynomial b2 = new IntegerPolynomial(Arrays.copyOfRange(b, n1, n));
-            
-            // make a copy of a1 that is the same length as a2
-            IntegerPolynomial A = new IntegerPolynomial(Arrays.copyOf(a1.coeffs, a2.coeffs.length));
-            A.add(a2);
-            // make a copy of b1 that is the same length as b2
-            IntegerPolynomial B = new IntegerPolynomial(Arrays.copyOf(b1.coeffs, b2.coeffs.length));
-            B.add(b2);
-            
-            IntegerPolynomial c1 = a1.multRecursive(b1);
-            IntegerPolynomial c2 = a2.multRecursive(b2);
-            IntegerPolynomial c3 = A.multRecursive(B);
-            c3.sub(c1);
-            c3.sub(c2);
-            
-            IntegerPolynomial c = new IntegerPolynomial(2*n-1);
-            for (int i=0; i<c1.coeffs.length; i++)
-                c.coeffs[i] = c1.coeffs[i];
-            for (int i=0; i<c3.coeffs.length; i++)
-                c.coeffs[n1+i] += c3.coeffs[i];
-            for (int i=0; i<c2.coeffs.length; i++)
-                c.coeffs[2*n1+i] += c2.coeffs[i];
-            return c;
+        catch (ServiceConfigurationError e) {
+            // a provider configuration file is unreadable
         }
+        return new ScalarBackend();
+    }
+    
+    @Override
+    public BigIntPolynomial mult(BigIntPolynomial poly2) {
+        return new BigIntPolynomial(this).multSmall(poly2);
     }
     
     /**
@@ -391,68 +439,13 @@ public class IntegerPolynomial implements Polynomial {
     }
     
     /**
-     * Computes the inverse mod 2.
-     * Returns <code>null</code> if the polynomial is not invertible.<br/>
-     * The algorithm is described in <a href="http://www.securityinnovation.com/uploads/Crypto/NTRUTech014.pdf">
-     * Almost Inverses and Fast NTRU Key Generation</a>.
+     * Computes the inverse mod 2 in constant time (see {@link BitslicedInverter}).
+     * Returns <code>null</code> if the polynomial is not invertible.
      * @return a new polynomial, or <code>null</code> if no inverse exists
      */
     private IntegerPolynomial invertF2() {
-        int N = coeffs.length;
-        int k = 0;
-        IntegerPolynomial b = new IntegerPolynomial(N+1);
-        b.coeffs[0] = 1;
-        IntegerPolynomial c = new IntegerPolynomial(N+1);
-        IntegerPolynomial f = new IntegerPolynomial(Arrays.copyOf(coeffs, N+1));
-        f.mod2();
-        // set g(x) = x^N − 1
-        IntegerPolynomial g = new IntegerPolynomial(N+1);
-        g.coeffs[0] = 1;
-        g.coeffs[N] = 1;
-        while (true) {
-            while (f.coeffs[0] == 0) {
-                for (int i=1; i<=N; i++) {
-                    f.coeffs[i-1] = f.coeffs[i];   // f(x) = f(x) / x
-                    c.coeffs[N+1-i] = c.coeffs[N-i];   // c(x) = c(x) * x
-                }
-                f.coeffs[N] = 0;
-                c.coeffs[0] = 0;
-                k++;
-                if (f.equalsZero())
-                    return null;   // not invertible
-            }
-            if (f.equalsOne())
-                break;
-            if (f.degree() < g.degree()) {
-                // exchange f and g
-                IntegerPolynomial temp = f;
-                f = g;
-                g = temp;
-                // exchange b and c
-                temp = b;
-                b = c;
-                c = temp;
-            }
-            f.add(g);
-            f.mod2();
-            b.add(c);
-            b.mod2();
-        }
-        
-        if (b.coeffs[N] != 0)
-            return null;
-        // Fq(x) = x^(N-k) * b(x)
-        IntegerPolynomial Fq = new IntegerPolynomial(N);
-        int j = 0;
-        k %= N;
-        for (int i=N-1; i>=0; i--) {
-            j = i - k;
-            if (j < 0)
-                j += N;
-            Fq.coeffs[j] = b.coeffs[i];
-        }
-        
-        return Fq;
+        int[] inv = BitslicedInverter.invertMod2(coeffs);
+        return inv==null ? null : new IntegerPolynomial(inv);
     }
     
     /**
@@ -464,12 +457,12 @@ public class IntegerPolynomial implements Polynomial {
      * @return The inverse of this polynomial mod q
      */
     private IntegerPolynomial mod2ToModq(IntegerPolynomial Fq, int q) {
-        if (PlatformUtil.is64BitJVM() && q==2048) {
-            LongPolynomial2 thisLong = new LongPolynomial2(this);
-            LongPolynomial2 FqLong = new LongPolynomial2(Fq);
+        if (PlatformUtil.is64BitJVM() && LongPolynomial2.isSupported(q)) {
+            LongPolynomial2 thisLong = new LongPolynomial2(this, q);
+            LongPolynomial2 FqLong = new LongPolynomial2(Fq, q);
             int v = 2;
             while (v < q) {
-                v *= 2;
+                v = v>q/v ? q : v*v;   // Newton iteration doubles the number of correct bits
                 LongPolynomial2 temp = FqLong.clone();
                 temp.mult2And(v-1);
                 FqLong = thisLong.mult(FqLong).mult(FqLong);
@@ -481,7 +474,7 @@ public class IntegerPolynomial implements Polynomial {
         else {
             int v = 2;
             while (v < q) {
-                v *= 2;
+                v = v>q/v ? q : v*v;
                 IntegerPolynomial temp = Fq.clone();
                 temp.mult2(v);
                 Fq = mult(Fq, v).mult(Fq, v);
@@ -493,74 +486,13 @@ public class IntegerPolynomial implements Polynomial {
     }
     
     /**
-     * Computes the inverse mod 3.
-     * Returns <code>null</code> if the polynomial is not invertible.<br/>
-     * The algorithm is described in <a href="http://www.securityinnovation.com/uploads/Crypto/NTRUTech014.pdf">
-     * Almost Inverses and Fast NTRU Key Generation</a>.
-     * @return a new polynomial, or <code>null</code> if no inverse exists
+     * Computes the inverse mod 3 in constant time (see {@link BitslicedInverter}).
+     * Returns <code>null</code> if the polynomial is not invertible.
+     * @return a new polynomial with coefficients between 0 and 2, or <code>null</code> if no inverse exists
      */
     public IntegerPolynomial invertF3() {
-        int N = coeffs.length;
-        int k = 0;
-        IntegerPolynomial b = new IntegerPolynomial(N+1);
-        b.coeffs[0] = 1;
-        IntegerPolynomial c = new IntegerPolynomial(N+1);
-        IntegerPolynomial f = new IntegerPolynomial(N+1);
-        f.coeffs = Arrays.copyOf(coeffs, N+1);
-        f.modPositive(3);
-        // set g(x) = x^N − 1
-        IntegerPolynomial g = new IntegerPolynomial(N+1);
-        g.coeffs[0] = -1;
-        g.coeffs[N] = 1;
-        while (true) {
-            while (f.coeffs[0] == 0) {
-                for (int i=1; i<=N; i++) {
-                    f.coeffs[i-1] = f.coeffs[i];   // f(x) = f(x) / x
-                    c.coeffs[N+1-i] = c.coeffs[N-i];   // c(x) = c(x) * x
-                }
-                f.coeffs[N] = 0;
-                c.coeffs[0] = 0;
-                k++;
-                if (f.equalsZero())
-                    return null;   // not invertible
-            }
-            if (f.equalsAbsOne())
-                break;
-            if (f.degree() < g.degree()) {
-                // exchange f and g
-                IntegerPolynomial temp = f;
-                f = g;
-                g = temp;
-                // exchange b and c
-                temp = b;
-                b = c;
-                c = temp;
-            }
-            if (f.coeffs[0] == g.coeffs[0]) {
-                f.sub(g, 3);
-                b.sub(c, 3);
-            }
-            else {
-                f.add(g, 3);
-                b.add(c, 3);
-            }
-        }
-        
-        if (b.coeffs[N] != 0)
-            return null;
-        // Fp(x) = [+-] x^(N-k) * b(x)
-        IntegerPolynomial Fp = new IntegerPolynomial(N);
-        int j = 0;
-        k %= N;
-        for (int i=N-1; i>=0; i--) {
-            j = i - k;
-            if (j < 0)
-                j += N;
-            Fp.coeffs[j] = f.coeffs[0] * b.coeffs[i];
-        }
-        
-        Fp.ensurePositive(3);
-        return Fp;
+        int[] inv = BitslicedInverter.invertMod3(coeffs);
+        return inv==null ? null : new IntegerPolynomial(inv);
     }
     
     /**
@@ -577,10 +509,45 @@ public class IntegerPolynomial implements Polynomial {
      * @return <code>(rho, res)</code> satisfying <code>res = rho*this + t*(x^n-1)</code> for some integer <code>t</code>.
      */
     public Resultant resultant() {
+        return resultant(null, 0);
+    }
+    
+    /**
+     * Multithreaded version of {@link #resultant()} that uses a shared thread pool with one thread per processor.<br/>
+     * The result is the same as that of {@link #resultant()}.
+     * @return <code>(rho, res)</code> satisfying <code>res = rho*this + t*(x^n-1)</code> for some integer <code>t</code>.
+     * @see #resultant(ExecutorService)
+     */
+    public Resultant resultantMultiThread() {
+        return resultant(RESULTANT_EXECUTOR);
+    }
+    
+    /**
+     * Multithreaded version of {@link #resultant()}.<br/>
+     * The modular resultants are computed in parallel, several primes ahead of the one being checked for the
+     * stopping condition, and the modular <code>rho</code>s are combined pairwise in parallel, one level of the
+     * combination tree at a time. Modular resultants computed beyond the stopping point are discarded, so the
+     * result is the same as that of {@link #resultant()}.
+     * @param executor the executor to run the computations in; it is not shut down
+     * @return <code>(rho, res)</code> satisfying <code>res = rho*this + t*(x^n-1)</code> for some integer <code>t</code>.
+     * @throws NtruException if the calling thread is interrupted
+     */
+    public Resultant resultant(ExecutorService executor) {
+        return resultant(executor, 2*Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Computes the resultant in the calling thread or in an executor.
+     * @param executor the executor to use, or <code>null</code> to compute the resultant in the calling thread
+     * @param window the maximum number of modular resultants to compute ahead; ignored if <code>executor</code> is <code>null</code>
+     * @return <code>(rho, res)</code>
+     */
+    private Resultant resultant(ExecutorService executor, int window) {
         int N = coeffs.length;
         
         // Compute resultants modulo prime numbers. Continue until NUM_EQUAL_RESULTANTS consecutive modular resultants are equal.
-        LinkedList<ModularResultant> modResultants = new LinkedList<ModularResultant>();
+        List<ModularResultant> modResultants = new ArrayList<ModularResultant>();
+        LinkedList<Future<ModularResultant>> pending = new LinkedList<Future<ModularResultant>>();
         BigInteger prime = null;
         BigInteger pProd = ONE;
         BigInteger pProd2 = null;
@@ -588,45 +555,57 @@ public class IntegerPolynomial implements Polynomial {
         BigInteger res = ONE;
         int numEqual = 1;   // number of consecutive modular resultants equal to each other
         Iterator<BigInteger> primes = BIGINT_PRIMES.iterator();
-        while (true) {
-            prime = primes.hasNext() ? primes.next() : prime.nextProbablePrime();
-            ModularResultant crr = resultant(prime.intValue());
-            modResultants.add(crr);
-            
-            BigInteger temp = pProd.multiply(prime);
-            BigIntEuclidean er = BigIntEuclidean.calculate(prime, pProd);
-            BigInteger resPrev = res;
-            res = res.multiply(er.x.multiply(prime));
-            BigInteger res2 = crr.res.multiply(er.y.multiply(pProd));
-            res = res.add(res2).mod(temp);
-            pProd = temp;
-            
-            pProd2 = pProd.shiftRight(1);
-            pProd2n = pProd2.negate();
-            if (res.compareTo(pProd2) > 0)
-                res = res.subtract(pProd);
-            else if (res.compareTo(pProd2n) < 0)
-                res = res.add(pProd);
-            
-            if (res.equals(resPrev)) {
-                numEqual++;
-                if (numEqual >= NUM_EQUAL_RESULTANTS)
-                    break;
+        try {
+            while (true) {
+                ModularResultant crr;
+                if (executor == null) {
+                    prime = primes.hasNext() ? primes.next() : prime.nextProbablePrime();
+                    crr = resultant(prime.intValue());
+                }
+                else {
+                    // keep up to window modular resultants in progress and consume them in the order of the primes
+                    while (pending.size() < window) {
+                        prime = primes.hasNext() ? primes.next() : prime.nextProbablePrime();
+                        pending.add(executor.submit(new ModularResultantTask(prime.intValue())));
+                    }
+                    crr = getResult(pending.removeFirst());
+                }
+                modResultants.add(crr);
+                BigInteger modulus = crr.modulus;
+                
+                BigInteger temp = pProd.multiply(modulus);
+                BigIntEuclidean er = BigIntEuclidean.calculate(modulus, pProd);
+                BigInteger resPrev = res;
+                res = res.multiply(er.x.multiply(modulus));
+                BigInteger res2 = crr.res.multiply(er.y.multiply(pProd));
+                res = res.add(res2).mod(temp);
+                pProd = temp;
+                
+                pProd2 = pProd.shiftRight(1);
+                pProd2n = pProd2.negate();
+                if (res.compareTo(pProd2) > 0)
+                    res = res.subtract(pProd);
+                else if (res.compareTo(pProd2n) < 0)
+                    res = res.add(pProd);
+                
+                if (res.equals(resPrev)) {
+                    numEqual++;
+                    if (numEqual >= NUM_EQUAL_RESULTANTS)
+                        break;
+                }
+                else
+                    numEqual = 1;
             }
-            else
-                numEqual = 1;
+        }
+        finally {
+            for (Future<ModularResultant> future: pending)
+                future.cancel(true);
         }
         
         // Combine modular rho's to obtain the final rho.
         // For efficiency, first combine all pairs of small resultants to bigger resultants,
         // then combine pairs of those, etc. until only one is left.
-        while (modResultants.size() > 1) {
-            ModularResultant modRes1 = modResultants.removeFirst();
-            ModularResultant modRes2 = modResultants.removeFirst();
-            ModularResultant modRes3 = ModularResultant.combineRho(modRes1, modRes2);
-            modResultants.addLast(modRes3);
-        }
-        BigIntPolynomial rhoP = modResultants.getFirst().rho;
+        BigIntPolynomial rhoP = executor==null ? combineRho(modResultants) : combineRho(modResultants, executor);
         
         if (res.compareTo(pProd2) > 0)
             res = res.subtract(pProd);
@@ -644,41 +623,107 @@ public class IntegerPolynomial implements Polynomial {
         return new Resultant(rhoP, res);
     }
     
+    /**
+     * Combines modular resultants into one <code>rho</code> modulo the product of all moduli.
+     * @param modResultants a list of modular resultants
+     * @return <code>rho</code>
+     */
+    private BigIntPolynomial combineRho(List<ModularResultant> modResultants) {
+        LinkedList<ModularResultant> queue = new LinkedList<ModularResultant>(modResultants);
+        while (queue.size() > 1) {
+            ModularResultant modRes1 = queue.removeFirst();
+            ModularResultant modRes2 = queue.removeFirst();
+            ModularResultant modRes3 = ModularResultant.combineRho(modRes1, modRes2);
+            queue.addLast(modRes3);
+        }
+        return queue.getFirst().rho;
+    }
+    
+    /**
+     * Combines modular resultants into one <code>rho</code> modulo the product of all moduli.<br/>
+     * All pairs on one level of the combination tree are combined in parallel.
+     * @param modResultants a list of modular resultants
+     * @param executor the executor to run the computations in
+     * @return <code>rho</code>
+     */
+    private BigIntPolynomial combineRho(List<ModularResultant> modResultants, ExecutorService executor) {
+        List<ModularResultant> level = modResultants;
+        while (level.size() > 1) {
+            List<Future<ModularResultant>> combined = new ArrayList<Future<ModularResultant>>();
+            for (int i=0; i+1<level.size(); i+=2)
+                combined.add(executor.submit(new CombineRhoTask(level.get(i), level.get(i+1))));
+            List<ModularResultant> nextLevel = new ArrayList<ModularResultant>();
+            for (Future<ModularResultant> future: combined)
+                nextLevel.add(getResult(future));
+            if (level.size()%2 == 1)
+                nextLevel.add(level.get(level.size()-1));
+            level = nextLevel;
+        }
+        return level.get(0).rho;
+    }
+    
+    /** Waits for a modular resultant computation and rethrows its exception, if any */
+    private ModularResultant getResult(Future<ModularResultant> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NtruException)
+                throw (NtruException)e.getCause();
+            throw new NtruException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NtruException(e);
+        }
+    }
+    
     /**
      * Resultant of this polynomial with <code>x^n-1 mod p</code>.<br/>
+     * @param p a prime less than <code>sqrt(2^31)</code>
      * @return <code>(rho, res)</code> satisfying <code>res = rho*this + t*(x^n-1) mod p</code> for some integer <code>t</code>.
      */
     public ModularResultant resultant(int p) {
-        // Add a coefficient as the following operations involve polynomials of degree deg(f)+1
-        int[] fcoeffs = Arrays.copyOf(coeffs, coeffs.length+1);
-        IntegerPolynomial f = new IntegerPolynomial(fcoeffs);
-        int N = fcoeffs.length;
+        // The following operations involve polynomials of degree deg(f)+1, so add a coefficient.
+        // All coefficients are kept in [0, p) and reduced with a Barrett multiplier, which avoids
+        // integer divisions in the inner loop; degrees are tracked instead of recomputed.
+        int N = coeffs.length + 1;
+        long barrett = (1L<<32) / p;
+        ResultantWorkspace ws = RESULTANT_WORKSPACE.get();
+        ws.ensureCapacity(N);
+        int[] a = ws.a;
+        int[] b = ws.b;
+        int[] v1 = ws.v1;
+        int[] v2 = ws.v2;
         
-        IntegerPolynomial a = new IntegerPolynomial(N);
-        a.coeffs[0] = -1;
-        a.coeffs[N-1] = 1;
-        IntegerPolynomial b = new IntegerPolynomial(f.coeffs);
-        IntegerPolynomial v1 = new IntegerPolynomial(N);
-        IntegerPolynomial v2 = new IntegerPolynomial(N);
-        v2.coeffs[0] = 1;
+        Arrays.fill(a, 0, N, 0);
+        a[0] = p - 1;
+        a[N-1] = 1;
+        for (int i=0; i<N-1; i++) {
+            int c = coeffs[i] % p;
+            b[i] = c<0 ? c+p : c;
+        }
+        b[N-1] = 0;
+        Arrays.fill(v1, 0, N, 0);
+        Arrays.fill(v2, 0, N, 0);
+        v2[0] = 1;
         int da = N - 1;
-        int db = b.degree();
+        int db = degree(b, N-1);
+        int dv1 = 0;   // upper bounds for the degrees of v1 and v2
+        int dv2 = 0;
         int ta = da;
-        int c = 0;
         int r = 1;
         while (db > 0) {
-            c = invert(b.coeffs[db], p);
-            c = (c * a.coeffs[da]) % p;
-            a.multShiftSub(b, c, da-db, p);
-            v1.multShiftSub(v2, c, da-db, p);
+            int c = mulMod(invertModPrime(b[db], p), a[da], p, barrett);
+            int k = da - db;
+            multShiftSub(a, b, db, c, k, N, p, barrett);
+            multShiftSub(v1, v2, dv2, c, k, N, p, barrett);
+            dv1 = Math.min(Math.max(dv1, dv2+k), N-1);
             
-            da = a.degree();
+            da = degree(a, da);
             if (da < db) {
-                r *= pow(b.coeffs[db], ta-da, p);
-                r %= p;
-                if (ta%2==1 && db%2==1)
-                    r = (-r) % p;
-                IntegerPolynomial temp = a;
+                r = mulMod(r, powMod(b[db], ta-da, p, barrett), p, barrett);
+                if (ta%2==1 && db%2==1 && r!=0)
+                    r = p - r;
+                int[] temp = a;
                 a = b;
                 b = temp;
                 int tempdeg = da;
@@ -686,64 +731,106 @@ public class IntegerPolynomial implements Polynomial {
                 temp = v1;
                 v1 = v2;
                 v2 = temp;
+                int tempdv = dv1;
+                dv1 = dv2;
+                dv2 = tempdv;
                 ta = db;
                 db = tempdeg;
             }
         }
-        r *= pow(b.coeffs[0], da, p);
-        r %= p;
-        c = invert(b.coeffs[0], p);
-        v2.mult(c);
-        v2.mod(p);
-        v2.mult(r);
-        v2.mod(p);
+        r = mulMod(r, powMod(b[0], da, p, barrett), p, barrett);
+        int c = mulMod(invertModPrime(b[0], p), r, p, barrett);
         
         // drop the highest coefficient so #coeffs matches the original input
-        v2.coeffs = Arrays.copyOf(v2.coeffs, v2.coeffs.length-1);
-        return new ModularResultant(new BigIntPolynomial(v2), BigInteger.valueOf(r), BigInteger.valueOf(p));
-    }
-    
-    /** Calculates the inverse of n mod modulus */
-    private int invert(int n, int modulus) {
-        n %= modulus;
-        if (n < 0)
-            n += modulus;
-        return IntEuclidean.calculate(n, modulus).x;
-    }
-    
-    /** Calculates a^b mod modulus */
-    private int pow(int a, int b, int modulus) {
-        int p = 1;
-        for (int i=0; i<b; i++)
-            p = (p*a) % modulus;
-        return p;
+        BigInteger[] rho = new BigInteger[N-1];
+        for (int i=0; i<N-1; i++)
+            rho[i] = BigInteger.valueOf(mulMod(v2[i], c, p, barrett));
+        return new ModularResultant(new BigIntPolynomial(rho), BigInteger.valueOf(r), BigInteger.valueOf(p));
     }
     
     /**
-     * Computes <code>this-b*c*(x^k) mod p</code> and stores the result in this polynomial.<br/>
+     * Computes <code>a-b*c*(x^k) mod p</code> for polynomials whose coefficients are in <code>[0, p)</code> and stores
+     * the result in <code>a</code>. Coefficients shifted beyond <code>x^(N-1)</code> are dropped.<br/>
      * See steps 4a,4b in EESS algorithm 2.2.7.1.
-     * @param b
-     * @param c
-     * @param k
-     * @param p
+     * @param a the polynomial to subtract from
+     * @param b the polynomial to multiply by <code>c*x^k</code>
+     * @param db an upper bound for the degree of <code>b</code>
+     * @param c a number in <code>[0, p)</code>
+     * @param k the shift
+     * @param N the number of coefficients
+     * @param p the modulus
+     * @param barrett <code>floor(2^32/p)</code>
      */
-    private void multShiftSub(IntegerPolynomial b, int c, int k, int p) {
-        int N = coeffs.length;
-        for (int i=k; i<N; i++)
-            coeffs[i] = (coeffs[i]-b.coeffs[i-k]*c) % p;
+    private static void multShiftSub(int[] a, int[] b, int db, int c, int k, int N, int p, long barrett) {
+        int end = Math.min(db, N-1-k);
+        for (int j=0; j<=end; j++) {
+            int t = a[j+k] - mulMod(b[j], c, p, barrett);
+            a[j+k] = t + ((t>>31) & p);
+        }
     }
     
     /**
-     * Returns the degree of the polynomial
+     * Returns the degree of a polynomial whose degree is known to be at most <code>maxDegree</code>.
+     * @param a the coefficients
+     * @param maxDegree an upper bound for the degree
      * @return the degree
      */
-    private int degree() {
-        int degree = coeffs.length - 1;
-        while (degree>0 && coeffs[degree]==0)
+    private static int degree(int[] a, int maxDegree) {
+        int degree = maxDegree;
+        while (degree>0 && a[degree]==0)
             degree--;
         return degree;
     }
     
+    /**
+     * Computes <code>x*y mod p</code> for <code>x, y</code> in <code>[0, p)</code> using Barrett reduction.
+     * <code>p</code> must be less than <code>sqrt(2^31)</code>.
+     * @param barrett <code>floor(2^32/p)</code>
+     * @return a number in <code>[0, p)</code>
+     */
+    private static int mulMod(int x, int y, int p, long barrett) {
+        int xy = x * y;
+        int q = (int)((xy*barrett) >>> 32);
+        int r = xy - q*p - p;   // xy-q*p is in [0, 2p)
+        return r + ((r>>31) & p);
+    }
+    
+    /** Calculates <code>a^b mod p</code> by repeated squaring */
+    private static int powMod(int a, int b, int p, long barrett) {
+        int result = 1;
+        while (b > 0) {
+            if ((b&1) != 0)
+                result = mulMod(result, a, p, barrett);
+            a = mulMod(a, a, p, barrett);
+            b >>>= 1;
+        }
+        return result;
+    }
+    
+    /**
+     * Calculates the inverse of <code>n</code> modulo a prime <code>p</code>.
+     * @param n a number in <code>[0, p)</code>
+     * @return a number in <code>[0, p)</code>, or 0 if <code>n=0</code>
+     */
+    private static int invertModPrime(int n, int p) {
+        int x = 0;
+        int lastx = 1;
+        int a = n;
+        int b = p;
+        while (b != 0) {
+            int quotient = a / b;
+            int temp = a;
+            a = b;
+            b = temp % b;
+            temp = x;
+            x = lastx - quotient*x;
+            lastx = temp;
+        }
+        if (a != 1)
+            return 0;
+        return lastx<0 ? lastx+p : lastx;
+    }
+    
     /**
      * Adds another polynomial which must not have more coefficients than <code>this</code>
      * polynomial, and takes the coefficient values mod <code>modulus</code>.
@@ -760,8 +847,7 @@ public class IntegerPolynomial implements Polynomial {
      * @param b another polynomial
      */
     public void add(IntegerPolynomial b) {
-        for (int i=0; i<b.coeffs.length; i++)
-            coeffs[i] += b.coeffs[i];
+        backend.add(coeffs, b.coeffs);
     }
     
     /**
@@ -859,25 +945,11 @@ public class IntegerPolynomial implements Polynomial {
         }
     }
     
-    /**
-     * Optimized version of <code>modPositive(2)</code>.
-     */
-    private void mod2() {
-        for (int i=0; i<coeffs.length; i++)
-            coeffs[i] &= 1;
-    }
-    
     /**
      * Takes each coefficient modulo 3 such that all coefficients are ternary.
      */
     public void mod3() {
-        for (int i=0; i<coeffs.length; i++) {
-            coeffs[i] %= 3;
-            if (coeffs[i] > 1)
-                coeffs[i] -= 3;
-            if (coeffs[i] < -1)
-                coeffs[i] += 3;
-        }
+        backend.mod3(coeffs);
     }
     
     /**
@@ -885,13 +957,7 @@ public class IntegerPolynomial implements Polynomial {
      * @param modulus a modulus
      */
     public void modPositive(int modulus) {
-        if (modulus == 2048)
-            for (int i=0; i<coeffs.length; i++)
-                coeffs[i] &= 2047;
-        else {
-            mod(modulus);
-            ensurePositive(modulus);
-        }
+        backend.modPositive(coeffs, modulus);
     }
     
     /** Reduces all coefficients to the interval [-modulus/2, modulus/2) */
@@ -1006,22 +1072,20 @@ public class IntegerPolynomial implements Polynomial {
      * @param q a modulus
      */
     public void center0(int q) {
-        if (q == 2048)
-            for (int i=0; i<coeffs.length; i++) {
-                int c = coeffs[i] & 2047;
-                if (c >= 1024)
-                    c -= 2048;
-                coeffs[i] = c;
-            }
-        else
-            for (int i=0; i<coeffs.length; i++) {
-                while (coeffs[i] < -q/2)
-                    coeffs[i] += q;
-                while (coeffs[i] > q/2)
-                    coeffs[i] -= q;
-            }
+        backend.center0(coeffs, q);
     }
     
+    /**
+     * Does the same as {@link #center0(int)} followed by {@link #mod3()}, and also counts the coefficients
+     * equal to <code>-1</code>, <code>0</code>, and <code>1</code>. This is done in a single pass over the coefficients.<br/>
+     * The running time does not depend on the coefficient values if <code>q</code> is 3 or a power of 2.
+     * @param q a modulus
+     * @return the number of coefficients equal to <code>-1</code>, <code>0</code>, and <code>1</code>, in that order
+     */
+    public int[] center0Mod3(int q) {
+        return backend.center0Mod3(coeffs, q);
+    }
+
     /**
      * Returns the sum of all coefficients, i.e. evaluates the polynomial at 1.
      * @return the sum of all coefficients
@@ -1033,17 +1097,6 @@ public class IntegerPolynomial implements Polynomial {
         return sum;
     }
     
-    /**
-     * Tests if <code>p(x) = 0</code>.
-     * @return true iff all coefficients are zeros
-     */
-    private boolean equalsZero() {
-        for (int i=0; i<coeffs.length; i++)
-            if (coeffs[i] != 0)
-                return false;
-        return true;
-    }
-    
     /**
      * Tests if <code>p(x) = 1</code>.
      * @return true iff all coefficients are equal to zero, except for the lowest coefficient which must equal 1
@@ -1056,26 +1109,17 @@ public class IntegerPolynomial implements Polynomial {
     }
     
     /**
-     * Tests if <code>|p(x)| = 1</code>.
-     * @return true iff all coefficients are equal to zero, except for the lowest coefficient which must equal 1 or -1
-     */
-    private boolean equalsAbsOne() {
-        for (int i=1; i<coeffs.length; i++)
-            if (coeffs[i] != 0)
-                return false;
-        return Math.abs(coeffs[0]) == 1;
-    }
-    
-    /**
-     * Counts the number of coefficients equal to an integer
+     * Counts the number of coefficients equal to an integer.
+     * The running time does not depend on the coefficient values.
      * @param value an integer
      * @return the number of coefficients equal to <code>value</code>
      */
     public int count(int value) {
         int count = 0;
-        for (int coeff: coeffs)
-            if (coeff == value)
-                count++;
+        for (int coeff: coeffs) {
+            int diff = coeff ^ value;
+            count += ((diff|-diff)>>>31) ^ 1;   // 1 if diff=0, 0 otherwise
+        }
         return count;
     }
     
@@ -1136,4 +1180,68 @@ public class IntegerPolynomial implements Polynomial {
         else
             return false;
     }
+    
+    /**
+     * Like {@link #equals(Object)} but always compares all coefficients, so the running time does not depend
+     * on where the first difference is.
+     * @param poly2 a polynomial with the same number of coefficients
+     * @return <code>true</code> if all coefficients are equal
+     */
+    public boolean equalsConstantTime(IntegerPolynomial poly2) {
+        if (poly2.coeffs.length != coeffs.length)
+            throw new NtruException("Number of coefficients must be the same");
+        
+        int diff = 0;
+        for (int i=0; i<coeffs.length; i++)
+            diff |= coeffs[i] ^ poly2.coeffs[i];
+        return diff == 0;
+    }
+    
+    /** Computes the resultant modulo one prime */
+    private class ModularResultantTask implements Callable<ModularResultant> {
+        private int p;
+        
+        ModularResultantTask(int p) {
+            this.p = p;
+        }
+        
+        @Override
+        public ModularResultant call() {
+            return resultant(p);
+        }
+    }
+    
+    /** The four polynomials of the extended Euclidean algorithm in {@link IntegerPolynomial#resultant(int)} */
+    private static class ResultantWorkspace {
+        int[] a = new int[0];
+        int[] b = new int[0];
+        int[] v1 = new int[0];
+        int[] v2 = new int[0];
+        
+        /** Makes sure each array has at least <code>N</code> elements */
+        void ensureCapacity(int N) {
+            if (a.length < N) {
+                a = new int[N];
+                b = new int[N];
+                v1 = new int[N];
+                v2 = new int[N];
+            }
+        }
+    }
+    
+    /** Combines two modular <code>rho</code>s */
+    private static class CombineRhoTask implements Callable<ModularResultant> {
+        private ModularResultant modRes1;
+        private ModularResultant modRes2;
+        
+        CombineRhoTask(ModularResultant modRes1, ModularResultant modRes2) {
+            this.modRes1 = modRes1;
+            this.modRes2 = modRes2;
+        }
+        
+        @Override
+        public ModularResultant call() {
+            return ModularResultant.combineRho(modRes1, modRes2);
+        }
+    }
 }
\ No newline at end of file
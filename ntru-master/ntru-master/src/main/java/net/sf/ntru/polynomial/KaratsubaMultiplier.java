@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import net.sf.ntru.exception.NtruException;
+
+/**
+ * Multiplies polynomials using the Karatsuba algorithm. Below 32 coefficients, schoolbook multiplication is used.<br/>
+ * All intermediate values are kept in a {@link PolynomialWorkspace}, so the only memory allocated
+ * by a multiplication is the returned array. If no workspace is given, a per-thread workspace is used.
+ */
+public class KaratsubaMultiplier implements PolynomialMultiplier {
+    static final int SCHOOLBOOK_THRESHOLD = 32;
+    
+    private static final ThreadLocal<PolynomialWorkspace> WORKSPACE = new ThreadLocal<PolynomialWorkspace>() {
+        @Override
+        protected PolynomialWorkspace initialValue() {
+            return new PolynomialWorkspace(0);
+        }
+    };
+    
+    @Override
+    public int[] multiply(int[] a, int[] b) {
+        PolynomialWorkspace workspace = WORKSPACE.get();
+        if (workspace.N < a.length) {
+            workspace = new PolynomialWorkspace(a.length);
+            WORKSPACE.set(workspace);
+        }
+        return multiply(a, b, workspace);
+    }
+    
+    /**
+     * Multiplies two polynomials, taking the indices mod <code>N</code>. Neither argument is modified.
+     * @param a the coefficients of the first polynomial
+     * @param b the coefficients of the second polynomial; must be of the same length as <code>a</code>
+     * @param workspace scratch memory for at least <code>N</code> coefficients
+     * @return the <code>N</code> coefficients of the product
+     */
+    public int[] multiply(int[] a, int[] b, PolynomialWorkspace workspace) {
+        int N = a.length;
+        if (workspace.N < N)
+            throw new NtruException("Workspace is too small: " + workspace.N + " < " + N);
+        
+        int[] c = new int[N];
+        if (N == 0)
+            return c;
+        int[] product = workspace.product;
+        multRecursive(a, 0, b, 0, N, product, 0, workspace.scratch, 0);
+        
+        System.arraycopy(product, 0, c, 0, N);
+        for (int k=N; k<2*N-1; k++)
+            c[k-N] += product[k];
+        return c;
+    }
+    
+    /**
+     * Multiplies <code>n</code> coefficients of <code>a</code> by <code>n</code> coefficients of <code>b</code>
+     * and stores the <code>2n-1</code> coefficients of the non-reduced product in <code>c</code>.
+     * @param scratch temporary storage; elements from <code>sOff</code> on may be overwritten
+     */
+    private void multRecursive(int[] a, int aOff, int[] b, int bOff, int n, int[] c, int cOff, int[] scratch, int sOff) {
+        if (n <= SCHOOLBOOK_THRESHOLD) {
+            int cn = 2 * n - 1;
+            for (int k=0; k<cn; k++) {
+                int sum = 0;
+                for (int i=Math.max(0, k-n+1); i<=Math.min(k,n-1); i++)
+                    sum += b[bOff+i] * a[aOff+k-i];
+                c[cOff+k] = sum;
+            }
+        }
+        else {
+            int n1 = n / 2;
+            int n2 = n - n1;
+            
+            // c1=a1*b1 goes into c[0..2*n1-2], c2=a2*b2 into c[2*n1..2*n-2]
+            multRecursive(a, aOff, b, bOff, n1, c, cOff, scratch, sOff);
+            multRecursive(a, aOff+n1, b, bOff+n1, n2, c, cOff+2*n1, scratch, sOff);
+            c[cOff+2*n1-1] = 0;
+            
+            // A=a1+a2 and B=b1+b2, both of length n2
+            int A = sOff;
+            int B = sOff + n2;
+            for (int i=0; i<n2; i++) {
+                scratch[A+i] = a[aOff+n1+i];
+                scratch[B+i] = b[bOff+n1+i];
+            }
+            for (int i=0; i<n1; i++) {
+                scratch[A+i] += a[aOff+i];
+                scratch[B+i] += b[bOff+i];
+            }
+            
+            // c3 = A*B - c1 - c2
+            int c3 = sOff + 2*n2;
+            int c3Len = 2*n2 - 1;
+            multRecursive(scratch, A, scratch, B, n2, scratch, c3, scratch, c3+c3Len);
+            for (int i=0; i<2*n1-1; i++)
+                scratch[c3+i] -= c[cOff+i];
+            for (int i=0; i<c3Len; i++)
+                scratch[c3+i] -= c[cOff+2*n1+i];
+            
+            for (int i=0; i<c3Len; i++)
+                c[cOff+n1+i] += scratch[c3+i];
+        }
+    }
+}
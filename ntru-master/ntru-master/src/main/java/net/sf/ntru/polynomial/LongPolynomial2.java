@@ -33,77 +33,102 @@ import net.sf.ntru.exception.NtruException;
 /**
  * A polynomial class that combines two coefficients into one <code>long</code> value for
  * faster multiplication in 64 bit environments.<br/>
- * Coefficients can be between 0 and 2047 and are stored in pairs in the bits 0..10 and 24..34 of a <code>long</code> number.
+ * Coefficients are taken mod <code>q</code>, which must be a power of 2 no greater than 4096. They are stored
+ * in pairs in the bits <code>0..log2(q)-1</code> and <code>shift..shift+log2(q)-1</code> of a <code>long</code> number,
+ * where <code>shift</code> leaves enough room for the product of two coefficients; for <code>q=2048</code>,
+ * those are bits 0..10 and 24..34.
  */
 class LongPolynomial2 {
     private long[] coeffs;   // each representing two coefficients in the original IntegerPolynomial
     private int numCoeffs;
+    private int q;
+    /** the position of the second coefficient */
+    private int shift;
+    /** <code>q-1</code> in both coefficients */
+    private long mask;
     
     /**
      * Constructs a <code>LongPolynomial2</code> from a <code>IntegerPolynomial</code>. The two polynomials are independent of each other.
-     * @param p the original polynomial. Coefficients must be between 0 and 2047.
+     * @param p the original polynomial. Coefficients are reduced mod <code>q</code>.
+     * @param q the modulus
+     * @throws NtruException if <code>q</code> is not supported
+     * @see #isSupported(int)
      */
-    LongPolynomial2(IntegerPolynomial p) {
+    LongPolynomial2(IntegerPolynomial p, int q) {
+        if (!isSupported(q))
+            throw new NtruException("Modulus must be a power of 2 between 2 and 4096: " + q);
+        
+        this.q = q;
+        // the sum of two products of coefficients must fit below the second coefficient,
+        // and the low log2(q) bits of a product of two second coefficients must fit in a long
+        shift = Math.max(24, 2*Integer.numberOfTrailingZeros(q)+1);
+        mask = (((long)q-1)<<shift) + q - 1;
+        
         numCoeffs = p.coeffs.length;
         coeffs = new long[(numCoeffs+1) / 2];
         int idx = 0;
         for (int pIdx=0; pIdx<numCoeffs;) {
-            int c0 = p.coeffs[pIdx++];
-            while (c0 < 0)
-                c0 += 2048;
-            long c1 = pIdx<numCoeffs ? p.coeffs[pIdx++] : 0;
-            while (c1 < 0)
-                c1 += 2048;
-            coeffs[idx] = c0 + (c1<<24);
+            int c0 = p.coeffs[pIdx++] & (q-1);
+            long c1 = pIdx<numCoeffs ? p.coeffs[pIdx++]&(q-1) : 0;
+            coeffs[idx] = c0 + (c1<<shift);
             idx++;
         }
     }
     
-    private LongPolynomial2(long[] coeffs) {
+    private LongPolynomial2(long[] coeffs, LongPolynomial2 template) {
         this.coeffs = coeffs;
+        numCoeffs = template.numCoeffs;
+        q = template.q;
+        shift = template.shift;
+        mask = template.mask;
     }
     
-    private LongPolynomial2(int N) {
-        coeffs = new long[N];
+    /**
+     * Tells whether polynomials mod <code>q</code> can be represented as a <code>LongPolynomial2</code>.
+     * @param q a modulus
+     * @return <code>true</code> if <code>q</code> is a power of 2 between 2 and 4096
+     */
+    static boolean isSupported(int q) {
+        return q>=2 && q<=4096 && (q&(q-1))==0;
     }
     
-    /** Multiplies the polynomial with another, taking the indices mod N and the values mod 2048. */
+    /** Multiplies the polynomial with another, taking the indices mod N and the values mod q. */
     public LongPolynomial2 mult(LongPolynomial2 poly2) {
         int N = coeffs.length;
         if (poly2.coeffs.length!=N || numCoeffs!=poly2.numCoeffs)
             throw new NtruException("Number of coefficients must be the same");
+        if (q != poly2.q)
+            throw new NtruException("Moduli must be the same");
 
         LongPolynomial2 c = multRecursive(poly2);
         
         if (c.coeffs.length > N) {
             if (numCoeffs%2 == 0) {
                 for (int k=N; k<c.coeffs.length; k++)
-                    c.coeffs[k-N] = (c.coeffs[k-N]+c.coeffs[k]) & 0x7FF0007FFL;
+                    c.coeffs[k-N] = (c.coeffs[k-N]+c.coeffs[k]) & mask;
                 c.coeffs = Arrays.copyOf(c.coeffs, N);
             }
             else {
                 for (int k=N; k<c.coeffs.length; k++) {
-                    c.coeffs[k-N] = c.coeffs[k-N] + (c.coeffs[k-1]>>24);
-                    c.coeffs[k-N] = c.coeffs[k-N] + ((c.coeffs[k]&2047)<<24);
-                    c.coeffs[k-N] &= 0x7FF0007FFL;
+                    c.coeffs[k-N] = c.coeffs[k-N] + (c.coeffs[k-1]>>shift);
+                    c.coeffs[k-N] = c.coeffs[k-N] + ((c.coeffs[k]&(q-1))<<shift);
+                    c.coeffs[k-N] &= mask;
                 }
                 c.coeffs = Arrays.copyOf(c.coeffs, N);
-                c.coeffs[c.coeffs.length-1] &= 2047;
+                c.coeffs[c.coeffs.length-1] &= q-1;
             }
         }
 
-        c = new LongPolynomial2(c.coeffs);
-        c.numCoeffs = numCoeffs;
-        return c;
+        return new LongPolynomial2(c.coeffs, this);
     }
     
     public IntegerPolynomial toIntegerPolynomial() {
         int[] intCoeffs = new int[numCoeffs];
         int uIdx = 0;
         for (int i=0; i<coeffs.length; i++) {
-            intCoeffs[uIdx++] = (int)(coeffs[i] & 2047);
+            intCoeffs[uIdx++] = (int)(coeffs[i] & (q-1));
             if (uIdx < numCoeffs)
-                intCoeffs[uIdx++] = (int)((coeffs[i]>>24) & 2047);
+                intCoeffs[uIdx++] = (int)((coeffs[i]>>shift) & (q-1));
         }
         return new IntegerPolynomial(intCoeffs);
     }
@@ -116,15 +141,16 @@ class LongPolynomial2 {
         int n = poly2.coeffs.length;
         if (n <= 32) {
             int cn = 2 * n;
-            LongPolynomial2 c = new LongPolynomial2(new long[cn]);
+            LongPolynomial2 c = new LongPolynomial2(new long[cn], this);
+            int shift2 = 2 * shift;
             for (int k=0; k<cn; k++) {
                 for (int i=Math.max(0, k-n+1); i<=Math.min(k,n-1); i++) {
                     long c0 = a[k-i] * b[i];
-                    long cu = c0&0x7FF000000L + (c0&2047);
-                    long co = (c0>>>48) & 2047;
+                    long cu = c0 & mask;
+                    long co = (c0>>>shift2) & (q-1);
                     
-                    c.coeffs[k] = (c.coeffs[k]+cu) & 0x7FF0007FFL;
-                    c.coeffs[k+1] = (c.coeffs[k+1]+co) & 0x7FF0007FFL;
+                    c.coeffs[k] = (c.coeffs[k]+cu) & mask;
+                    c.coeffs[k+1] = (c.coeffs[k+1]+co) & mask;
                 }
             }
             return c;
@@ -132,10 +158,10 @@ class LongPolynomial2 {
         else {
             int n1 = n / 2;
 
-            LongPolynomial2 a1 = new LongPolynomial2(Arrays.copyOf(a, n1));
-            LongPolynomial2 a2 = new LongPolynomial2(Arrays.copyOfRange(a, n1, n));
-            LongPolynomial2 b1 = new LongPolynomial2(Arrays.copyOf(b, n1));
-            LongPolynomial2 b2 = new LongPolynomial2(Arrays.copyOfRange(b, n1, n));
+            LongPolynomial2 a1 = new LongPolynomial2(Arrays.copyOf(a, n1), this);
+            LongPolynomial2 a2 = new LongPolynomial2(Arrays.copyOfRange(a, n1, n), this);
+            LongPolynomial2 b1 = new LongPolynomial2(Arrays.copyOf(b, n1), this);
+            LongPolynomial2 b2 = new LongPolynomial2(Arrays.copyOfRange(b, n1, n), this);
 
             LongPolynomial2 A = a1.clone();
             A.add(a2);
@@ -148,13 +174,13 @@ class LongPolynomial2 {
             c3.sub(c1);
             c3.sub(c2);
 
-            LongPolynomial2 c = new LongPolynomial2(2*n);
+            LongPolynomial2 c = new LongPolynomial2(new long[2*n], this);
             for (int i=0; i<c1.coeffs.length; i++)
-                c.coeffs[i] = c1.coeffs[i] & 0x7FF0007FFL;
+                c.coeffs[i] = c1.coeffs[i] & mask;
             for (int i=0; i<c3.coeffs.length; i++)
-                c.coeffs[n1+i] = (c.coeffs[n1+i] + c3.coeffs[i]) & 0x7FF0007FFL;
+                c.coeffs[n1+i] = (c.coeffs[n1+i] + c3.coeffs[i]) & mask;
             for (int i=0; i<c2.coeffs.length; i++)
-                c.coeffs[2*n1+i] = (c.coeffs[2*n1+i] + c2.coeffs[i]) & 0x7FF0007FFL;
+                c.coeffs[2*n1+i] = (c.coeffs[2*n1+i] + c2.coeffs[i]) & mask;
             return c;
         }
     }
@@ -167,7 +193,7 @@ class LongPolynomial2 {
         if (b.coeffs.length > coeffs.length)
             coeffs = Arrays.copyOf(coeffs, b.coeffs.length);
         for (int i=0; i<b.coeffs.length; i++)
-            coeffs[i] = (coeffs[i] + b.coeffs[i]) & 0x7FF0007FFL;
+            coeffs[i] = (coeffs[i] + b.coeffs[i]) & mask;
     }
     
     /**
@@ -177,38 +203,38 @@ class LongPolynomial2 {
     private void sub(LongPolynomial2 b) {
         if (b.coeffs.length > coeffs.length)
             coeffs = Arrays.copyOf(coeffs, b.coeffs.length);
+        long borrow = (((long)q)<<shift) + q;
         for (int i=0; i<b.coeffs.length; i++)
-            coeffs[i] = (0x0800000800000L + coeffs[i] - b.coeffs[i]) & 0x7FF0007FFL;
+            coeffs[i] = (borrow + coeffs[i] - b.coeffs[i]) & mask;
     }
 
     /**
      * Subtracts another polynomial which must have the same number of coefficients,
      * and applies an AND mask to the upper and lower halves of each coefficients.
      * @param b another polynomial
-     * @param mask a bit mask less than 2048 to apply to each 11-bit coefficient
+     * @param mask a bit mask less than <code>q</code> to apply to each coefficient
      */
     void subAnd(LongPolynomial2 b, int mask) {
-        long longMask = (((long)mask)<<24) + mask;
+        long longMask = (((long)mask)<<shift) + mask;
+        long borrow = (((long)q)<<shift) + q;
         for (int i=0; i<b.coeffs.length; i++)
-            coeffs[i] = (0x0800000800000L + coeffs[i] - b.coeffs[i]) & longMask;
+            coeffs[i] = (borrow + coeffs[i] - b.coeffs[i]) & longMask;
     }
 
     /**
      * Multiplies this polynomial by 2 and applies an AND mask to the upper and 
      * lower halves of each coefficients.
-     * @param mask a bit mask less than 2048 to apply to each 11-bit coefficient
+     * @param mask a bit mask less than <code>q</code> to apply to each coefficient
      */
     void mult2And(int mask) {
-        long longMask = (((long)mask)<<24) + mask;
+        long longMask = (((long)mask)<<shift) + mask;
         for (int i=0; i<coeffs.length; i++)
             coeffs[i] = (coeffs[i]<<1) & longMask;
     }
 
     @Override
     public LongPolynomial2 clone() {
-        LongPolynomial2 p = new LongPolynomial2(coeffs.clone());
-        p.numCoeffs = numCoeffs;
-        return p;
+        return new LongPolynomial2(coeffs.clone(), this);
     }
     
     @Override
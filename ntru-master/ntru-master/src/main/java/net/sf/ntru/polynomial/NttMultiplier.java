@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import java.math.BigInteger;
+
+/**
+ * Multiplies polynomials using number-theoretic transforms (NTTs) modulo up to three 30-bit primes.<br/>
+ * Both factors are zero-padded to a power-of-two length of at least <code>2N-1</code> so the cyclic
+ * convolution of the transform yields the non-reduced product, which is then folded mod <code>X^N-1</code>.
+ * The exact product coefficients are reconstructed from their residues using the Chinese Remainder Theorem.
+ * The number of primes is chosen from the magnitude of the input coefficients, so multiplying two polynomials
+ * mod 2048 takes two transforms per factor and prime while arbitrary <code>int</code> coefficients require three primes.<br/>
+ * The asymptotic cost is <code>O(N log N)</code> which beats Karatsuba for large <code>N</code>;
+ * {@link CrossoverMultiplier} selects between the two.
+ */
+public class NttMultiplier implements PolynomialMultiplier {
+    /** Primes of the form <code>k*2^m+1</code>, in descending order */
+    private static final int[] PRIMES = new int[] {1004535809, 998244353, 469762049};   // 479*2^21+1, 119*2^23+1, 7*2^26+1
+    /** Primitive roots mod each element of <code>PRIMES</code> */
+    private static final int[] GENERATORS = new int[] {3, 3, 3};
+    /** The maximum transform length is <code>2^MAX_LOG_LENGTH</code>, which is limited by the first prime */
+    private static final int MAX_LOG_LENGTH = 21;
+    
+    /** Products of the first one, two, and three primes, minus a safety margin for rounding, divided by two */
+    private static final double[] MAX_BOUNDS;
+    /** <code>PRIMES[0]^-1 mod PRIMES[1]</code> */
+    private static final int INV_01;
+    /** <code>(PRIMES[0]*PRIMES[1])^-1 mod PRIMES[2]</code> */
+    private static final int INV_012;
+    /** <code>PRIMES[0]*PRIMES[1]</code> */
+    private static final long P01;
+    /** <code>PRIMES[0]*PRIMES[1]*PRIMES[2] mod 2^64</code> */
+    private static final long P012;
+    /** Mixed-radix digits of <code>(PRIMES[0]*PRIMES[1]*PRIMES[2]-1)/2</code>, least significant first */
+    private static final int[] HALF_P012;
+    
+    static {
+        BigInteger p0 = BigInteger.valueOf(PRIMES[0]);
+        BigInteger p1 = BigInteger.valueOf(PRIMES[1]);
+        BigInteger p2 = BigInteger.valueOf(PRIMES[2]);
+        BigInteger p01 = p0.multiply(p1);
+        BigInteger p012 = p01.multiply(p2);
+        
+        MAX_BOUNDS = new double[] {
+                p0.doubleValue() / 2 * 0.999,
+                p01.doubleValue() / 2 * 0.999,
+                p012.doubleValue() / 2 * 0.999
+        };
+        INV_01 = p0.modInverse(p1).intValue();
+        INV_012 = p01.mod(p2).modInverse(p2).intValue();
+        P01 = p01.longValue();
+        P012 = p012.longValue();
+        
+        BigInteger half = p012.subtract(BigInteger.ONE).shiftRight(1);
+        BigInteger[] qr = half.divideAndRemainder(p0);
+        int h0 = qr[1].intValue();
+        qr = qr[0].divideAndRemainder(p1);
+        HALF_P012 = new int[] {h0, qr[1].intValue(), qr[0].intValue()};
+    }
+    
+    /** Lazily computed transform tables, indexed by prime and log2 of the length */
+    private static final Transform[][] TRANSFORMS = new Transform[PRIMES.length][MAX_LOG_LENGTH+1];
+    
+    @Override
+    public int[] multiply(int[] a, int[] b) {
+        int N = a.length;
+        int logLength = 0;
+        while ((1<<logLength) < 2*N-1)
+            logLength++;
+        if (logLength > MAX_LOG_LENGTH)
+            throw new IllegalArgumentException("Too many coefficients: " + N);
+        
+        int numPrimes = numPrimes(a, b);
+        int[][] residues = new int[numPrimes][];
+        for (int i=0; i<numPrimes; i++)
+            residues[i] = multiply(a, b, getTransform(i, logLength));
+        
+        int[] c = new int[N];
+        switch (numPrimes) {
+        case 1:
+            combine(residues[0], c);
+            break;
+        case 2:
+            combine(residues[0], residues[1], c);
+            break;
+        default:
+            combine(residues[0], residues[1], residues[2], c);
+        }
+        return c;
+    }
+    
+    /**
+     * Returns the number of primes needed to represent any coefficient of the product uniquely.
+     * A product coefficient is the sum of <code>N</code> terms bounded by <code>maxA*maxB</code>.
+     * @return 1 for a ternary and a mod-<code>q</code> factor, 2 for two mod-<code>q</code> factors, 3 for larger coefficients
+     */
+    static int numPrimes(int[] a, int[] b) {
+        double bound = (double)a.length * maxAbs(a) * maxAbs(b);
+        for (int i=0; i<MAX_BOUNDS.length-1; i++)
+            if (bound < MAX_BOUNDS[i])
+                return i + 1;
+        return MAX_BOUNDS.length;
+    }
+    
+    private static long maxAbs(int[] a) {
+        long max = 0;
+        for (int i=0; i<a.length; i++)
+            max = Math.max(max, Math.abs((long)a[i]));
+        return max;
+    }
+    
+    /**
+     * Multiplies two polynomials mod <code>X^N-1</code> and mod the transform's prime.
+     * @return the first <code>N</code> elements are the coefficients of the product, in the range <code>[0, p)</code>
+     */
+    private int[] multiply(int[] a, int[] b, Transform t) {
+        int N = a.length;
+        int p = t.p;
+        
+        int[] fa = t.forward(a);
+        int[] fb = a==b ? fa : t.forward(b);
+        double pInv = 1.0 / p;
+        for (int i=0; i<fa.length; i++)
+            fa[i] = mulMod(fa[i], fb[i], p, pInv);
+        t.inverse(fa);
+        
+        // fold and scale by 1/length
+        for (int k=0; k<N; k++) {
+            int c = fa[k];
+            if (k+N < fa.length) {
+                c += fa[k+N];
+                if (c >= p)
+                    c -= p;
+            }
+            fa[k] = mulShoup(c, t.lengthInv, t.lengthInvShoup, p);
+        }
+        return fa;
+    }
+    
+    /** CRT for one prime: only needs centering */
+    private void combine(int[] r0, int[] c) {
+        int p0 = PRIMES[0];
+        int half = p0 / 2;
+        for (int i=0; i<c.length; i++) {
+            int v = r0[i];
+            c[i] = v>half ? v-p0 : v;
+        }
+    }
+    
+    /** Garner's algorithm for two primes */
+    private void combine(int[] r0, int[] r1, int[] c) {
+        int p0 = PRIMES[0];
+        int p1 = PRIMES[1];
+        double p1Inv = 1.0 / p1;
+        long half = P01 / 2;
+        for (int i=0; i<c.length; i++) {
+            int x0 = r0[i];
+            int t1 = mulMod(subMod(r1[i], x0, p1), INV_01, p1, p1Inv);
+            long v = x0 + (long)p0*t1;
+            if (v > half)
+                v -= P01;
+            c[i] = (int)v;
+        }
+    }
+    
+    /**
+     * Garner's algorithm for three primes. The product of the three primes exceeds 64 bits, so the result
+     * is computed mod <code>2^64</code>, and the mixed-radix digits are used to determine its sign.
+     */
+    private void combine(int[] r0, int[] r1, int[] r2, int[] c) {
+        int p0 = PRIMES[0];
+        int p1 = PRIMES[1];
+        int p2 = PRIMES[2];
+        double p1Inv = 1.0 / p1;
+        double p2Inv = 1.0 / p2;
+        int p0Mod2 = p0 % p2;
+        for (int i=0; i<c.length; i++) {
+            int x0 = r0[i];
+            int t1 = mulMod(subMod(r1[i], x0, p1), INV_01, p1, p1Inv);
+            // x01 = x0 + p0*t1 mod p2
+            int x01 = (int)(((long)x0 + (long)mulMod(p0Mod2, t1 % p2, p2, p2Inv)) % p2);
+            int t2 = mulMod(subMod(r2[i], x01, p2), INV_012, p2, p2Inv);
+            long v = x0 + (long)p0*t1 + P01*t2;
+            if (t2>HALF_P012[2] || (t2==HALF_P012[2] && (t1>HALF_P012[1] || (t1==HALF_P012[1] && x0>HALF_P012[0]))))
+                v -= P012;
+            c[i] = (int)v;
+        }
+    }
+    
+    /** Returns <code>a-b mod p</code> for <code>a</code> in <code>[0, p)</code> and <code>b</code> in <code>[0, 2^30)</code> */
+    private static int subMod(int a, int b, int p) {
+        int d = (a - b) % p;
+        return d<0 ? d+p : d;
+    }
+    
+    /**
+     * Returns <code>a*b mod p</code> for <code>a</code> and <code>b</code> in <code>[0, p)</code>.
+     * The quotient is estimated in floating point, which is off by at most one.
+     */
+    private static int mulMod(int a, int b, int p, double pInv) {
+        long q = (long)((double)a * b * pInv);
+        long r = (long)a*b - q*p;
+        if (r < 0)
+            r += p;
+        else if (r >= p)
+            r -= p;
+        return (int)r;
+    }
+    
+    /**
+     * Returns <code>a*w mod p</code> using Shoup's method.
+     * @param a a number in <code>[0, p)</code>
+     * @param w a constant in <code>[0, p)</code>
+     * @param wShoup <code>floor(w*2^32/p)</code>
+     */
+    private static int mulShoup(int a, int w, long wShoup, int p) {
+        long q = (a*wShoup) >>> 32;
+        int r = (int)((long)a*w - q*p);
+        return r>=p ? r-p : r;
+    }
+    
+    private static long shoup(int w, int p) {
+        return ((long)w << 32) / p;
+    }
+    
+    private static Transform getTransform(int primeIndex, int logLength) {
+        // Transform is immutable, so unsynchronized publication is safe; a race at worst builds a table twice
+        Transform t = TRANSFORMS[primeIndex][logLength];
+        if (t == null) {
+            t = new Transform(PRIMES[primeIndex], GENERATORS[primeIndex], logLength);
+            TRANSFORMS[primeIndex][logLength] = t;
+        }
+        return t;
+    }
+    
+    /**
+     * Precomputed roots of unity for a given prime and transform length.<br/>
+     * Roots for the stage with half-length <code>h</code> are stored at indices <code>h..2h-1</code>.
+     */
+    private static class Transform {
+        private final int p;
+        private final int length;
+        private final int[] roots;
+        private final long[] rootsShoup;
+        private final int[] invRoots;
+        private final long[] invRootsShoup;
+        private final int lengthInv;
+        private final long lengthInvShoup;
+        
+        private Transform(int p, int generator, int logLength) {
+            this.p = p;
+            length = 1 << logLength;
+            roots = new int[Math.max(length, 2)];
+            rootsShoup = new long[roots.length];
+            invRoots = new int[roots.length];
+            invRootsShoup = new long[roots.length];
+            
+            BigInteger P = BigInteger.valueOf(p);
+            BigInteger g = BigInteger.valueOf(generator);
+            for (int h=1; h<length; h*=2) {
+                int w = g.modPow(BigInteger.valueOf((p-1)/(2*h)), P).intValue();
+                int wInv = BigInteger.valueOf(w).modInverse(P).intValue();
+                long r = 1;
+                long rInv = 1;
+                for (int j=0; j<h; j++) {
+                    roots[h+j] = (int)r;
+                    rootsShoup[h+j] = shoup((int)r, p);
+                    invRoots[h+j] = (int)rInv;
+                    invRootsShoup[h+j] = shoup((int)rInv, p);
+                    r = r * w % p;
+                    rInv = rInv * wInv % p;
+                }
+            }
+            
+            lengthInv = BigInteger.valueOf(length).modInverse(P).intValue();
+            lengthInvShoup = shoup(lengthInv, p);
+        }
+        
+        /**
+         * Reduces the coefficients mod <code>p</code>, zero-pads them, and applies a decimation-in-frequency transform.
+         * @return the transform in bit-reversed order
+         */
+        private int[] forward(int[] coeffs) {
+            int[] a = new int[length];
+            for (int i=0; i<coeffs.length; i++) {
+                int c = coeffs[i] % p;
+                a[i] = c<0 ? c+p : c;
+            }
+            
+            for (int h=length/2; h>=1; h/=2)
+                for (int j=0; j<h; j++) {
+                    int w = roots[h+j];
+                    long wShoup = rootsShoup[h+j];
+                    for (int i=j; i<length; i+=2*h) {
+                        int u = a[i];
+                        int v = a[i+h];
+                        int sum = u + v;
+                        a[i] = sum>=p ? sum-p : sum;
+                        int diff = u - v;
+                        a[i+h] = mulShoup(diff<0 ? diff+p : diff, w, wShoup, p);
+                    }
+                }
+            return a;
+        }
+        
+        /**
+         * Applies a decimation-in-time inverse transform to bit-reversed input, without scaling by <code>1/length</code>.
+         * @param a the transform; receives the result in natural order
+         */
+        private void inverse(int[] a) {
+            for (int h=1; h<length; h*=2)
+                for (int j=0; j<h; j++) {
+                    int w = invRoots[h+j];
+                    long wShoup = invRootsShoup[h+j];
+                    for (int i=j; i<length; i+=2*h) {
+                        int u = a[i];
+                        int v = mulShoup(a[i+h], w, wShoup, p);
+                        int sum = u + v;
+                        a[i] = sum>=p ? sum-p : sum;
+                        int diff = u - v;
+                        a[i+h] = diff<0 ? diff+p : diff;
+                    }
+                }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import java.util.Arrays;
+
+import net.sf.ntru.exception.NtruException;
+
+/**
+ * A polynomial class that packs several coefficients mod <code>q</code> into one <code>long</code> value for
+ * faster multiplication by a ternary polynomial. <code>q</code> must be a power of 2 between 2 and <code>2^30</code>.<br/>
+ * Each coefficient takes up <code>log2(q)</code> bits plus one bit that absorbs the carry when two coefficients
+ * are added, so a <code>long</code> holds <code>63/(log2(q)+1)</code> coefficients: five for <code>q=2048</code>,
+ * seven for <code>q=256</code>, four for <code>q=4096</code>. The top bit of each <code>long</code> is never used.
+ */
+public class PackedLongPolynomial {
+    private long[] coeffs;   // groups of perLong coefficients
+    private int numCoeffs;
+    private int q;
+    /** number of bits per coefficient including the carry bit */
+    private int width;
+    /** number of coefficients per <code>long</code> */
+    private int perLong;
+    /** <code>q-1</code> in every coefficient */
+    private long mask;
+    /** <code>q</code> in every coefficient; added before subtracting so no coefficient goes negative */
+    private long borrow;
+    
+    /**
+     * Constructs a <code>PackedLongPolynomial</code> from a <code>IntegerPolynomial</code>. The two polynomials are independent of each other.
+     * @param p the original polynomial. Coefficients must be between <code>0</code> and <code>q-1</code>.
+     * @param q the modulus
+     * @throws NtruException if <code>q</code> is not a power of 2 or greater than <code>2^30</code>
+     */
+    public PackedLongPolynomial(IntegerPolynomial p, int q) {
+        this(p.coeffs.length, q);
+        
+        coeffs = new long[(numCoeffs+perLong-1) / perLong];
+        int cIdx = 0;
+        int shift = 0;
+        for (int i=0; i<numCoeffs; i++) {
+            coeffs[cIdx] |= ((long)p.coeffs[i]) << shift;
+            shift += width;
+            if (shift >= perLong*width) {
+                shift = 0;
+                cIdx++;
+            }
+        }
+    }
+    
+    private PackedLongPolynomial(int numCoeffs, int q) {
+        if (!isSupported(q))
+            throw new NtruException("Modulus must be a power of 2 between 2 and 2^30: " + q);
+        
+        this.numCoeffs = numCoeffs;
+        this.q = q;
+        width = Integer.numberOfTrailingZeros(q) + 1;
+        perLong = 63 / width;
+        for (int i=0; i<perLong; i++) {
+            mask = (mask<<width) | (q-1);
+            borrow = (borrow<<width) | q;
+        }
+    }
+    
+    private PackedLongPolynomial(long[] coeffs, PackedLongPolynomial template) {
+        this.coeffs = coeffs;
+        numCoeffs = template.numCoeffs;
+        q = template.q;
+        width = template.width;
+        perLong = template.perLong;
+        mask = template.mask;
+        borrow = template.borrow;
+    }
+    
+    /**
+     * Tells whether polynomials mod <code>q</code> can be packed.
+     * @param q a modulus
+     * @return <code>true</code> if <code>q</code> is a power of 2 between 2 and <code>2^30</code>
+     */
+    public static boolean isSupported(int q) {
+        return q>=2 && q<=(1<<30) && (q&(q-1))==0;
+    }
+    
+    /** Multiplies the polynomial with a <code>TernaryPolynomial</code>, taking the indices mod N and the values mod q. */
+    public PackedLongPolynomial mult(TernaryPolynomial poly2) {
+        if (poly2.size() != numCoeffs)
+            throw new NtruException("Number of coefficients must be the same");
+        return mult(poly2.getOnes(), poly2.getNegOnes());
+    }
+    
+    /**
+     * Multiplies the polynomial with a ternary polynomial given as index lists, taking the indices mod N and the values mod q.
+     * @param ones indices of the coefficients that are equal to 1
+     * @param negOnes indices of the coefficients that are equal to -1
+     * @return the product
+     */
+    PackedLongPolynomial mult(int[] ones, int[] negOnes) {
+        int k = perLong;
+        long[][] prod = new long[k][coeffs.length+(numCoeffs+k-1)/k-1];   // intermediate results, the subarrays are shifted by 0,...,k-1 coefficients
+        
+        // multiply ones
+        for (int pIdx: ones) {
+            int cIdx = pIdx / k;
+            int m = pIdx - cIdx*k;   // m = pIdx % k
+            long[] prodM = prod[m];
+            for (int i=0; i<coeffs.length; i++) {
+                prodM[cIdx] = (prodM[cIdx] + coeffs[i]) & mask;
+                cIdx++;
+            }
+        }
+        
+        // multiply negative ones
+        for (int pIdx: negOnes) {
+            int cIdx = pIdx / k;
+            int m = pIdx - cIdx*k;   // m = pIdx % k
+            long[] prodM = prod[m];
+            for (int i=0; i<coeffs.length; i++) {
+                prodM[cIdx] = (borrow + prodM[cIdx] - coeffs[i]) & mask;
+                cIdx++;
+            }
+        }
+        
+        return combine(prod);
+    }
+    
+    /**
+     * Multiplies the polynomial with a ternary polynomial given as a coefficient array, taking the indices mod N and the values mod q.
+     * Every coefficient of <code>t</code> is processed the same way, so the running time and the memory access pattern
+     * don't depend on <code>t</code>.
+     * @param t the coefficients of the ternary polynomial; each one is <code>-1</code>, <code>0</code>, or <code>1</code>
+     * @return the product
+     */
+    PackedLongPolynomial multConstantTime(int[] t) {
+        if (t.length != numCoeffs)
+            throw new NtruException("Number of coefficients must be the same");
+        
+        long one = borrow / q;   // 1 in every coefficient
+        int k = perLong;
+        long[][] prod = new long[k][coeffs.length+(numCoeffs+k-1)/k-1];
+        for (int pIdx=0; pIdx<numCoeffs; pIdx++) {
+            // select c if t[pIdx]=1, q-c = (c XOR (q-1))+1 if t[pIdx]=-1, and 0 if t[pIdx]=0
+            long neg = t[pIdx] >> 31;            // all ones if t[pIdx]=-1
+            long select = neg | ((-t[pIdx])>>31);   // all ones if t[pIdx]!=0
+            long flip = mask & neg;
+            long add = one & neg;
+            int cIdx = pIdx / k;
+            int m = pIdx - cIdx*k;   // m = pIdx % k
+            long[] prodM = prod[m];
+            for (int i=0; i<coeffs.length; i++)
+                prodM[cIdx+i] = (prodM[cIdx+i] + ((coeffs[i]&select) ^ flip) + add) & mask;
+        }
+        
+        return combine(prod);
+    }
+    
+    /**
+     * Adds up the intermediate results of a multiplication and reduces the indices mod N.
+     * @param prod <code>perLong</code> arrays whose coefficients are shifted by <code>0,...,perLong-1</code> coefficients
+     * @return the product
+     */
+    private PackedLongPolynomial combine(long[][] prod) {
+        int k = perLong;
+        
+        // combine shifted coefficients (k arrays) into a single array of length prod[*].length+1
+        long[] cCoeffs = Arrays.copyOf(prod[0], prod[0].length+1);
+        for (int m=1; m<k; m++) {
+            int shift = m * width;
+            int shiftUpper = k*width - shift;
+            long lowerMask = (1L<<shiftUpper) - 1;
+            int pLen = prod[m].length;
+            for (int i=0; i<pLen; i++) {
+                long upper, lower;
+                upper = prod[m][i] >> shiftUpper;
+                lower = prod[m][i] & lowerMask;
+                
+                cCoeffs[i] = (cCoeffs[i] + (lower<<shift)) & mask;
+                int nextIdx = i + 1;
+                cCoeffs[nextIdx] = (cCoeffs[nextIdx]+upper) & mask;
+            }
+        }
+        
+        // reduce indices of cCoeffs modulo numCoeffs
+        int shift = width * (numCoeffs%k);
+        for (int cIdx=coeffs.length-1; cIdx<cCoeffs.length; cIdx++) {
+            long iCoeff;   // coefficient to shift into the [0..numCoeffs-1] range
+            int newIdx;
+            if (cIdx==coeffs.length-1) {
+                // the last group is only partly used unless numCoeffs is a multiple of k
+                iCoeff = numCoeffs%k==0 ? 0 : cCoeffs[cIdx] >> shift;
+                newIdx = 0;
+            }
+            else {
+                iCoeff = cCoeffs[cIdx];
+                newIdx = cIdx*k - numCoeffs;
+            }
+            
+            int base = newIdx / k;
+            int m = newIdx - base*k;   // m = newIdx % k
+            long lower = iCoeff << (width*m);
+            long upper = iCoeff >> (width*(k-m));
+            cCoeffs[base] = (cCoeffs[base] + lower) & mask;
+            int base1 = base + 1;
+            if (base1 < coeffs.length)
+                cCoeffs[base1] = (cCoeffs[base1] + upper) & mask;
+        }
+        
+        // drop everything past numCoeffs so the result can be multiplied again
+        cCoeffs = Arrays.copyOf(cCoeffs, coeffs.length);
+        if (numCoeffs%k != 0)
+            cCoeffs[coeffs.length-1] &= (1L<<shift) - 1;
+        
+        return new PackedLongPolynomial(cCoeffs, this);
+    }
+    
+    /**
+     * Adds another polynomial with the same modulus and number of coefficients, taking the values mod q.
+     * @param b another polynomial
+     */
+    public void add(PackedLongPolynomial b) {
+        for (int i=0; i<coeffs.length; i++)
+            coeffs[i] = (coeffs[i]+b.coeffs[i]) & mask;
+    }
+    
+    public IntegerPolynomial toIntegerPolynomial() {
+        int[] intCoeffs = new int[numCoeffs];
+        int cIdx = 0;
+        int shift = 0;
+        for (int i=0; i<numCoeffs; i++) {
+            intCoeffs[i] = (int)((coeffs[cIdx] >> shift) & (q-1));
+            shift += width;
+            if (shift >= perLong*width) {
+                shift = 0;
+                cIdx++;
+            }
+        }
+        return new IntegerPolynomial(intCoeffs);
+    }
+}
\ No newline at end of file
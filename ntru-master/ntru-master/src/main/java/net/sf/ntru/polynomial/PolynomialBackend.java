@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+/**
+ * The coefficient-wise kernels behind some of the operations in {@link IntegerPolynomial} and
+ * {@link SparseTernaryPolynomial}.<br/>
+ * Implementations must produce exactly the same coefficients as {@link ScalarBackend}; they differ only
+ * in how the work is done, for example by using SIMD instructions.<br/>
+ * Additional implementations are found through {@link java.util.ServiceLoader}: a provider is used if its
+ * constructor completes normally, so a provider that depends on features the JVM lacks should throw an
+ * exception from the constructor. If no provider can be loaded, {@link ScalarBackend} is used.
+ * @see IntegerPolynomial#setBackend(PolynomialBackend)
+ */
+public interface PolynomialBackend {
+    
+    /**
+     * Multiplies a polynomial by a ternary polynomial, taking the indices mod <code>N</code>.
+     * Coefficients that exceed the range of an <code>int</code> wrap around. No argument is modified.
+     * @param b the <code>N</code> coefficients of the first polynomial
+     * @param ones indices of the coefficients of the ternary polynomial that are equal to 1
+     * @param negOnes indices of the coefficients of the ternary polynomial that are equal to -1
+     * @return the <code>N</code> coefficients of the product
+     */
+    int[] multTernary(int[] b, int[] ones, int[] negOnes);
+    
+    /**
+     * Multiplies a polynomial by a ternary polynomial, taking the indices mod <code>N</code> and the
+     * coefficients mod <code>modulus</code>. No argument is modified.
+     * @param b the <code>N</code> coefficients of the first polynomial
+     * @param ones indices of the coefficients of the ternary polynomial that are equal to 1
+     * @param negOnes indices of the coefficients of the ternary polynomial that are equal to -1
+     * @param modulus a modulus
+     * @return the <code>N</code> coefficients of the product, between <code>0</code> and <code>modulus-1</code>
+     */
+    int[] multTernary(int[] b, int[] ones, int[] negOnes, int modulus);
+    
+    /**
+     * Multiplies a polynomial by a ternary polynomial given as a coefficient array, taking the indices mod <code>N</code>
+     * and the coefficients mod <code>modulus</code>. No argument is modified.<br/>
+     * Unlike the other multiplication methods, this one must not branch on, or index memory by, the values of
+     * <code>b</code> or <code>t</code>, so that its running time reveals nothing about them.
+     * @param b the <code>N</code> coefficients of the first polynomial
+     * @param t the <code>N</code> coefficients of the ternary polynomial; each one is <code>-1</code>, <code>0</code>, or <code>1</code>
+     * @param modulus a modulus
+     * @return the <code>N</code> coefficients of the product, between <code>0</code> and <code>modulus-1</code>
+     */
+    int[] multDenseTernary(int[] b, int[] t, int modulus);
+    
+    /**
+     * Does the same as {@link #multDenseTernary(int[], int[], int)} for a polynomial that is already packed, so a
+     * polynomial that is multiplied many times only needs to be packed once. The modulus is the one <code>b</code>
+     * was packed with. No argument is modified, and the running time must not depend on the values of <code>b</code>
+     * or <code>t</code> either.
+     * @param b the first polynomial
+     * @param t the <code>N</code> coefficients of the ternary polynomial; each one is <code>-1</code>, <code>0</code>, or <code>1</code>
+     * @return the product, packed with the same modulus as <code>b</code>
+     */
+    PackedLongPolynomial multDenseTernary(PackedLongPolynomial b, int[] t);
+    
+    /**
+     * Multiplies a polynomial by a product-form polynomial <code>f1*f2+f3</code>, taking the indices mod <code>N</code>
+     * and the coefficients mod <code>modulus</code>. No argument is modified.
+     * @param b the <code>N</code> coefficients of the first polynomial
+     * @param f1 the first factor
+     * @param f2 the second factor
+     * @param f3 the summand
+     * @param modulus a modulus
+     * @return the <code>N</code> coefficients of the product, between <code>0</code> and <code>modulus-1</code>
+     * @see ProductFormPolynomial
+     */
+    int[] multProductForm(int[] b, TernaryPolynomial f1, TernaryPolynomial f2, TernaryPolynomial f3, int modulus);
+    
+    /**
+     * Adds the coefficients of <code>b</code> to the first <code>b.length</code> coefficients of <code>a</code>.
+     * @param a the coefficients to add to
+     * @param b the coefficients to add; must not be longer than <code>a</code>
+     */
+    void add(int[] a, int[] b);
+    
+    /**
+     * Reduces each coefficient to <code>-1</code>, <code>0</code>, or <code>1</code> modulo 3.
+     * The running time must not depend on the coefficient values.
+     * @param a the coefficients
+     */
+    void mod3(int[] a);
+    
+    /**
+     * Reduces each coefficient to the interval <code>[0, modulus)</code>.
+     * @param a the coefficients
+     * @param modulus a modulus
+     */
+    void modPositive(int[] a, int modulus);
+    
+    /**
+     * Reduces each coefficient to the interval <code>[-q/2, q/2]</code>.
+     * If <code>q</code> is even, a coefficient congruent to <code>q/2</code> may end up on either end of the interval;
+     * if <code>q</code> is a power of 2, it always ends up at <code>-q/2</code>.<br/>
+     * If <code>q</code> is 3 or a power of 2, the running time must not depend on the coefficient values.
+     * @param a the coefficients
+     * @param q a modulus
+     */
+    void center0(int[] a, int q);
+    
+    /**
+     * Does the same as {@link #center0(int[], int)} followed by {@link #mod3(int[])}, and counts the resulting
+     * coefficients, all in one pass.<br/>
+     * If <code>q</code> is 3 or a power of 2, the running time must not depend on the coefficient values.
+     * @param a the coefficients
+     * @param q a modulus
+     * @return the number of coefficients equal to <code>-1</code>, <code>0</code>, and <code>1</code>, in that order
+     */
+    int[] center0Mod3(int[] a, int q);
+}
\ No newline at end of file
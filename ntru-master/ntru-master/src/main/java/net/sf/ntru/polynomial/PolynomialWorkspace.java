@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+/**
+ * Scratch memory for {@link KaratsubaMultiplier} which allows polynomials to be multiplied
+ * without allocating temporary arrays.<br/>
+ * A workspace can be reused for any number of multiplications of polynomials with up to <code>N</code>
+ * coefficients, but it must not be used by more than one thread at a time.
+ */
+public class PolynomialWorkspace {
+    int N;
+    /** holds the <code>2N-1</code> coefficients of the non-reduced product */
+    int[] product;
+    /** holds intermediate values of the Karatsuba recursion */
+    int[] scratch;
+    
+    /**
+     * Constructs a workspace for polynomials with up to <code>N</code> coefficients.
+     * @param N the maximum number of coefficients
+     */
+    public PolynomialWorkspace(int N) {
+        this.N = N;
+        product = new int[Math.max(2*N-1, 0)];
+        scratch = new int[scratchSize(N)];
+    }
+    
+    /** Returns the number of <code>int</code>s needed by all recursion levels of a Karatsuba multiplication */
+    private static int scratchSize(int n) {
+        int size = 0;
+        while (n > KaratsubaMultiplier.SCHOOLBOOK_THRESHOLD) {
+            int n2 = n - n/2;
+            size += 4*n2 - 1;
+            n = n2;
+        }
+        return size;
+    }
+}
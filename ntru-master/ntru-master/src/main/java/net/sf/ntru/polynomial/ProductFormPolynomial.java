@@ -39,7 +39,7 @@ import net.sf.ntru.exception.NtruException;
  * <code>f1,f2,f3</code> are very sparsely populated ternary polynomials.
  */
 public class ProductFormPolynomial implements Polynomial {
-    private SparseTernaryPolynomial f1, f2, f3;
+    SparseTernaryPolynomial f1, f2, f3;
     
     /**
      * Constructs a new polynomial from three sparsely populated ternary polynomials.
@@ -53,6 +53,14 @@ public class ProductFormPolynomial implements Polynomial {
         this.f3 = f3;
     }
     
+    /**
+     * Returns the three polynomials this polynomial is made of.
+     * @return <code>f1</code>, <code>f2</code>, and <code>f3</code>, in that order
+     */
+    public SparseTernaryPolynomial[] getFactors() {
+        return new SparseTernaryPolynomial[] {f1, f2, f3};
+    }
+    
     /**
      * Generates a <code>ProductFormPolynomial</code> from three random ternary polynomials.
      * @param N number of coefficients
@@ -123,9 +131,10 @@ public class ProductFormPolynomial implements Polynomial {
 
     @Override
     public IntegerPolynomial mult(IntegerPolynomial poly2, int modulus) {
-        IntegerPolynomial c = mult(poly2);
-        c.mod(modulus);
-        return c;
+        if (poly2.coeffs.length != f1.size())
+            throw new NtruException("Number of coefficients must be the same");
+        
+        return new IntegerPolynomial(IntegerPolynomial.getBackend().multProductForm(poly2.coeffs, f1, f2, f3, modulus));
     }
 
     @Override
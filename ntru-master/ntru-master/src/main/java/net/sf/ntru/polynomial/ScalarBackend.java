@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+/**
+ * The default {@link PolynomialBackend}, written in plain Java.
+ */
+public class ScalarBackend implements PolynomialBackend {
+    
+    @Override
+    public int[] multTernary(int[] b, int[] ones, int[] negOnes) {
+        int N = b.length;
+        int[] c = new int[N];
+        for (int i: ones) {
+            int j = N - 1 - i;
+            for(int k=N-1; k>=0; k--) {
+                c[k] += b[j];
+                j--;
+                if (j < 0)
+                    j = N - 1;
+            }
+        }
+        
+        for (int i: negOnes) {
+            int j = N - 1 - i;
+            for(int k=N-1; k>=0; k--) {
+                c[k] -= b[j];
+                j--;
+                if (j < 0)
+                    j = N - 1;
+            }
+        }
+        
+        return c;
+    }
+    
+    /**
+     * Uses a {@link PackedLongPolynomial} if the modulus is a supported power of 2, which adds
+     * several coefficients with a single <code>long</code> addition.
+     */
+    @Override
+    public int[] multTernary(int[] b, int[] ones, int[] negOnes, int modulus) {
+        if (PackedLongPolynomial.isSupported(modulus))
+            return pack(b, modulus).mult(ones, negOnes).toIntegerPolynomial().coeffs;
+        else {
+            int[] c = multTernary(b, ones, negOnes);
+            modPositive(c, modulus);
+            return c;
+        }
+    }
+    
+    /**
+     * Uses a {@link PackedLongPolynomial} if the modulus is a supported power of 2. Each coefficient of
+     * <code>t</code> is turned into masks that select <code>b</code>, <code>-b</code>, or nothing.
+     */
+    @Override
+    public int[] multDenseTernary(int[] b, int[] t, int modulus) {
+        if (PackedLongPolynomial.isSupported(modulus))
+            return multDenseTernary(pack(b, modulus), t).toIntegerPolynomial().coeffs;
+        
+        int N = b.length;
+        int[] c = new int[N];
+        for (int i=0; i<N; i++) {
+            int ti = t[i];
+            int j = N - i;
+            for (int k=0; k<i; k++)
+                c[k] += ti * b[j+k];
+            j = -i;
+            for (int k=i; k<N; k++)
+                c[k] += ti * b[j+k];
+        }
+        modPositive(c, modulus);
+        return c;
+    }
+    
+    @Override
+    public PackedLongPolynomial multDenseTernary(PackedLongPolynomial b, int[] t) {
+        return b.multConstantTime(t);
+    }
+    
+    /** Keeps the intermediate products packed if the modulus allows it. */
+    @Override
+    public int[] multProductForm(int[] b, TernaryPolynomial f1, TernaryPolynomial f2, TernaryPolynomial f3, int modulus) {
+        if (PackedLongPolynomial.isSupported(modulus)) {
+            PackedLongPolynomial bPacked = pack(b, modulus);
+            PackedLongPolynomial c = bPacked.mult(f1).mult(f2);
+            c.add(bPacked.mult(f3));
+            return c.toIntegerPolynomial().coeffs;
+        }
+        else {
+            int[] c = multTernary(b, f1.getOnes(), f1.getNegOnes(), modulus);
+            c = multTernary(c, f2.getOnes(), f2.getNegOnes(), modulus);
+            add(c, multTernary(b, f3.getOnes(), f3.getNegOnes(), modulus));
+            modPositive(c, modulus);
+            return c;
+        }
+    }
+    
+    private static PackedLongPolynomial pack(int[] b, int modulus) {
+        int[] bPos = new int[b.length];
+        for (int i=0; i<b.length; i++)
+            bPos[i] = b[i] & (modulus-1);
+        return new PackedLongPolynomial(new IntegerPolynomial(bPos), modulus);
+    }
+    
+    @Override
+    public void add(int[] a, int[] b) {
+        for (int i=0; i<b.length; i++)
+            a[i] += b[i];
+    }
+    
+    /**
+     * Adds up base-4 digits until the value is small, then subtracts 3 from the values above 1.
+     * This needs neither a division nor a branch.
+     */
+    @Override
+    public void mod3(int[] a) {
+        for (int i=0; i<a.length; i++)
+            a[i] = mod3(a[i]);
+    }
+    
+    private static int mod3(int c) {
+        c = (c>>16) + (c&0xFFFF);
+        c = (c>>8) + (c&0xFF);
+        c = (c>>4) + (c&0xF);
+        c = (c>>2) + (c&3);
+        c = (c>>2) + (c&3);
+        c = (c>>2) + (c&3);
+        return c - (3 & ((1-c)>>31));
+    }
+    
+    @Override
+    public void modPositive(int[] a, int modulus) {
+        if (modulus == 2048)
+            for (int i=0; i<a.length; i++)
+                a[i] &= 2047;
+        else
+            for (int i=0; i<a.length; i++) {
+                a[i] %= modulus;
+                if (a[i] < 0)
+                    a[i] += modulus;
+            }
+    }
+    
+    @Override
+    public void center0(int[] a, int q) {
+        if (q == 3)
+            mod3(a);
+        else if ((q&(q-1)) == 0) {
+            // take the low bits, then subtract q from everything with bit q/2 set
+            int mask = q - 1;
+            int half = q / 2;
+            for (int i=0; i<a.length; i++) {
+                int c = a[i] & mask;
+                a[i] = c - ((c&half)<<1);
+            }
+        }
+        else
+            for (int i=0; i<a.length; i++) {
+                while (a[i] < -q/2)
+                    a[i] += q;
+                while (a[i] > q/2)
+                    a[i] -= q;
+            }
+    }
+    
+    /**
+     * For powers of 2, each coefficient is sign-extended from its low <code>log2(q)</code> bits, which is the same
+     * as {@link #center0(int[], int)}. Other moduli except 3 are centered in a separate pass first.
+     * The mod 3 reduction and the counts don't branch on the coefficients.
+     */
+    @Override
+    public int[] center0Mod3(int[] a, int q) {
+        int shift = 0;
+        if (q>0 && (q&(q-1))==0)
+            shift = Integer.numberOfLeadingZeros(q) + 1;
+        else if (q != 3)
+            center0(a, q);
+        
+        int numNegOnes = 0;
+        int numOnes = 0;
+        for (int i=0; i<a.length; i++) {
+            int c = mod3((a[i]<<shift) >> shift);
+            a[i] = c;
+            numNegOnes += c >>> 31;
+            numOnes += (-c) >>> 31;
+        }
+        return new int[] {numNegOnes, a.length-numNegOnes-numOnes, numOnes};
+    }
+}
\ No newline at end of file
@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import net.sf.ntru.exception.NtruException;
+import net.sf.ntru.util.ArrayEncoder;
+
+/**
+ * A polynomial with 16-bit coefficients, for use with a modulus <code>q</code> that is a power of 2
+ * no greater than <code>2^16</code>.<br/>
+ * Arithmetic wraps around mod <code>2^16</code>, so reducing mod <code>q</code> is only necessary
+ * before a result is encoded or compared. Compared to an {@link IntegerPolynomial}, a
+ * <code>ShortPolynomial</code> takes half the memory.<br/>
+ * Like in <code>IntegerPolynomial</code>, some methods change the polynomial and others return the result
+ * as a new polynomial.
+ */
+public class ShortPolynomial {
+    public short[] coeffs;
+    
+    /**
+     * Constructs a new polynomial with <code>N</code> coefficients initialized to 0.
+     * @param N the number of coefficients
+     */
+    public ShortPolynomial(int N) {
+        coeffs = new short[N];
+    }
+    
+    /**
+     * Constructs a new polynomial with a given set of coefficients.
+     * @param coeffs the coefficients
+     */
+    public ShortPolynomial(short[] coeffs) {
+        this.coeffs = coeffs;
+    }
+    
+    /**
+     * Constructs a <code>ShortPolynomial</code> from the low 16 bits of the coefficients of an
+     * <code>IntegerPolynomial</code>. The two polynomials are independent of each other.
+     * @param p the original polynomial
+     */
+    public ShortPolynomial(IntegerPolynomial p) {
+        int N = p.coeffs.length;
+        coeffs = new short[N];
+        for (int i=0; i<N; i++)
+            coeffs[i] = (short)p.coeffs[i];
+    }
+    
+    /**
+     * Returns a polynomial with N coefficients between <code>0</code> and <code>q-1</code>.<br/>
+     * <code>q</code> must be a power of 2 no greater than <code>2^16</code>.<br/>
+     * Ignores any excess bytes.
+     * @param data an encoded polynomial
+     * @param N number of coefficients
+     * @param q
+     * @return the decoded polynomial
+     */
+    public static ShortPolynomial fromBinary(byte[] data, int N, int q) {
+        return fromInts(ArrayEncoder.decodeModQ(data, N, q));
+    }
+    
+    /**
+     * Returns a polynomial with N coefficients between <code>0</code> and <code>q-1</code>.<br/>
+     * <code>q</code> must be a power of 2 no greater than <code>2^16</code>.<br/>
+     * Ignores any excess bytes.
+     * @param is an encoded polynomial
+     * @param N number of coefficients
+     * @param q
+     * @return the decoded polynomial
+     */
+    public static ShortPolynomial fromBinary(InputStream is, int N, int q) throws IOException {
+        return fromInts(ArrayEncoder.decodeModQ(is, N, q));
+    }
+    
+    private static ShortPolynomial fromInts(int[] values) {
+        short[] coeffs = new short[values.length];
+        for (int i=0; i<values.length; i++)
+            coeffs[i] = (short)values[i];
+        return new ShortPolynomial(coeffs);
+    }
+    
+    /**
+     * Encodes the polynomial to binary after reducing a copy of the coefficients mod <code>q</code>.
+     * <code>q</code> must be a power of 2 no greater than <code>2^16</code>.
+     * @param q
+     * @return the encoded polynomial
+     */
+    public byte[] toBinary(int q) {
+        checkModulus(q);
+        int[] values = new int[coeffs.length];
+        for (int i=0; i<coeffs.length; i++)
+            values[i] = coeffs[i] & (q-1);
+        return ArrayEncoder.encodeModQ(values, q);
+    }
+    
+    /**
+     * Multiplies the polynomial with another, taking the indices mod <code>N</code> and the values mod <code>2^16</code>.
+     * @param poly2 a polynomial with the same number of coefficients
+     * @return a new polynomial
+     */
+    public ShortPolynomial mult(ShortPolynomial poly2) {
+        int N = coeffs.length;
+        if (poly2.coeffs.length != N)
+            throw new NtruException("Number of coefficients must be the same");
+        
+        // the multiplier wraps around mod 2^32, so the low 16 bits are exact
+        int[] a = new int[N];
+        int[] b = new int[N];
+        for (int i=0; i<N; i++) {
+            a[i] = coeffs[i];
+            b[i] = poly2.coeffs[i];
+        }
+        return fromInts(IntegerPolynomial.getMultiplier().multiply(a, b));
+    }
+    
+    /**
+     * Multiplies the polynomial with another, taking the indices mod <code>N</code> and the values mod <code>modulus</code>.
+     * @param poly2 a polynomial with the same number of coefficients
+     * @param modulus a power of 2 no greater than <code>2^16</code>
+     * @return a new polynomial
+     */
+    public ShortPolynomial mult(ShortPolynomial poly2, int modulus) {
+        ShortPolynomial c = mult(poly2);
+        c.mod(modulus);
+        return c;
+    }
+    
+    /**
+     * Multiplies the polynomial with a <code>TernaryPolynomial</code>, taking the indices mod <code>N</code>
+     * and the values mod <code>2^16</code>.
+     * @param poly2 a polynomial with the same number of coefficients
+     * @return a new polynomial
+     */
+    public ShortPolynomial mult(TernaryPolynomial poly2) {
+        if (poly2.size() != coeffs.length)
+            throw new NtruException("Number of coefficients must be the same");
+        return new ShortPolynomial(multTernary(coeffs, poly2.getOnes(), poly2.getNegOnes()));
+    }
+    
+    /**
+     * Adds rotated copies of <code>b</code>. <code>b</code> is written out twice in a row so every rotation
+     * is a contiguous slice, which lets the JIT compiler vectorize the inner loop.
+     */
+    private static short[] multTernary(short[] b, int[] ones, int[] negOnes) {
+        int N = b.length;
+        short[] b2 = Arrays.copyOf(b, 2*N);
+        System.arraycopy(b, 0, b2, N, N);
+        
+        short[] c = new short[N];
+        for (int i: ones) {
+            int j = N - i;
+            for (int k=0; k<N; k++)
+                c[k] += b2[j+k];
+        }
+        for (int i: negOnes) {
+            int j = N - i;
+            for (int k=0; k<N; k++)
+                c[k] -= b2[j+k];
+        }
+        return c;
+    }
+    
+    /**
+     * Multiplies the polynomial with another, taking the indices mod <code>N</code> and the values mod <code>modulus</code>.
+     * Ternary and product-form polynomials are multiplied without converting them to <code>IntegerPolynomial</code>s.
+     * @param poly2 a polynomial with the same number of coefficients
+     * @param modulus a power of 2 no greater than <code>2^16</code>
+     * @return a new polynomial
+     */
+    public ShortPolynomial mult(Polynomial poly2, int modulus) {
+        ShortPolynomial c;
+        if (poly2 instanceof TernaryPolynomial)
+            c = mult((TernaryPolynomial)poly2);
+        else if (poly2 instanceof ProductFormPolynomial) {
+            ProductFormPolynomial pf = (ProductFormPolynomial)poly2;
+            c = mult(pf.f1).mult(pf.f2);
+            c.add(mult(pf.f3));
+        }
+        else
+            c = mult(new ShortPolynomial(poly2.toIntegerPolynomial()));
+        c.mod(modulus);
+        return c;
+    }
+    
+    /**
+     * Adds another polynomial which must not have more coefficients than <code>this</code> polynomial.
+     * @param b another polynomial
+     */
+    public void add(ShortPolynomial b) {
+        for (int i=0; i<b.coeffs.length; i++)
+            coeffs[i] += b.coeffs[i];
+    }
+    
+    /**
+     * Adds another polynomial which must not have more coefficients than <code>this</code> polynomial,
+     * and takes the coefficient values mod <code>modulus</code>.
+     * @param b another polynomial
+     * @param modulus a power of 2 no greater than <code>2^16</code>
+     */
+    public void add(ShortPolynomial b, int modulus) {
+        add(b);
+        mod(modulus);
+    }
+    
+    /**
+     * Subtracts another polynomial which must not have more coefficients than <code>this</code> polynomial.
+     * @param b another polynomial
+     */
+    public void sub(ShortPolynomial b) {
+        for (int i=0; i<b.coeffs.length; i++)
+            coeffs[i] -= b.coeffs[i];
+    }
+    
+    /**
+     * Subtracts another polynomial which must not have more coefficients than <code>this</code> polynomial,
+     * and takes the coefficient values mod <code>modulus</code>.
+     * @param b another polynomial
+     * @param modulus a power of 2 no greater than <code>2^16</code>
+     */
+    public void sub(ShortPolynomial b, int modulus) {
+        sub(b);
+        mod(modulus);
+    }
+    
+    /**
+     * Takes each coefficient modulo <code>modulus</code>. For <code>modulus&lt;2^16</code>, all coefficients are
+     * between <code>0</code> and <code>modulus-1</code> afterwards; for <code>modulus=2^16</code>, the polynomial
+     * is unchanged.
+     * @param modulus a power of 2 no greater than <code>2^16</code>
+     * @throws NtruException if <code>modulus</code> is not a power of 2 or greater than <code>2^16</code>
+     */
+    public void mod(int modulus) {
+        checkModulus(modulus);
+        int mask = modulus - 1;
+        for (int i=0; i<coeffs.length; i++)
+            coeffs[i] &= mask;
+    }
+    
+    /**
+     * Tells whether polynomials mod <code>q</code> can be stored in a <code>ShortPolynomial</code>.
+     * @param q a modulus
+     * @return <code>true</code> if <code>q</code> is a power of 2 no greater than <code>2^16</code>
+     */
+    public static boolean isSupported(int q) {
+        return q>0 && q<=65536 && (q&(q-1))==0;
+    }
+    
+    private static void checkModulus(int modulus) {
+        if (!isSupported(modulus))
+            throw new NtruException("Modulus must be a power of 2 no greater than 65536: " + modulus);
+    }
+    
+    /**
+     * Converts the polynomial to an <code>IntegerPolynomial</code>. Coefficients are sign-extended, so
+     * coefficients between <code>2^15</code> and <code>2^16-1</code> become negative.
+     * @return a new polynomial
+     */
+    public IntegerPolynomial toIntegerPolynomial() {
+        int[] intCoeffs = new int[coeffs.length];
+        for (int i=0; i<coeffs.length; i++)
+            intCoeffs[i] = coeffs[i];
+        return new IntegerPolynomial(intCoeffs);
+    }
+    
+    @Override
+    public ShortPolynomial clone() {
+        return new ShortPolynomial(coeffs.clone());
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(coeffs);
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ShortPolynomial)
+            return Arrays.equals(coeffs, ((ShortPolynomial)obj).coeffs);
+        else
+            return false;
+    }
+}
\ No newline at end of file
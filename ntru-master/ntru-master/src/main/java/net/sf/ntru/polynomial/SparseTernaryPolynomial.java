@@ -145,69 +145,30 @@ public class SparseTernaryPolynomial implements TernaryPolynomial {
      * @param rng the random number generator to use
      */
     public static SparseTernaryPolynomial generateRandom(int N, int numOnes, int numNegOnes, Random rng) {
-        int[] coeffs = new int[N];   // an IntegerPolynomial-style representation of the new polynomial
-        
-        int[] ones = new int[numOnes];
-        int i = 0;
-        while (i < numOnes) {
-            int r = rng.nextInt(N);
-            if (coeffs[r] == 0) {
-                ones[i] = r;
-                coeffs[r] = 1;
-                i++;
-            }
-        }
+        int[] indices = TernarySampler.generateIndices(N, numOnes+numNegOnes, rng);
+        int[] ones = Arrays.copyOfRange(indices, 0, numOnes);
+        int[] negOnes = Arrays.copyOfRange(indices, numOnes, indices.length);
         Arrays.sort(ones);
-        
-        int[] negOnes = new int[numNegOnes];
-        i = 0;
-        while (i < numNegOnes) {
-            int r = rng.nextInt(N);
-            if (coeffs[r] == 0) {
-                negOnes[i] = r;
-                coeffs[r] = -1;
-                i++;
-            }
-        }
         Arrays.sort(negOnes);
         
         return new SparseTernaryPolynomial(N, ones, negOnes);
     }
     
     /**
-     * Generates a blinding polynomial using an {@link IndexGenerator}.
+     * Generates a blinding polynomial using an {@link IndexGenerator}.<br/>
+     * The indices are processed by {@link IndexGenerator#nextBlindingCoeffs(int[], boolean)}, which does not
+     * branch on them; the conversion of the coefficients to index lists does, however.
      * @param ig an Index Generator
-     * @param N the number of coefficients
+     * @param N the number of coefficients; must be the same as in the parameters of <code>ig</code>
      * @param dr the number of ones / negative ones
      * @return a blinding polynomial
-     * @see NtruEncrypt#generateBlindingPoly(byte[])
+     * @see NtruEncrypt#generateBlindingPoly(byte[], java.security.MessageDigest)
      */
     public static SparseTernaryPolynomial generateBlindingPoly(IndexGenerator ig, int N, int dr) {
-        int[] coeffs = new int[N];   // an IntegerPolynomial-style representation of the new polynomial
-        
-        int[] ones = new int[dr];
-        int i = 0;
-        while (i < dr) {
-            int r = ig.nextIndex();
-            if (coeffs[r] == 0) {
-                ones[i] = r;
-                coeffs[r] = 1;
-                i++;
-            }
-        }
-        
-        int[] negOnes = new int[dr];
-        i = 0;
-        while (i < dr) {
-            int r = ig.nextIndex();
-            if (coeffs[r] == 0) {
-                negOnes[i] = r;
-                coeffs[r] = -1;
-                i++;
-            }
-        }
-        
-        return new SparseTernaryPolynomial(N, ones, negOnes);
+        int[] coeffs = ig.nextBlindingCoeffs(new int[] {dr}, false)[0];
+        if (coeffs.length != N)
+            throw new NtruException("Number of coefficients must be the same");
+        return new SparseTernaryPolynomial(coeffs);
     }
     
     @Override
@@ -216,35 +177,16 @@ public class SparseTernaryPolynomial implements TernaryPolynomial {
         if (b.length != N)
             throw new NtruException("Number of coefficients must be the same");
         
-        int[] c = new int[N];
-        for (int i: ones) {
-            int j = N - 1 - i;
-            for(int k=N-1; k>=0; k--) {
-                c[k] += b[j];
-                j--;
-                if (j < 0)
-                    j = N - 1;
-            }
-        }
-        
-        for (int i: negOnes) {
-            int j = N - 1 - i;
-            for(int k=N-1; k>=0; k--) {
-                c[k] -= b[j];
-                j--;
-                if (j < 0)
-                    j = N - 1;
-            }
-        }
-        
-        return new IntegerPolynomial(c);
+        return new IntegerPolynomial(IntegerPolynomial.getBackend().multTernary(b, ones, negOnes));
     }
     
     @Override
     public IntegerPolynomial mult(IntegerPolynomial poly2, int modulus) {
-        IntegerPolynomial c = mult(poly2);
-        c.mod(modulus);
-        return c;
+        int[] b = poly2.coeffs;
+        if (b.length != N)
+            throw new NtruException("Number of coefficients must be the same");
+        
+        return new IntegerPolynomial(IntegerPolynomial.getBackend().multTernary(b, ones, negOnes, modulus));
     }
 
     public BigIntPolynomial mult(BigIntPolynomial poly2) {
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import java.util.Random;
+
+import net.sf.ntru.encrypt.PassphraseBasedPRNG;
+import net.sf.ntru.exception.NtruException;
+
+/**
+ * Generates the positions of the nonzero coefficients of random ternary polynomials.<br/>
+ * The positions are the first elements of a random permutation of <code>0..N-1</code> which is computed by a
+ * partial Fisher-Yates shuffle on an <code>int</code> array. All random bytes are requested from the random number
+ * generator in a single call, and each random index is computed with a multiplication instead of a rejection loop.
+ * This makes the probability of an index differ from the uniform distribution by at most <code>N/2^32</code>,
+ * which is negligible.<br/>
+ * Keys derived from a passphrase must not change between versions, so a {@link PassphraseBasedPRNG} is consumed
+ * the way earlier versions did: dense polynomials are shuffled like <code>Collections.shuffle()</code> does, and
+ * sparse indices are drawn with <code>nextInt(N)</code>, skipping duplicates.
+ */
+class TernarySampler {
+    
+    private TernarySampler() { }
+    
+    /**
+     * Generates a random array with <code>numOnes</code> elements equal to 1,
+     * <code>numNegOnes</code> elements equal to -1, and the rest equal to 0.
+     * @param N number of coefficients
+     * @param numOnes number of 1's
+     * @param numNegOnes number of -1's
+     * @param rng the random number generator to use
+     * @return an array of length <code>N</code>
+     * @throws NtruException if <code>numOnes+numNegOnes&gt;N</code>
+     */
+    static int[] generateCoeffs(int N, int numOnes, int numNegOnes, Random rng) {
+        if (rng instanceof PassphraseBasedPRNG)
+            return shuffleCoeffs(N, numOnes, numNegOnes, rng);
+        
+        int[] indices = generateIndices(N, numOnes+numNegOnes, rng);
+        int[] coeffs = new int[N];
+        for (int i=0; i<numOnes; i++)
+            coeffs[indices[i]] = 1;
+        for (int i=numOnes; i<indices.length; i++)
+            coeffs[indices[i]] = -1;
+        return coeffs;
+    }
+    
+    /**
+     * Generates <code>numIndices</code> distinct random numbers between <code>0</code> and <code>N-1</code>.
+     * @param N the upper bound (exclusive)
+     * @param numIndices the number of indices to generate
+     * @param rng the random number generator to use
+     * @return an array of length <code>numIndices</code>, in random order
+     * @throws NtruException if <code>numIndices&gt;N</code>
+     */
+    static int[] generateIndices(int N, int numIndices, Random rng) {
+        if (numIndices<0 || numIndices>N)
+            throw new NtruException("Cannot choose " + numIndices + " out of " + N + " indices");
+        if (rng instanceof PassphraseBasedPRNG)
+            return drawIndices(N, numIndices, rng);
+        
+        byte[] rand = new byte[4*numIndices];
+        rng.nextBytes(rand);
+        
+        int[] perm = new int[N];
+        for (int i=0; i<N; i++)
+            perm[i] = i;
+        for (int i=0; i<numIndices; i++) {
+            long r = ((rand[4*i]&0xFF)<<24) | ((rand[4*i+1]&0xFF)<<16) | ((rand[4*i+2]&0xFF)<<8) | (rand[4*i+3]&0xFF);
+            r &= 0xFFFFFFFFL;
+            int j = i + (int)((r*(N-i)) >>> 32);   // a random number between i and N-1
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+        
+        int[] indices = new int[numIndices];
+        System.arraycopy(perm, 0, indices, 0, numIndices);
+        return indices;
+    }
+    
+    /**
+     * Shuffles an array containing <code>numOnes</code> ones and <code>numNegOnes</code> negative ones in the same
+     * way as <code>Collections.shuffle(List, Random)</code>, which is how earlier versions generated dense polynomials.
+     * @param N number of coefficients
+     * @param numOnes number of 1's
+     * @param numNegOnes number of -1's
+     * @param rng the random number generator to use
+     * @return an array of length <code>N</code>
+     * @throws NtruException if <code>numOnes+numNegOnes&gt;N</code>
+     */
+    private static int[] shuffleCoeffs(int N, int numOnes, int numNegOnes, Random rng) {
+        if (numOnes<0 || numNegOnes<0 || numOnes+numNegOnes>N)
+            throw new NtruException("Cannot choose " + (numOnes+numNegOnes) + " out of " + N + " indices");
+        
+        int[] coeffs = new int[N];
+        for (int i=0; i<numOnes; i++)
+            coeffs[i] = 1;
+        for (int i=numOnes; i<numOnes+numNegOnes; i++)
+            coeffs[i] = -1;
+        for (int i=N; i>1; i--) {
+            int j = rng.nextInt(i);
+            int tmp = coeffs[i-1];
+            coeffs[i-1] = coeffs[j];
+            coeffs[j] = tmp;
+        }
+        return coeffs;
+    }
+    
+    /**
+     * Draws distinct indices with <code>nextInt(N)</code>, skipping duplicates, which is how earlier versions
+     * generated sparse polynomials.
+     * @param N the upper bound (exclusive)
+     * @param numIndices the number of indices to generate
+     * @param rng the random number generator to use
+     * @return an array of length <code>numIndices</code>, in the order they were drawn
+     */
+    private static int[] drawIndices(int N, int numIndices, Random rng) {
+        boolean[] used = new boolean[N];
+        int[] indices = new int[numIndices];
+        int i = 0;
+        while (i < numIndices) {
+            int r = rng.nextInt(N);
+            if (!used[r]) {
+                used[r] = true;
+                indices[i] = r;
+                i++;
+            }
+        }
+        return indices;
+    }
+}
\ No newline at end of file
@@ -39,8 +39,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import net.sf.ntru.arith.BigIntEuclidean;
@@ -55,6 +57,7 @@ import net.sf.ntru.polynomial.Resultant;
 import net.sf.ntru.sign.SignatureParameters.BasisType;
 import net.sf.ntru.sign.SignatureParameters.KeyGenAlg;
 import net.sf.ntru.sign.SignatureParameters.TernaryPolynomialType;
+import net.sf.ntru.util.PlatformUtil;
 
 /**
  * Signs, verifies data and generates key pairs.
@@ -65,6 +68,9 @@ import net.sf.ntru.sign.SignatureParameters.TernaryPolynomialType;
  */
 @Deprecated
 public class NtruSign {
+    /** Generates bases for {@link #generateKeyPair()}; shared by all instances */
+    private static final ExecutorService KEYGEN_EXECUTOR = PlatformUtil.createDaemonExecutor(Runtime.getRuntime().availableProcessors(), "NtruSign keygen");
+    
     private SignatureParameters params;
     private MessageDigest hashAlg;
     private SignatureKeyPair signingKeyPair;
@@ -80,42 +86,71 @@ public class NtruSign {
     }
     
     /**
-     * Generates a new signature key pair. Uses up to <code>B+1</code> threads
-     * if multiple processors are available.
+     * Generates a new signature key pair using a shared thread pool with one thread per processor.<br/>
+     * If only one processor is available, this is the same as {@link #generateKeyPairSingleThread()}.
      * @return a key pair
+     * @see #generateKeyPair(ExecutorService, int)
      */
     public SignatureKeyPair generateKeyPair() {
         int processors = Runtime.getRuntime().availableProcessors();
-        SignaturePrivateKey priv = new SignaturePrivateKey(params);
-        int B = params.B;
-        
         if (processors == 1)
-            // generate all B+1 bases in the current thread
-            for (int k=B; k>=0; k--)
-                priv.add(generateBoundedBasis());
-        else {
-            List<Future<Basis>> bases = new ArrayList<Future<Basis>>();
-            
-            // start up to processors-1 new threads and generate B bases
-            int numThreads = Math.min(B, processors-1);
-            if (numThreads > 0) {
-                ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-                for (int k=B-1; k>=0; k--)
-                    bases.add(executor.submit(new BasisGenerationTask()));
-                executor.shutdown();
+            return generateKeyPairSingleThread();
+        return generateKeyPair(KEYGEN_EXECUTOR, Math.max(params.B+1, processors));
+    }
+    
+    /**
+     * Generates a new signature key pair using threads from an existing executor.<br/>
+     * Runs <code>max(B+1, number of processors)</code> basis generation attempts concurrently.
+     * @param executor the executor to generate bases in; it is not shut down
+     * @return a key pair
+     * @see #generateKeyPair(ExecutorService, int)
+     */
+    public SignatureKeyPair generateKeyPair(ExecutorService executor) {
+        return generateKeyPair(executor, Math.max(params.B+1, Runtime.getRuntime().availableProcessors()));
+    }
+    
+    /**
+     * Generates a new signature key pair using threads from an existing executor.<br/>
+     * Since a basis attempt succeeds only if the random <code>f</code> and <code>g</code> meet several conditions
+     * and the resulting basis is short enough, the time per basis varies a lot. This method keeps
+     * <code>parallelism</code> independent attempts running, takes the first <code>B+1</code> attempts that yield
+     * a bounded basis, and cancels the rest. Attempts that have already started when the key pair is complete
+     * run to completion in the background, so each executor thread does at most one attempt of unnecessary work.
+     * @param executor the executor to generate bases in; it is not shut down
+     * @param parallelism the number of basis generation attempts to run concurrently
+     * @return a key pair
+     * @throws NtruException if the calling thread is interrupted or basis generation fails
+     */
+    public SignatureKeyPair generateKeyPair(ExecutorService executor, int parallelism) {
+        if (parallelism < 1)
+            throw new NtruException("Invalid parallelism: " + parallelism);
+        int numBases = params.B + 1;
+        SignaturePrivateKey priv = new SignaturePrivateKey(params);
+        CompletionService<FGBasis> completion = new ExecutorCompletionService<FGBasis>(executor);
+        List<Future<FGBasis>> attempts = new ArrayList<Future<FGBasis>>();
+        try {
+            for (int i=0; i<parallelism; i++)
+                attempts.add(completion.submit(new BasisGenerationTask()));
+            while (priv.getNumBases() < numBases) {
+                Future<FGBasis> attempt = completion.take();
+                attempts.remove(attempt);
+                FGBasis basis = attempt.get();
+                if (basis.isNormOk())
+                    priv.add(basis);
+                if (priv.getNumBases() < numBases)
+                    attempts.add(completion.submit(new BasisGenerationTask()));
             }
-            
-            // generate the remaining basis in the current thread
-            Basis basis0 = generateBoundedBasis();
-            
-            // build the private key
-            for (Future<Basis> basis: bases)
-                try {
-                    priv.add(basis.get());
-                } catch (Exception e) {
-                    throw new NtruException(e);
-                }
-            priv.add(basis0);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NtruException)
+                throw (NtruException)e.getCause();
+            throw new NtruException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NtruException(e);
+        }
+        finally {
+            for (Future<FGBasis> attempt: attempts)
+                attempt.cancel(true);
         }
         
         int q = params.q;
@@ -392,6 +427,8 @@ public class NtruSign {
     /**
      * Creates a NtruSign basis consisting of polynomials <code>f, g, F, G, h</code>.<br/>
      * If <code>KeyGenAlg=FLOAT</code>, the basis may not be valid and this method must be rerun if that is the case.<br/>
+     * The resultants are computed in the calling thread. {@link #generateKeyPair(ExecutorService, int)} already runs
+     * one call per executor thread, so a multithreaded resultant would only oversubscribe the processors.<br/>
      * @see #generateBoundedBasis()
      */
     private FGBasis generateBasis() {
@@ -566,11 +603,12 @@ public class NtruSign {
         }
     }
     
-    private class BasisGenerationTask implements Callable<Basis> {
+    /** Makes one attempt at generating a basis, which may or may not be bounded */
+    private class BasisGenerationTask implements Callable<FGBasis> {
 
         @Override
-        public Basis call() throws Exception {
-            return generateBoundedBasis();
+        public FGBasis call() throws Exception {
+            return generateBasis();
         }
     }
     
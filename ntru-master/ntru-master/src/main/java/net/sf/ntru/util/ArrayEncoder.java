@@ -29,6 +29,9 @@ package net.sf.ntru.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import net.sf.ntru.exception.NtruException;
@@ -79,6 +82,40 @@ public class ArrayEncoder {
     private static final int[] BIT1_TABLE = {1, 1, 1, 0, 0, 0, 1, 0, 1};
     private static final int[] BIT2_TABLE = {1, 1, 1, 1, 0, 0, 0, 1, 0};
     private static final int[] BIT3_TABLE = {1, 0, 1, 0, 0, 1, 1, 1, 0};
+    /**
+     * Converts six bits to four coefficients. Entries <code>4*b..4*b+3</code> are the coefficients for the bits
+     * <code>b</code>, lowest three bits first.
+     */
+    private static final byte[] SVES_DECODE_TABLE = new byte[64*4];
+    /**
+     * Converts four coefficients <code>c0..c3</code> to six bits. The entry at <code>27*c0+9*c1+3*c2+c3+40</code>
+     * contains the bits for <code>(c0,c1)</code> in bits 0-2 and the bits for <code>(c2,c3)</code> in bits 3-5.
+     * Bit 6 is set if either pair is <code>(-1,-1)</code>.
+     */
+    private static final int[] SVES_ENCODE_TABLE = new int[81];
+    private static final int SVES_FAIL = 64;
+    static {
+        for (int b=0; b<64; b++)
+            for (int p=0; p<2; p++) {
+                int bits = (b>>(3*p)) & 7;
+                int coeffTableIndex = ((bits&1)<<2) + (bits&2) + ((bits&4)>>2);   // bits in reverse order
+                SVES_DECODE_TABLE[4*b+2*p] = (byte)COEFF1_TABLE[coeffTableIndex];
+                SVES_DECODE_TABLE[4*b+2*p+1] = (byte)COEFF2_TABLE[coeffTableIndex];
+            }
+        
+        for (int i=0; i<81; i++) {
+            int entry = 0;
+            for (int p=0; p<2; p++) {
+                int coeff1 = i / (p==0 ? 27 : 3) % 3;   // coefficient + 1
+                int coeff2 = i / (p==0 ? 9 : 1) % 3;
+                int bitTableIndex = coeff1*3 + coeff2;
+                entry |= (BIT1_TABLE[bitTableIndex] | BIT2_TABLE[bitTableIndex]<<1 | BIT3_TABLE[bitTableIndex]<<2) << (3*p);
+                if (coeff1==0 && coeff2==0)
+                    entry |= SVES_FAIL;
+            }
+            SVES_ENCODE_TABLE[i] = entry;
+        }
+    }
     private static final BigInteger THREE = BigInteger.valueOf(3);
     
     /**
@@ -90,54 +127,135 @@ public class ArrayEncoder {
      * @return the encoded array
      */
     public static byte[] encodeModQ(int[] a, int q) {
-        int bitsPerCoeff = 31 - Integer.numberOfLeadingZeros(q);
-        int numBits = a.length * bitsPerCoeff;
-        int numBytes = (numBits+7) / 8;
+        int numBytes = (a.length*bitsPerCoeff(q)+7) / 8;
         byte[] data = new byte[numBytes];
-        int bitIndex = 0;
-        int byteIndex = 0;
-        for (int i=0; i<a.length; i++)
-            for (int j=0; j<bitsPerCoeff; j++) {
-                int currentBit = (a[i] >> j) & 1;
-                data[byteIndex] |= currentBit << bitIndex;
-                if (bitIndex == 7) {
-                    bitIndex = 0;
-                    byteIndex++;
-                }
-                else
-                    bitIndex++;
-            }
+        pack(a, bitsPerCoeff(q), data, 0, numBytes);
         return data;
     }
     
+    /**
+     * Like {@link #encodeModQ(int[], int)} but writes the encoded array to an existing array instead of returning it.
+     * @param a the input array
+     * @param q the modulus
+     * @param dst the array to write to
+     * @param offset where to start writing in <code>dst</code>
+     * @return the number of bytes written
+     * @throws ArrayIndexOutOfBoundsException if <code>dst</code> is too small
+     */
+    public static int encodeModQ(int[] a, int q, byte[] dst, int offset) {
+        int numBytes = (a.length*bitsPerCoeff(q)+7) / 8;
+        if (offset<0 || offset+numBytes>dst.length)
+            throw new ArrayIndexOutOfBoundsException(offset + numBytes);
+        pack(a, bitsPerCoeff(q), dst, offset, numBytes);
+        return numBytes;
+    }
+    
+    /**
+     * Like {@link #encodeModQ(int[], int)} but writes the encoded array to a buffer instead of returning it.
+     * @param a the input array
+     * @param q the modulus
+     * @param dst the buffer to write to; the position is advanced by the length of the encoding
+     * @throws java.nio.BufferOverflowException if <code>dst</code> is too small; <code>dst</code> is not modified in this case
+     */
+    public static void encodeModQ(int[] a, int q, ByteBuffer dst) {
+        int numBytes = (a.length*bitsPerCoeff(q)+7) / 8;
+        if (dst.remaining() < numBytes)
+            throw new BufferOverflowException();
+        if (dst.hasArray()) {
+            int pos = dst.position();
+            pack(a, bitsPerCoeff(q), dst.array(), dst.arrayOffset()+pos, numBytes);
+            dst.position(pos + numBytes);
+        }
+        else
+            dst.put(encodeModQ(a, q));
+    }
+    
     /**
      * Like {@link #encodeModQ(int[], int)} but only returns the first <code>numBytes</code>
      * bytes of the encoding.
      * @param a the input array
      * @param q the modulus
-     * @param numBytes
+     * @param numBytes at most the length of the full encoding
      * @return the encoded array
      */
     public static byte[] encodeModQTrunc(int[] a, int q, int numBytes) {
-        int bitsPerCoeff = 31 - Integer.numberOfLeadingZeros(q);
         byte[] data = new byte[numBytes];
-        int bitIndex = 0;
-        int byteIndex = 0;
-        for (int i=0; i<a.length; i++) {
-            for (int j=0; j<bitsPerCoeff; j++) {
-                int currentBit = (a[i] >> j) & 1;
-                data[byteIndex] |= currentBit << bitIndex;
-                if (bitIndex == 7) {
-                    bitIndex = 0;
-                    byteIndex++;
-                    if (byteIndex >= numBytes)
-                        return data;
-                }
-                else
-                    bitIndex++;
+        pack(a, bitsPerCoeff(q), data, 0, numBytes);
+        return data;
+    }
+    
+    /**
+     * Writes the lower <code>bits</code> bits of each element of <code>a</code> to an array, leaving no gaps between
+     * bits, and stops after <code>numBytes</code> bytes.<br/>
+     * Bits are collected in a <code>long</code> and written 32 at a time; 11-bit and 8-bit values take a faster path.
+     * @param a the input array
+     * @param bits number of bits per element, at most 31
+     * @param data the output array
+     * @param offset where to start writing in <code>data</code>
+     * @param numBytes number of bytes to write
+     */
+    private static void pack(int[] a, int bits, byte[] data, int offset, int numBytes) {
+        int end = offset + numBytes;
+        int i = 0;
+        int pos = offset;
+        
+        if (bits == 11)
+            // 8 elements -> 11 bytes
+            while (i+8<=a.length && pos+11<=end) {
+                long lo = (a[i]&0x7FF) | (long)(a[i+1]&0x7FF)<<11 | (long)(a[i+2]&0x7FF)<<22 | (long)(a[i+3]&0x7FF)<<33 |
+                        (long)(a[i+4]&0x7FF)<<44 | (long)(a[i+5]&0x7FF)<<55;
+                int hi = (a[i+5]&0x7FF)>>>9 | (a[i+6]&0x7FF)<<2 | (a[i+7]&0x7FF)<<13;
+                data[pos] = (byte)lo;
+                data[pos+1] = (byte)(lo>>>8);
+                data[pos+2] = (byte)(lo>>>16);
+                data[pos+3] = (byte)(lo>>>24);
+                data[pos+4] = (byte)(lo>>>32);
+                data[pos+5] = (byte)(lo>>>40);
+                data[pos+6] = (byte)(lo>>>48);
+                data[pos+7] = (byte)(lo>>>56);
+                data[pos+8] = (byte)hi;
+                data[pos+9] = (byte)(hi>>>8);
+                data[pos+10] = (byte)(hi>>>16);
+                i += 8;
+                pos += 11;
+            }
+        else if (bits == 8)
+            while (i<a.length && pos<end)
+                data[pos++] = (byte)a[i++];
+        
+        int mask = -1 >>> (32-bits);
+        long buf = 0;   // bits that have not been written yet
+        int bufBits = 0;   // length of buf
+        while (i < a.length) {
+            if (bufBits >= 32) {
+                if (end-pos < 4)
+                    break;
+                int word = (int)buf;
+                data[pos] = (byte)word;
+                data[pos+1] = (byte)(word>>>8);
+                data[pos+2] = (byte)(word>>>16);
+                data[pos+3] = (byte)(word>>>24);
+                pos += 4;
+                buf >>>= 32;
+                bufBits -= 32;
             }
+            buf |= (long)(a[i]&mask) << bufBits;
+            bufBits += bits;
+            i++;
         }
-        return null;
+        
+        // write the remaining bits one byte at a time
+        while (pos < end)
+            if (bufBits<8 && i<a.length) {
+                buf |= (long)(a[i]&mask) << bufBits;
+                bufBits += bits;
+                i++;
+            }
+            else {
+                data[pos++] = (byte)buf;
+                buf >>>= 8;
+                bufBits -= 8;
+            }
     }
     
     /**
@@ -151,32 +269,119 @@ public class ArrayEncoder {
      */
     public static int[] decodeModQ(byte[] data, int N, int q) {
         int[] coeffs = new int[N];
-        int bitsPerCoeff = 31 - Integer.numberOfLeadingZeros(q);
-        int mask = -1 >>> (32-bitsPerCoeff);   // for truncating values to bitsPerCoeff bits
-        int byteIndex = 0;
-        int bitIndex = 0;   // next bit in data[byteIndex]
-        int coeffBuf = 0;   // contains (bitIndex) bits
-        int coeffBits = 0;   // length of coeffBuf
-        int coeffIndex = 0;   // index into coeffs
-        while (coeffIndex < N) {
-            // copy bitsPerCoeff or more into coeffBuf
-            while (coeffBits < bitsPerCoeff) {
-                coeffBuf += (data[byteIndex]&0xFF) << coeffBits;
-                coeffBits += 8 - bitIndex;
-                byteIndex++;
-                bitIndex = 0;
-            }
-            
-            // low bitsPerCoeff bits = next coefficient
-            coeffs[coeffIndex] = coeffBuf & mask;
-            coeffIndex++;
-            
-            coeffBuf >>>= bitsPerCoeff;
-            coeffBits -= bitsPerCoeff;
+        decodeModQ(data, 0, q, coeffs);
+        return coeffs;
+    }
+    
+    /**
+     * Like {@link #decodeModQ(byte[], int, int)} but writes the coefficients to an existing array.
+     * The number of coefficients is the length of that array.
+     * @param data an encoded polynomial
+     * @param offset where the encoding starts in <code>data</code>
+     * @param q
+     * @param coeffs receives the coefficients, which are between <code>0</code> and <code>q-1</code>
+     * @throws ArrayIndexOutOfBoundsException if <code>data</code> is too short
+     */
+    public static void decodeModQ(byte[] data, int offset, int q, int[] coeffs) {
+        int numBytes = (coeffs.length*bitsPerCoeff(q)+7) / 8;
+        if (offset<0 || offset+numBytes>data.length)
+            throw new ArrayIndexOutOfBoundsException(offset + numBytes);
+        unpack(data, offset, numBytes, bitsPerCoeff(q), coeffs);
+    }
+    
+    /**
+     * Decodes data encoded with {@link #encodeModQ(int[], int)} back to an <code>int</code> array.<br/>
+     * <code>N</code> is the number of coefficients. <code>q</code> must be a power of <code>2</code>.<br/>
+     * Reads exactly as many bytes as the encoding of <code>N</code> coefficients takes.
+     * @param src a buffer containing an encoded polynomial; the position is advanced past the encoding
+     * @param N number of coefficients
+     * @param q
+     * @return an array containing <code>N</code> coefficients between <code>0</code> and <code>q-1</code>
+     * @throws java.nio.BufferUnderflowException if <code>src</code> is too short; <code>src</code> is not modified in this case
+     */
+    public static int[] decodeModQ(ByteBuffer src, int N, int q) {
+        int[] coeffs = new int[N];
+        int numBytes = (N*bitsPerCoeff(q)+7) / 8;
+        if (src.remaining() < numBytes)
+            throw new BufferUnderflowException();
+        if (src.hasArray()) {
+            int pos = src.position();
+            unpack(src.array(), src.arrayOffset()+pos, numBytes, bitsPerCoeff(q), coeffs);
+            src.position(pos + numBytes);
+        }
+        else {
+            byte[] data = new byte[numBytes];
+            src.get(data);
+            unpack(data, 0, numBytes, bitsPerCoeff(q), coeffs);
         }
         return coeffs;
     }
     
+    /**
+     * Reads <code>coeffs.length</code> values of <code>bits</code> bits each from an array. This is the inverse of
+     * {@link #pack(int[], int, byte[], int, int)}.
+     * @param data the input array
+     * @param offset where to start reading in <code>data</code>
+     * @param numBytes the number of bytes to read; must be enough for all values
+     * @param bits number of bits per element, at most 31
+     * @param coeffs receives the values
+     */
+    private static void unpack(byte[] data, int offset, int numBytes, int bits, int[] coeffs) {
+        int N = coeffs.length;
+        int end = offset + numBytes;
+        int i = 0;
+        int pos = offset;
+        
+        if (bits == 11)
+            // 11 bytes -> 8 elements
+            while (i+8 <= N) {
+                long lo = (data[pos]&0xFFL) | (data[pos+1]&0xFFL)<<8 | (data[pos+2]&0xFFL)<<16 | (data[pos+3]&0xFFL)<<24 |
+                        (data[pos+4]&0xFFL)<<32 | (data[pos+5]&0xFFL)<<40 | (data[pos+6]&0xFFL)<<48 | (data[pos+7]&0xFFL)<<56;
+                int hi = (data[pos+8]&0xFF) | (data[pos+9]&0xFF)<<8 | (data[pos+10]&0xFF)<<16;
+                coeffs[i] = (int)lo & 0x7FF;
+                coeffs[i+1] = (int)(lo>>>11) & 0x7FF;
+                coeffs[i+2] = (int)(lo>>>22) & 0x7FF;
+                coeffs[i+3] = (int)(lo>>>33) & 0x7FF;
+                coeffs[i+4] = (int)(lo>>>44) & 0x7FF;
+                coeffs[i+5] = (int)(lo>>>55) | (hi&3)<<9;
+                coeffs[i+6] = (hi>>>2) & 0x7FF;
+                coeffs[i+7] = (hi>>>13) & 0x7FF;
+                i += 8;
+                pos += 11;
+            }
+        else if (bits == 8)
+            while (i < N)
+                coeffs[i++] = data[pos++] & 0xFF;
+        
+        int mask = -1 >>> (32-bits);
+        long buf = 0;   // bits that have been read but not decoded yet
+        int bufBits = 0;   // length of buf
+        while (i < N) {
+            if (bufBits < bits) {
+                if (end-pos >= 4) {
+                    long word = (data[pos]&0xFF) | (data[pos+1]&0xFF)<<8 | (data[pos+2]&0xFF)<<16 | (data[pos+3]&0xFFL)<<24;
+                    buf |= word << bufBits;
+                    bufBits += 32;
+                    pos += 4;
+                }
+                else {
+                    buf |= (data[pos++]&0xFFL) << bufBits;
+                    bufBits += 8;
+                    continue;
+                }
+            }
+            coeffs[i] = (int)buf & mask;
+            buf >>>= bits;
+            bufBits -= bits;
+            i++;
+        }
+    }
+    
+    /** Returns <code>log2(q)</code> for a power of two <code>q</code>. */
+    private static int bitsPerCoeff(int q) {
+        return 31 - Integer.numberOfLeadingZeros(q);
+    }
+    
     /**
      * Decodes data encoded with {@link #encodeModQ(int[], int)} back to an <code>int</code> array.<br/>
      * <code>N</code> is the number of coefficients. <code>q</code> must be a power of <code>2</code>.<br/>
@@ -187,8 +392,7 @@ public class ArrayEncoder {
      * @return the decoded polynomial
      */
     public static int[] decodeModQ(InputStream is, int N, int q) throws IOException {
-        int qBits = 31 - Integer.numberOfLeadingZeros(q);
-        int size = (N*qBits+7) / 8;
+        int size = (N*bitsPerCoeff(q)+7) / 8;
         byte[] arr = ArrayEncoder.readFullLength(is, size);
         return decodeModQ(arr, N, q);
     }
@@ -205,20 +409,59 @@ public class ArrayEncoder {
      */
     public static int[] decodeMod3Sves(byte[] data, int N, boolean skipFirst) {
         int[] coeffs = new int[N];
-        int coeffIndex = skipFirst ? 1 : 0;
-        int i = 0;
-        while (i<data.length/3*3 && coeffIndex<N-1) {
-            // process 24 bits at a time in the outer loop
-            int chunk = (data[i++]&0xFF) | ((data[i++]&0xFF)<<8) | ((data[i++]&0xFF)<<16);
-            for (int j=0; j<8 && coeffIndex<N-1; j++) {
-                // process 3 bits at a time in the inner loop
-                int coeffTableIndex = ((chunk&1)<<2) + (chunk&2) + ((chunk&4)>>2);   // low 3 bits in reverse order
-                coeffs[coeffIndex++] = COEFF1_TABLE[coeffTableIndex];
-                coeffs[coeffIndex++] = COEFF2_TABLE[coeffTableIndex];
-                chunk >>= 3;
+        decodeMod3Sves(data, 0, data.length, skipFirst, coeffs);
+        return coeffs;
+    }
+    
+    /**
+     * Like {@link #decodeMod3Sves(byte[], int, boolean)} but reads from a range of an array and writes the coefficients
+     * to an existing array. The number of coefficients is the length of that array.<br/>
+     * Every three bytes are decoded to 16 coefficients through a table that converts six bits at a time.
+     * @param data an encoded ternary polynomial
+     * @param offset where the encoding starts in <code>data</code>
+     * @param length the number of bytes to decode; only complete groups of three bytes are used
+     * @param skipFirst whether to leave the constant coefficient zero and start populating at the linear coefficient
+     * @param coeffs receives the coefficients
+     */
+    public static void decodeMod3Sves(byte[] data, int offset, int length, boolean skipFirst, int[] coeffs) {
+        int N = coeffs.length;
+        int start = skipFirst ? 1 : 0;
+        int numPairs = Math.min(length/3*8, Math.max(N-start, 0)/2);
+        int coeffIndex = start;
+        int i = offset;
+        
+        // process 24 bits = 8 pairs at a time
+        for (int c=0; c<numPairs/8; c++) {
+            int chunk = (data[i]&0xFF) | ((data[i+1]&0xFF)<<8) | ((data[i+2]&0xFF)<<16);
+            i += 3;
+            for (int j=0; j<4; j++) {
+                int tableIndex = (chunk&63) * 4;
+                coeffs[coeffIndex] = SVES_DECODE_TABLE[tableIndex];
+                coeffs[coeffIndex+1] = SVES_DECODE_TABLE[tableIndex+1];
+                coeffs[coeffIndex+2] = SVES_DECODE_TABLE[tableIndex+2];
+                coeffs[coeffIndex+3] = SVES_DECODE_TABLE[tableIndex+3];
+                coeffIndex += 4;
+                chunk >>>= 6;
             }
         }
-        return coeffs;
+        
+        // the last pairs, if there are fewer than 8 left
+        if (numPairs%8 != 0) {
+            int chunk = (data[i]&0xFF) | ((data[i+1]&0xFF)<<8) | ((data[i+2]&0xFF)<<16);
+            for (int j=0; j<numPairs%8; j++) {
+                int tableIndex = (chunk&7) * 4;
+                coeffs[coeffIndex] = SVES_DECODE_TABLE[tableIndex];
+                coeffs[coeffIndex+1] = SVES_DECODE_TABLE[tableIndex+1];
+                coeffIndex += 2;
+                chunk >>>= 3;
+            }
+        }
+        
+        // coefficients not covered by the encoding are zero
+        if (skipFirst && N>0)
+            coeffs[0] = 0;
+        for (int j=coeffIndex; j<N; j++)
+            coeffs[j] = 0;
     }
     
     /**
@@ -232,36 +475,96 @@ public class ArrayEncoder {
      * @throws NtruException if <code>(-1,-1)</code> is encountered
      */
     public static byte[] encodeMod3Sves(int[] arr, boolean skipFirst) {
-        int numBits = (arr.length*3+1) / 2;
-        int numBytes = (numBits+7) / 8;
-        byte[] data = new byte[numBytes];
-        int byteIndex = 0;
+        byte[] data = new byte[getMod3SvesLength(arr.length)];
+        encodeMod3Sves(arr, skipFirst, data, 0);
+        return data;
+    }
+    
+    /**
+     * Like {@link #encodeMod3Sves(int[], boolean)} but writes the encoded array to an existing array.<br/>
+     * Every four coefficients are converted to six bits through a table.
+     * @param arr
+     * @param skipFirst whether to skip the constant coefficient
+     * @param dst the array to write to
+     * @param offset where to start writing in <code>dst</code>
+     * @return the number of bytes written, see {@link #getMod3SvesLength(int)}
+     * @throws NtruException if <code>(-1,-1)</code> is encountered; this is checked after the whole array has been encoded
+     * @throws ArrayIndexOutOfBoundsException if <code>dst</code> is too small
+     */
+    public static int encodeMod3Sves(int[] arr, boolean skipFirst, byte[] dst, int offset) {
+        int numBytes = getMod3SvesLength(arr.length);
+        if (offset<0 || offset+numBytes>dst.length)
+            throw new ArrayIndexOutOfBoundsException(offset + numBytes);
+        
         int start = skipFirst ? 1 : 0;
         int end = skipFirst ? (arr.length-1)|1 : arr.length/2*2;   // if there is an odd number of coeffs, throw away the highest one
+        int numPairs = Math.max(end-start, 0) / 2;
+        int fail = 0;
         int i = start;
-        while (i < end) {
-            // process 24 bits at a time in the outer loop
+        int byteIndex = offset;
+        
+        // process 8 pairs = 24 bits at a time
+        for (int c=0; c<numPairs/8; c++) {
             int chunk = 0;
-            int chunkBits = 0;   // #bits in the chunk
-            while (chunkBits<24 && i<end) {
-                int coeff1 = arr[i++] + 1;
-                int coeff2 = arr[i++] + 1;
-                if (coeff1==0 && coeff2==0)
-                    throw new NtruException("Illegal encoding!");
-                
-                int bitTableIndex = coeff1*3 + coeff2;
-                chunk |= BIT1_TABLE[bitTableIndex] << chunkBits++;
-                chunk |= BIT2_TABLE[bitTableIndex] << chunkBits++;
-                chunk |= BIT3_TABLE[bitTableIndex] << chunkBits++;
+            for (int j=0; j<4; j++) {
+                int entry = SVES_ENCODE_TABLE[27*arr[i] + 9*arr[i+1] + 3*arr[i+2] + arr[i+3] + 40];
+                fail |= entry;
+                chunk |= (entry&63) << (6*j);
+                i += 4;
             }
-            
-            data[byteIndex++] = (byte)(chunk & 0xFF);
-            if (byteIndex < data.length)
-                data[byteIndex++] = (byte)((chunk>>8) & 0xFF);
-            if (byteIndex < data.length)
-                data[byteIndex++] = (byte)((chunk>>16) & 0xFF);
+            dst[byteIndex] = (byte)chunk;
+            dst[byteIndex+1] = (byte)(chunk>>>8);
+            dst[byteIndex+2] = (byte)(chunk>>>16);
+            byteIndex += 3;
         }
-        return data;
+        
+        // the last pairs, if there are fewer than 8 left
+        int chunk = 0;
+        for (int j=0; j<numPairs%8; j++) {
+            int entry = SVES_ENCODE_TABLE[27*arr[i] + 9*arr[i+1] + 40];   // (arr[i],arr[i+1]) followed by (0,0)
+            fail |= entry;
+            chunk |= (entry&7) << (3*j);
+            i += 2;
+        }
+        for (int j=byteIndex; j<offset+numBytes; j++) {
+            dst[j] = (byte)chunk;
+            chunk >>>= 8;
+        }
+        
+        if ((fail&SVES_FAIL) != 0)
+            throw new NtruException("Illegal encoding!");
+        return numBytes;
+    }
+    
+    /**
+     * Like {@link #encodeMod3Sves(int[], boolean)} but writes the encoded array to a buffer instead of returning it.
+     * @param arr
+     * @param skipFirst whether to skip the constant coefficient
+     * @param dst the buffer to write to; the position is advanced by the length of the encoding
+     * @throws NtruException if <code>(-1,-1)</code> is encountered; the position of <code>dst</code> is not changed in this case
+     * @throws java.nio.BufferOverflowException if <code>dst</code> is too small; <code>dst</code> is not modified in this case
+     */
+    public static void encodeMod3Sves(int[] arr, boolean skipFirst, ByteBuffer dst) {
+        int numBytes = getMod3SvesLength(arr.length);
+        if (dst.remaining() < numBytes)
+            throw new BufferOverflowException();
+        if (dst.hasArray()) {
+            int pos = dst.position();
+            encodeMod3Sves(arr, skipFirst, dst.array(), dst.arrayOffset()+pos);
+            dst.position(pos + numBytes);
+        }
+        else
+            dst.put(encodeMod3Sves(arr, skipFirst));
+    }
+    
+    /**
+     * Returns the length of the array returned by {@link #encodeMod3Sves(int[], boolean)}.
+     * @param N the number of coefficients
+     * @return the number of bytes
+     */
+    public static int getMod3SvesLength(int N) {
+        int numBits = (N*3+1) / 2;
+        return (numBits+7) / 8;
     }
     
     /**
@@ -26,6 +26,12 @@
 
 package net.sf.ntru.util;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class PlatformUtil {
     private static volatile boolean IS_64_BITNESS_KNOWN;
     private static volatile boolean IS_64_BIT_JVM;
@@ -43,4 +49,24 @@ public class PlatformUtil {
         }
         return IS_64_BIT_JVM;
     }
+    
+    /**
+     * Creates a thread pool whose threads are daemon threads that terminate after one second of idleness,
+     * so a pool that is no longer used neither keeps the JVM alive nor holds on to threads.
+     * @param numThreads the maximum number of threads
+     * @param name the name of the threads
+     * @return a new executor
+     */
+    public static ExecutorService createDaemonExecutor(int numThreads, final String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
\ No newline at end of file
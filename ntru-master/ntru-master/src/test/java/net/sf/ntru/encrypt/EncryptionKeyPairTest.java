@@ -60,9 +60,9 @@ public class EncryptionKeyPairTest {
         EncryptionParameters params = APR2011_439;
         NtruEncrypt ntru = new NtruEncrypt(params);
         EncryptionKeyPair kp = ntru.generateKeyPair();
-        kp.pub.h.coeffs[55]++;
+        kp.pub.hShort.coeffs[55]++;
         assertFalse(kp.isValid());
-        kp.pub.h.coeffs[55]--;
+        kp.pub.hShort.coeffs[55]--;
         IntegerPolynomial t = kp.priv.t.toIntegerPolynomial();
         t.coeffs[66]++;
         kp.priv.t = t;
@@ -26,12 +26,17 @@
 
 package net.sf.ntru.encrypt;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+import net.sf.ntru.polynomial.IntegerPolynomial;
+import net.sf.ntru.polynomial.PolynomialGeneratorForTesting;
+import net.sf.ntru.util.ArrayEncoder;
+
 import org.junit.Test;
 
 public class EncryptionKeyTest {
@@ -60,5 +65,21 @@ public class EncryptionKeyTest {
         EncryptionKeyPair kp3 = new EncryptionKeyPair(new EncryptionPrivateKey(bis1), new EncryptionPublicKey(bis2));
         assertEquals(kp.pub, kp3.pub);
         assertEquals(kp.priv, kp3.priv);
+    }    
+    // h is stored in a ShortPolynomial if q allows it, and in an IntegerPolynomial otherwise; the encoding is the same
+    @Test
+    public void testShortPolynomial() {
+        int N = 439;
+        for (int q: new int[] {2048, 65536, 1<<17}) {
+            IntegerPolynomial h = PolynomialGeneratorForTesting.generateRandomPositive(N, q);
+            EncryptionPublicKey pub = new EncryptionPublicKey(h.clone(), N, q);
+            assertEquals(q <= 65536, pub.hShort != null);
+            assertEquals(q > 65536, pub.hInt != null);
+            assertEquals(h, pub.getH());
+            byte[] encoded = pub.getEncoded();
+            assertArrayEquals(ArrayEncoder.concatenate(ArrayEncoder.toByteArray(N), ArrayEncoder.toByteArray(q), h.toBinary(q)), encoded);
+            if (q < 32768)   // q is encoded as a signed 16-bit number
+                assertEquals(pub, new EncryptionPublicKey(encoded));
+        }
     }
 }
\ No newline at end of file
@@ -27,14 +27,20 @@
 package net.sf.ntru.encrypt;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.zip.GZIPOutputStream;
 
+import net.sf.ntru.polynomial.DenseTernaryPolynomial;
+import net.sf.ntru.polynomial.SparseTernaryPolynomial;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -105,4 +111,99 @@ public class IndexGeneratorTest {
         for (int i: indices)
             assertTrue(i>=0 && i<params.N);
     }
+    
+    /** Compares the output for a fixed seed with the output of the original byte-oriented implementation. */
+    @Test
+    public void testKnownAnswer() {
+        byte[] seed = new byte[100];
+        for (int i=0; i<seed.length; i++)
+            seed[i] = (byte)(7*i);
+        
+        checkKnownAnswer(seed, EncryptionParameters.APR2011_439, new int[] {36, 15, 146, 144, 133, 270, 266, 401}, 2094508645);
+        checkKnownAnswer(seed, EncryptionParameters.APR2011_743, new int[] {59, 311, 695, 203, 345, 222, 372, 476}, -1303735032);
+        checkKnownAnswer(seed, EncryptionParameters.EES1087EP2, new int[] {729, 862, 928, 809, 472, 884, 434, 347}, -981758120);
+    }
+    
+    /**
+     * @param first the first few indices
+     * @param hashCode the hash code of the first 5000 indices
+     */
+    private void checkKnownAnswer(byte[] seed, EncryptionParameters params, int[] first, int hashCode) {
+        IndexGenerator ig = new IndexGenerator(seed, params);
+        int[] indices = new int[5000];
+        for (int i=0; i<indices.length; i++)
+            indices[i] = ig.nextIndex();
+        assertArrayEquals(first, Arrays.copyOf(indices, first.length));
+        assertEquals(hashCode, Arrays.hashCode(indices));
+    }
+    
+    @Test
+    public void testNextBlindingIndices() {
+        int dr = params.dr;
+        int[] blindingIndices = new IndexGenerator(seed, params).nextBlindingIndices(dr);
+        assertEquals(2*dr, blindingIndices.length);
+        boolean[] used = new boolean[params.N];
+        for (int i: blindingIndices) {
+            assertTrue(i>=0 && i<params.N);
+            assertFalse(used[i]);
+            used[i] = true;
+        }
+        
+        // the indices are the first distinct values returned by nextIndex()
+        ig = new IndexGenerator(seed, params);
+        int t = 0;
+        Arrays.fill(used, false);
+        while (t < blindingIndices.length) {
+            int i = ig.nextIndex();
+            if (!used[i]) {
+                used[i] = true;
+                assertEquals(blindingIndices[t], i);
+                t++;
+            }
+        }
+    }    
+    @Test
+    public void testNextBlindingCoeffs() {
+        for (EncryptionParameters params: new EncryptionParameters[] {EncryptionParameters.APR2011_439, EncryptionParameters.APR2011_743_FAST, EncryptionParameters.EES1087EP2}) {
+            // a single polynomial, negative ones first
+            int[] coeffs = new IndexGenerator(seed, params).nextBlindingCoeffs(new int[] {params.dr}, true)[0];
+            int[] indices = new IndexGenerator(seed, params).nextBlindingIndices(params.dr);
+            assertArrayEquals(toCoeffs(indices, params.N, -1), coeffs);
+            
+            // a single polynomial, ones first
+            coeffs = new IndexGenerator(seed, params).nextBlindingCoeffs(new int[] {params.dr}, false)[0];
+            assertArrayEquals(toCoeffs(indices, params.N, 1), coeffs);
+            
+            // three polynomials from the same index sequence
+            int[] dr = new int[] {params.dr1, params.dr2, params.dr3};
+            int[][] coeffs3 = new IndexGenerator(seed, params).nextBlindingCoeffs(dr, false);
+            IndexGenerator ig = new IndexGenerator(seed, params);
+            for (int k=0; k<dr.length; k++)
+                assertArrayEquals(toCoeffs(ig.nextBlindingIndices(dr[k]), params.N, 1), coeffs3[k]);
+        }
+    }
+    
+    @Test
+    public void testGenerateBlindingPoly() {
+        int[] indices = new IndexGenerator(seed, params).nextBlindingIndices(params.dr);
+        
+        // dense: negative ones first
+        DenseTernaryPolynomial dense = DenseTernaryPolynomial.generateBlindingPoly(new IndexGenerator(seed, params), params.N, params.dr);
+        assertArrayEquals(toCoeffs(indices, params.N, -1), dense.coeffs);
+        
+        // sparse: ones first
+        SparseTernaryPolynomial sparse = SparseTernaryPolynomial.generateBlindingPoly(new IndexGenerator(seed, params), params.N, params.dr);
+        assertArrayEquals(toCoeffs(indices, params.N, 1), sparse.toIntegerPolynomial().coeffs);
+    }
+    
+    /** Sets the coefficients at the first half of <code>indices</code> to <code>firstValue</code> and the rest to <code>-firstValue</code> */
+    private int[] toCoeffs(int[] indices, int N, int firstValue) {
+        int[] coeffs = new int[N];
+        int dr = indices.length / 2;
+        for (int i=0; i<dr; i++) {
+            coeffs[indices[i]] = firstValue;
+            coeffs[indices[dr+i]] = -firstValue;
+        }
+        return coeffs;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import static net.sf.ntru.encrypt.EncryptionParameters.APR2011_439_FAST;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.ntru.exception.NtruException;
+
+import org.junit.Test;
+
+public class KeyPairPoolTest {
+    
+    @Test
+    public void testTake() throws InterruptedException {
+        KeyPairPool pool = new KeyPairPool(APR2011_439_FAST, 3, 2);
+        try {
+            waitForSize(pool, 3);
+            Thread.sleep(100);
+            assertEquals(3, pool.size());   // the inventory is bounded
+            
+            NtruEncrypt ntru = new NtruEncrypt(APR2011_439_FAST);
+            byte[] plainText = "test message".getBytes();
+            Set<EncryptionPublicKey> keys = new HashSet<EncryptionPublicKey>();
+            for (int i=0; i<6; i++) {
+                EncryptionKeyPair kp = pool.take();
+                assertFalse(keys.contains(kp.getPublic()));
+                keys.add(kp.getPublic());
+                byte[] encrypted = ntru.encrypt(plainText, kp.getPublic());
+                assertArrayEquals(plainText, ntru.decrypt(encrypted, kp));
+            }
+            
+            // the pool refills in the background
+            waitForSize(pool, 3);
+        }
+        finally {
+            pool.shutdown();
+        }
+        
+        assertEquals(0, pool.size());
+        assertNotNull(pool.take());
+        assertNull(pool.poll(10, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testExternalExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            KeyPairPool pool = new KeyPairPool(APR2011_439_FAST, 2, 1, executor);
+            assertNotNull(pool.poll(10, TimeUnit.SECONDS));
+            pool.shutdown();
+            
+            // the worker has stopped, so the executor can run other tasks
+            assertEquals(Boolean.TRUE, executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return Boolean.TRUE;
+                }
+            }).get(10, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testFailingGenerator() throws InterruptedException {
+        // fails three times, then works
+        final AtomicInteger numCalls = new AtomicInteger();
+        NtruEncrypt ntru = new NtruEncrypt(APR2011_439_FAST) {
+            @Override
+            public EncryptionKeyPair generateKeyPairSingleThread() {
+                if (numCalls.incrementAndGet() <= 3)
+                    throw new NtruException("failure #" + numCalls.get());
+                return super.generateKeyPairSingleThread();
+            }
+        };
+        
+        KeyPairPool pool = new KeyPairPool(ntru, 2, 1, Executors.newFixedThreadPool(1), true);
+        try {
+            assertNotNull(pool.poll(30, TimeUnit.SECONDS));
+            waitForSize(pool, 2);
+            assertEquals("failure #3", pool.getLastFailure().getMessage());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testAlwaysFailingGenerator() throws InterruptedException {
+        final AtomicInteger numCalls = new AtomicInteger();
+        NtruEncrypt ntru = new NtruEncrypt(APR2011_439_FAST) {
+            @Override
+            public EncryptionKeyPair generateKeyPairSingleThread() {
+                numCalls.incrementAndGet();
+                throw new NtruException("failure");
+            }
+        };
+        
+        KeyPairPool pool = new KeyPairPool(ntru, 2, 2, Executors.newFixedThreadPool(2), true);
+        try {
+            // with backoff, each worker tries 10+20+40+80+160+320 ms apart, i.e. about 7 times in 700 ms
+            Thread.sleep(700);
+            assertTrue("numCalls=" + numCalls.get(), numCalls.get() <= 2*8);
+            assertEquals("failure", pool.getLastFailure().getMessage());
+            assertEquals(0, pool.size());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+    
+    private void waitForSize(KeyPairPool pool, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (pool.size()<size && System.currentTimeMillis()<deadline)
+            Thread.sleep(10);
+        assertEquals(size, pool.size());
+    }
+}
\ No newline at end of file
@@ -37,10 +37,30 @@ import static net.sf.ntru.encrypt.EncryptionParameters.EES1499EP1;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import net.sf.ntru.encrypt.EncryptionParameters.TernaryPolynomialType;
 import net.sf.ntru.exception.NtruException;
 import net.sf.ntru.polynomial.IntegerPolynomial;
+import net.sf.ntru.polynomial.PolynomialGeneratorForTesting;
+import net.sf.ntru.polynomial.ProductFormPolynomial;
+import net.sf.ntru.polynomial.SparseTernaryPolynomial;
 
 import org.junit.Test;
 
@@ -137,7 +157,7 @@ public class NtruEncryptTest {
         try {
             byte[] plainText = "secret encrypted text".getBytes();
             byte[] encrypted = ntru.encrypt(plainText, kp.pub);
-            IntegerPolynomial h = kp.pub.h.clone();
+            IntegerPolynomial h = kp.pub.getH();
             h.coeffs[0] = (h.coeffs[0]+111) % params.q;   // alter h
             kp = new EncryptionKeyPair(kp.priv, new EncryptionPublicKey(h, params.N, params.q));
             ntru.decrypt(encrypted, kp);
@@ -205,6 +225,28 @@ public class NtruEncryptTest {
         assertFalse(kp1.equals(kp3));
     }
     
+    // keys derived from a passphrase must be the same as in earlier versions
+    @Test
+    public void testGenerateKeyPairKnownAnswer() {
+        checkKnownKeyPair(APR2011_439, -1449768108, 311583887);
+        checkKnownKeyPair(APR2011_439_FAST, 31475392, -1373094805);
+        checkKnownKeyPair(APR2011_743, -1786488868, 1102768802);
+        checkKnownKeyPair(EES1087EP2, -506755158, -1022282774);
+    }
+    
+    /**
+     * @param params
+     * @param hashCode the hash code of the encoded key pair returned by <code>generateKeyPair(char[], byte[])</code>
+     * @param hashCodeSingleThread the hash code of the encoded key pair returned by <code>generateKeyPairSingleThread(char[], byte[])</code>
+     */
+    private void checkKnownKeyPair(EncryptionParameters params, int hashCode, int hashCodeSingleThread) {
+        NtruEncrypt ntru = new NtruEncrypt(params);
+        char[] passphrase = "password123".toCharArray();
+        byte[] salt = "salt for the test".getBytes();
+        assertEquals(hashCode, Arrays.hashCode(ntru.generateKeyPair(passphrase, salt).getEncoded()));
+        assertEquals(hashCodeSingleThread, Arrays.hashCode(ntru.generateKeyPairSingleThread(passphrase, salt).getEncoded()));
+    }
+    
     @Test
     public void testGetOutputLength() {
         EncryptionParameters[] paramSets = new EncryptionParameters[] {APR2011_439, APR2011_439_FAST, APR2011_743, APR2011_743_FAST, EES1087EP2, EES1171EP1, EES1499EP1};
@@ -217,4 +259,259 @@ public class NtruEncryptTest {
             assertEquals(params.getOutputLength(), encrypted.length);
         }
     }
+    
+    @Test
+    public void testEncryptBatch() {
+        NtruEncrypt ntru = new NtruEncrypt(APR2011_439_FAST);
+        EncryptionKeyPair kp = ntru.generateKeyPair();
+        List<byte[]> plainTexts = new ArrayList<byte[]>();
+        for (int i=0; i<100; i++)
+            plainTexts.add(("message #" + i).getBytes());
+        
+        List<byte[]> encrypted = ntru.encryptBatch(plainTexts, kp.pub);
+        assertEquals(plainTexts.size(), encrypted.size());
+        for (int i=0; i<plainTexts.size(); i++)
+            assertArrayEquals(plainTexts.get(i), ntru.decrypt(encrypted.get(i), kp));
+        
+        Iterator<byte[]> encryptedIter = ntru.encryptBatch(plainTexts.iterator(), kp.pub);
+        for (int i=0; i<plainTexts.size(); i++)
+            assertArrayEquals(plainTexts.get(i), ntru.decrypt(encryptedIter.next(), kp));
+        assertFalse(encryptedIter.hasNext());
+        
+        assertTrue(ntru.encryptBatch(new ArrayList<byte[]>(), kp.pub).isEmpty());
+        assertFalse(ntru.encryptBatch(new ArrayList<byte[]>().iterator(), kp.pub).hasNext());
+        
+        // a message that is too long
+        plainTexts.set(50, new byte[APR2011_439_FAST.maxMsgLenBytes+1]);
+        try {
+            ntru.encryptBatch(plainTexts, kp.pub);
+            fail("An exception should have been thrown!");
+        }
+        catch (NtruException ex) {
+            assertEquals("Message too long: " + (APR2011_439_FAST.maxMsgLenBytes+1) + ">" + APR2011_439_FAST.maxMsgLenBytes, ex.getMessage());
+        }
+    }
+    
+    @Test
+    public void testEncryptPrepared() {
+        // dense, sparse, and product-form blinding polynomials
+        for (EncryptionParameters params: new EncryptionParameters[] {APR2011_743, APR2011_439, APR2011_439_FAST}) {
+            NtruEncrypt ntru = new NtruEncrypt(params);
+            EncryptionKeyPair kp = ntru.generateKeyPair();
+            PreparedPublicKey pub = new PreparedPublicKey(kp.pub, params);
+            assertEquals(kp.pub, pub.getKey());
+            for (int i=0; i<10; i++) {
+                byte[] plainText = ("message #" + i).getBytes();
+                assertArrayEquals(plainText, ntru.decrypt(ntru.encrypt(plainText, pub), kp));
+            }
+        }
+        
+        // parameters don't match the key
+        EncryptionKeyPair kp = new NtruEncrypt(APR2011_439).generateKeyPair();
+        try {
+            new PreparedPublicKey(kp.pub, APR2011_743);
+            fail("An exception should have been thrown!");
+        }
+        catch (NtruException ex) { }
+        
+        // parameters don't match the NtruEncrypt instance
+        PreparedPublicKey pub = new PreparedPublicKey(kp.pub, APR2011_439);
+        try {
+            new NtruEncrypt(APR2011_439_FAST).encrypt(new byte[1], pub);
+            fail("An exception should have been thrown!");
+        }
+        catch (NtruException ex) { }
+    }
+    
+    @Test
+    public void testDecryptPrepared() {
+        // dense, sparse, and product-form private keys
+        for (EncryptionParameters params: new EncryptionParameters[] {APR2011_743, APR2011_439, APR2011_439_FAST, EES1087EP2}) {
+            NtruEncrypt ntru = new NtruEncrypt(params);
+            EncryptionKeyPair kp = ntru.generateKeyPair();
+            PreparedPrivateKey priv = new PreparedPrivateKey(kp, params);
+            assertEquals(kp, priv.getKeyPair());
+            for (int i=0; i<10; i++) {
+                byte[] plainText = ("message #" + i).getBytes();
+                assertArrayEquals(plainText, ntru.decrypt(ntru.encrypt(plainText, kp.pub), priv));
+            }
+        }
+        
+        // parameters don't match the NtruEncrypt instance
+        EncryptionKeyPair kp = new NtruEncrypt(APR2011_439).generateKeyPair();
+        PreparedPrivateKey priv = new PreparedPrivateKey(kp, APR2011_439);
+        try {
+            new NtruEncrypt(APR2011_439_FAST).decrypt(new byte[APR2011_439.getOutputLength()], priv);
+            fail("An exception should have been thrown!");
+        }
+        catch (NtruException ex) {
+            assertEquals("The key was prepared for different parameters", ex.getMessage());
+        }
+    }
+    
+    // tests that the constant-time products of the prepared keys are the same as the products of the original keys
+    @Test
+    public void testPreparedMult() {
+        Random rng = new Random();
+        for (EncryptionParameters params: new EncryptionParameters[] {APR2011_743, APR2011_439, APR2011_439_FAST, EES1087EP2}) {
+            int N = params.N;
+            int q = params.q;
+            EncryptionKeyPair kp = new NtruEncrypt(params).generateKeyPair();
+            PreparedPrivateKey priv = new PreparedPrivateKey(kp, params);
+            IntegerPolynomial e = PolynomialGeneratorForTesting.generateRandomPositive(N, q);
+            assertEquals(kp.priv.t.mult(e, q), priv.mult(e));
+            
+            // h times a ternary and a product-form polynomial given as coefficient arrays
+            PreparedPublicKey pub = priv.pub;
+            IntegerPolynomial r = PolynomialGeneratorForTesting.generateRandom(N);
+            int[][] rCoeffs = new int[][] {r.coeffs};
+            assertEquals(r.mult(pub.h, q), pub.mult(rCoeffs));
+            assertEquals(pub.mult(rCoeffs), PreparedPublicKey.multDense(pub.h, null, rCoeffs, q));   // unpacked
+            
+            ProductFormPolynomial rProd = ProductFormPolynomial.generateRandom(N, 8, 8, 5, 5, rng);
+            SparseTernaryPolynomial[] factors = rProd.getFactors();
+            rCoeffs = new int[3][];
+            for (int i=0; i<3; i++)
+                rCoeffs[i] = factors[i].toIntegerPolynomial().coeffs;
+            assertEquals(rProd.mult(pub.h, q), pub.mult(rCoeffs));
+            assertEquals(pub.mult(rCoeffs), PreparedPublicKey.multDense(pub.h, null, rCoeffs, q));
+        }
+    }
+    
+    // tests that a single instance can be used by several threads at once
+    @Test
+    public void testConcurrent() throws Exception {
+        final NtruEncrypt ntru = new NtruEncrypt(APR2011_439_FAST);
+        final EncryptionKeyPair kp = ntru.generateKeyPair();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i=0; i<8; i++) {
+            final byte[] plainText = ("thread #" + i).getBytes();
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (int j=0; j<20; j++) {
+                        byte[] encrypted = ntru.encrypt(plainText, kp.pub);
+                        if (!Arrays.equals(plainText, ntru.decrypt(encrypted, kp)))
+                            return false;
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> result: results)
+            assertTrue(result.get());
+        executor.shutdown();
+    }
+    
+    @Test
+    public void testEncryptDecryptByteBuffer() {
+        for (EncryptionParameters params: new EncryptionParameters[] {APR2011_439, APR2011_743_FAST}) {
+            NtruEncrypt ntru = new NtruEncrypt(params);
+            EncryptionKeyPair kp = ntru.generateKeyPair();
+            byte[] plainText = "text to encrypt".getBytes();
+            
+            for (boolean direct: new boolean[] {false, true}) {
+                ByteBuffer src = direct ? ByteBuffer.allocateDirect(100) : ByteBuffer.allocate(100);
+                ByteBuffer encrypted = direct ? ByteBuffer.allocateDirect(params.getOutputLength()+5) : ByteBuffer.allocate(params.getOutputLength()+5);
+                ByteBuffer decrypted = direct ? ByteBuffer.allocateDirect(params.getMaxMessageLength()) : ByteBuffer.allocate(params.getMaxMessageLength());
+                src.put(plainText);
+                src.flip();
+                encrypted.position(5);
+                
+                assertEquals(params.getOutputLength(), ntru.encrypt(src, encrypted, kp.pub));
+                assertEquals(0, src.remaining());
+                assertEquals(0, encrypted.remaining());
+                
+                encrypted.position(5);
+                byte[] encryptedArr = new byte[params.getOutputLength()];
+                encrypted.get(encryptedArr);
+                assertArrayEquals(plainText, ntru.decrypt(encryptedArr, kp));
+                
+                encrypted.position(5);
+                assertEquals(plainText.length, ntru.decrypt(encrypted, decrypted, kp));
+                assertEquals(0, encrypted.remaining());
+                decrypted.flip();
+                byte[] decryptedArr = new byte[decrypted.remaining()];
+                decrypted.get(decryptedArr);
+                assertArrayEquals(plainText, decryptedArr);
+                
+                // array-encrypted data decrypts from a buffer
+                byte[] encrypted2 = ntru.encrypt(plainText, kp.pub);
+                decrypted.clear();
+                assertEquals(plainText.length, ntru.decrypt(ByteBuffer.wrap(encrypted2), decrypted, new PreparedPrivateKey(kp, params)));
+            }
+            
+            // buffers too small
+            ByteBuffer src = ByteBuffer.wrap(plainText);
+            try {
+                ntru.encrypt(src, ByteBuffer.allocate(params.getOutputLength()-1), kp.pub);
+                fail("An exception should have been thrown!");
+            }
+            catch (BufferOverflowException e) {
+                assertEquals(0, src.position());
+            }
+            try {
+                ntru.decrypt(ByteBuffer.allocate(params.getOutputLength()-1), ByteBuffer.allocate(params.getMaxMessageLength()), kp);
+                fail("An exception should have been thrown!");
+            }
+            catch (BufferUnderflowException e) { }
+            try {
+                ntru.decrypt(ByteBuffer.wrap(ntru.encrypt(plainText, kp.pub)), ByteBuffer.allocate(params.getMaxMessageLength()-1), kp);
+                fail("An exception should have been thrown!");
+            }
+            catch (BufferOverflowException e) { }
+        }
+    }
+    
+    @Test
+    public void testMGF() throws NoSuchAlgorithmException {
+        Random rng = new Random();
+        for (EncryptionParameters params: new EncryptionParameters[] {APR2011_439, APR2011_743, EES1499EP1}) {
+            MessageDigest hashAlg = MessageDigest.getInstance(params.hashAlg);
+            for (int i=0; i<5; i++) {
+                byte[] seed = new byte[rng.nextInt(200)];
+                rng.nextBytes(seed);
+                for (int minCallsMask: new int[] {0, 1, params.minCallsMask})
+                    for (boolean hashSeed: new boolean[] {true, false}) {
+                        IntegerPolynomial expected = mgfReference(seed, params.N, minCallsMask, hashSeed, hashAlg);
+                        assertArrayEquals(expected.coeffs, NtruEncrypt.MGF(seed, params.N, minCallsMask, hashSeed, hashAlg).coeffs);
+                    }
+            }
+        }
+    }
+    
+    /** A straightforward implementation of MGF-TP-1 that computes the base-3 digits of each byte */
+    private IntegerPolynomial mgfReference(byte[] seed, int N, int minCallsMask, boolean hashSeed, MessageDigest hashAlg) {
+        byte[] Z = hashSeed ? hashAlg.digest(seed) : seed;
+        List<Byte> buf = new ArrayList<Byte>();
+        int counter = 0;
+        IntegerPolynomial i = new IntegerPolynomial(N);
+        int cur = 0;
+        while (true) {
+            while (counter<minCallsMask || buf.isEmpty()) {
+                ByteBuffer hashInput = ByteBuffer.allocate(Z.length + 4);
+                hashInput.put(Z);
+                hashInput.putInt(counter);
+                for (byte b: hashAlg.digest(hashInput.array()))
+                    buf.add(b);
+                counter++;
+            }
+            
+            for (byte o: buf) {
+                int O = o & 0xFF;
+                if (O >= 243)
+                    continue;
+                for (int terIdx=0; terIdx<5; terIdx++) {
+                    int rem3 = O % 3;
+                    i.coeffs[cur] = rem3==2 ? -1 : rem3;
+                    cur++;
+                    if (cur == N)
+                        return i;
+                    O /= 3;
+                }
+            }
+            buf.clear();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.encrypt;
+
+import static net.sf.ntru.encrypt.EncryptionParameters.APR2011_439_FAST;
+import static net.sf.ntru.encrypt.EncryptionParameters.APR2011_743_FAST;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.ntru.exception.NtruException;
+
+import org.junit.Test;
+
+public class NtruHybridCipherTest {
+    
+    @Test
+    public void testEncryptDecrypt() throws IOException {
+        NtruHybridCipher cipher = new NtruHybridCipher(APR2011_439_FAST, 64);
+        EncryptionKeyPair kp = new NtruEncrypt(APR2011_439_FAST).generateKeyPair();
+        int[] lengths = new int[] {0, 1, 63, 64, 65, 128, 3*64+5};
+        for (int length: lengths) {
+            byte[] plain = randomBytes(length);
+            byte[] encrypted = encrypt(cipher, plain, kp.getPublic());
+            assertEquals(cipher.getOutputLength(length), encrypted.length);
+            assertArrayEquals(plain, decrypt(cipher, encrypted, kp));
+        }
+        
+        // default chunk size, 256-bit key
+        cipher = new NtruHybridCipher(APR2011_743_FAST);
+        kp = new NtruEncrypt(APR2011_743_FAST).generateKeyPair();
+        byte[] plain = randomBytes(2*NtruHybridCipher.DEFAULT_CHUNK_SIZE + 1000);
+        byte[] encrypted = encrypt(cipher, plain, kp.getPublic());
+        assertEquals(cipher.getOutputLength(plain.length), encrypted.length);
+        assertArrayEquals(plain, decrypt(cipher, encrypted, kp));
+    }
+    
+    @Test
+    public void testEncryptDecryptFileChannel() throws IOException {
+        NtruHybridCipher cipher = new NtruHybridCipher(APR2011_439_FAST, 1000);
+        EncryptionKeyPair kp = new NtruEncrypt(APR2011_439_FAST).generateKeyPair();
+        byte[] plain = randomBytes(10*1000 + 17);
+        File plainFile = File.createTempFile("ntru", ".plain");
+        File encFile = File.createTempFile("ntru", ".enc");
+        File decFile = File.createTempFile("ntru", ".dec");
+        try {
+            FileOutputStream fos = new FileOutputStream(plainFile);
+            fos.write(plain);
+            fos.close();
+            
+            FileChannel in = new FileInputStream(plainFile).getChannel();
+            FileChannel out = new FileOutputStream(encFile).getChannel();
+            cipher.encrypt(in, out, kp.getPublic());
+            in.close();
+            out.close();
+            assertEquals(cipher.getOutputLength(plain.length), encFile.length());
+            
+            in = new FileInputStream(encFile).getChannel();
+            out = new FileOutputStream(decFile).getChannel();
+            cipher.decrypt(in, out, kp);
+            in.close();
+            out.close();
+            
+            byte[] decrypted = new byte[(int)decFile.length()];
+            FileInputStream fis = new FileInputStream(decFile);
+            assertEquals(decrypted.length, fis.read(decrypted));
+            fis.close();
+            assertArrayEquals(plain, decrypted);
+        }
+        finally {
+            plainFile.delete();
+            encFile.delete();
+            decFile.delete();
+        }
+    }
+    
+    @Test
+    public void testTampering() throws IOException {
+        NtruHybridCipher cipher = new NtruHybridCipher(APR2011_439_FAST, 64);
+        EncryptionKeyPair kp = new NtruEncrypt(APR2011_439_FAST).generateKeyPair();
+        byte[] plain = randomBytes(3*64 + 5);
+        byte[] encrypted = encrypt(cipher, plain, kp.getPublic());
+        int headerLength = (int)cipher.getOutputLength(0) - 16;
+        
+        // modify a byte in the second chunk
+        byte[] modified = encrypted.clone();
+        modified[headerLength + 80 + 3]++;
+        assertDecryptFails(cipher, modified, kp);
+        
+        // remove the final chunk
+        assertDecryptFails(cipher, Arrays.copyOf(encrypted, headerLength + 3*80), kp);
+        
+        // truncate the final chunk
+        assertDecryptFails(cipher, Arrays.copyOf(encrypted, encrypted.length-1), kp);
+        
+        // append data after the final chunk
+        modified = Arrays.copyOf(encrypted, encrypted.length+1);
+        assertDecryptFails(cipher, modified, kp);
+        
+        // swap the first two chunks
+        modified = encrypted.clone();
+        System.arraycopy(encrypted, headerLength, modified, headerLength+80, 80);
+        System.arraycopy(encrypted, headerLength+80, modified, headerLength, 80);
+        assertDecryptFails(cipher, modified, kp);
+        
+        // change the chunk size in the header
+        modified = encrypted.clone();
+        modified[7]++;
+        assertDecryptFails(cipher, modified, kp);
+        
+        // wrong key
+        EncryptionKeyPair kp2 = new NtruEncrypt(APR2011_439_FAST).generateKeyPair();
+        assertDecryptFails(cipher, encrypted, kp2);
+        
+        // wrong parameter set
+        assertDecryptFails(new NtruHybridCipher(APR2011_743_FAST, 64), encrypted, kp);
+    }
+    
+    private void assertDecryptFails(NtruHybridCipher cipher, byte[] encrypted, EncryptionKeyPair kp) throws IOException {
+        try {
+            decrypt(cipher, encrypted, kp);
+            fail("An exception should have been thrown!");
+        }
+        catch (NtruException e) {
+        }
+    }
+    
+    private byte[] encrypt(NtruHybridCipher cipher, byte[] plain, EncryptionPublicKey pubKey) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cipher.encrypt(new ByteArrayInputStream(plain), out, pubKey);
+        return out.toByteArray();
+    }
+    
+    private byte[] decrypt(NtruHybridCipher cipher, byte[] encrypted, EncryptionKeyPair kp) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cipher.decrypt(new ByteArrayInputStream(encrypted), out, kp);
+        return out.toByteArray();
+    }
+    
+    private byte[] randomBytes(int length) {
+        byte[] b = new byte[length];
+        new Random().nextBytes(b);
+        return b;
+    }
+}
\ No newline at end of file
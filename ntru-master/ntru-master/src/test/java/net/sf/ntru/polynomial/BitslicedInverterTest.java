@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitslicedInverterTest {
+    // includes lengths on either side of word boundaries
+    private static final int[] LENGTHS = new int[] {2, 3, 5, 11, 62, 63, 64, 65, 127, 128, 439, 1499};
+    
+    @Test
+    public void testInvertMod2() {
+        testInvert(2);
+    }
+    
+    @Test
+    public void testInvertMod3() {
+        testInvert(3);
+    }
+    
+    private void testInvert(int modulus) {
+        Random rng = new Random();
+        for (int N: LENGTHS) {
+            int numInvertible = 0;
+            while (numInvertible < 3) {
+                int[] a = new int[N];
+                for (int i=0; i<N; i++)
+                    a[i] = rng.nextInt(7) - 3;
+                int[] inv = invert(a, modulus);
+                if (inv != null) {
+                    numInvertible++;
+                    verifyInverse(a, inv, modulus);
+                }
+            }
+            
+            // a(1)=0 means a is divisible by x-1, which also divides x^N-1
+            int[] a = new int[N];
+            a[0] = 1;
+            a[N-1] = -1;
+            assertNull(invert(a, modulus));
+            assertNull(invert(new int[N], modulus));
+        }
+    }
+    
+    private int[] invert(int[] a, int modulus) {
+        return modulus==2 ? BitslicedInverter.invertMod2(a) : BitslicedInverter.invertMod3(a);
+    }
+    
+    // tests if a*b=1 (mod modulus)
+    private void verifyInverse(int[] a, int[] b, int modulus) {
+        IntegerPolynomial c = new IntegerPolynomial(a).mult(new IntegerPolynomial(b), modulus);
+        c.modPositive(modulus);
+        assertEquals(1, c.coeffs[0]);
+        for (int i=1; i<c.coeffs.length; i++)
+            assertEquals(0, c.coeffs[i]);
+    }
+}
\ No newline at end of file
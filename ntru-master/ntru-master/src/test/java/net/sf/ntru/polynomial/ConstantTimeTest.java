@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+
+import net.sf.ntru.util.TimingLeakageDetector;
+import net.sf.ntru.util.TimingLeakageDetector.Target;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the decryption kernels for timing leaks with a {@link TimingLeakageDetector}.<br/>
+ * The tests measure wall-clock time, which takes a while and is unreliable on a loaded machine, so they
+ * only run if the system property <code>ntru.timingTests</code> is <code>true</code>:
+ * <code>mvn test -Dntru.timingTests=true -Dtest=ConstantTimeTest</code>. The random inputs are derived from
+ * the seed in <code>ntru.timingTests.seed</code>, or a fixed seed if it is not set, and every failure message
+ * includes the seed.
+ */
+public class ConstantTimeTest {
+    private static final int N = 439;
+    private static final int q = 2048;
+    private static final int NUM_MEASUREMENTS = 20000;
+    private static final long DEFAULT_SEED = 439;
+    
+    private long seed = Long.getLong("ntru.timingTests.seed", DEFAULT_SEED);
+    private Random rng = new Random(seed);
+    private TimingLeakageDetector detector = new TimingLeakageDetector(rng);
+    
+    @Before
+    public void checkEnabled() {
+        assumeTrue(Boolean.getBoolean("ntru.timingTests"));
+    }
+    
+    /** makes sure the detector finds obvious leaks */
+    @Test
+    public void testDetector() {
+        // multiplication through index lists: the zero polynomial has no indices
+        final IntegerPolynomial b = PolynomialGeneratorForTesting.generateRandomPositive(N, q);
+        double t = detector.maxT(new Target<SparseTernaryPolynomial>() {
+            @Override
+            public SparseTernaryPolynomial prepare(boolean fixed) {
+                return SparseTernaryPolynomial.generateRandom(N, fixed?0:N/3, fixed?0:N/3, rng);
+            }
+            
+            @Override
+            public int run(SparseTernaryPolynomial input) {
+                return input.mult(b, q).coeffs[0];
+            }
+        }, NUM_MEASUREMENTS/10);
+        assertTrue("t=" + t + ", seed=" + seed, t > TimingLeakageDetector.THRESHOLD);
+        
+        // equals() stops at the first difference
+        final IntegerPolynomial a = new IntegerPolynomial(N);
+        t = detector.maxT(new Target<IntegerPolynomial>() {
+            @Override
+            public IntegerPolynomial prepare(boolean fixed) {
+                return new IntegerPolynomial(coeffs(fixed, 0, q-1));
+            }
+            
+            @Override
+            public int run(IntegerPolynomial input) {
+                return a.equals(input) ? 1 : 0;
+            }
+        }, NUM_MEASUREMENTS);
+        assertTrue("t=" + t + ", seed=" + seed, t > TimingLeakageDetector.THRESHOLD);
+    }
+    
+    @Test
+    public void testMultDenseTernary() {
+        final IntegerPolynomial b = PolynomialGeneratorForTesting.generateRandomPositive(N, q);
+        double t = detector.maxT(new Target<DenseTernaryPolynomial>() {
+            @Override
+            public DenseTernaryPolynomial prepare(boolean fixed) {
+                return new DenseTernaryPolynomial(coeffs(fixed, -1, 1));
+            }
+            
+            @Override
+            public int run(DenseTernaryPolynomial input) {
+                return input.mult(b, q).coeffs[0];
+            }
+        }, NUM_MEASUREMENTS/10);
+        assertTrue("t=" + t + ", seed=" + seed, t < TimingLeakageDetector.THRESHOLD);
+    }
+    
+    @Test
+    public void testCenter0() {
+        for (final int modulus: new int[] {q, 3}) {
+            double t = detector.maxT(new Target<IntegerPolynomial>() {
+                @Override
+                public IntegerPolynomial prepare(boolean fixed) {
+                    return new IntegerPolynomial(coeffs(fixed, -(1<<29), 1<<29));
+                }
+                
+                @Override
+                public int run(IntegerPolynomial input) {
+                    input.center0(modulus);
+                    return input.coeffs[0];
+                }
+            }, NUM_MEASUREMENTS);
+            assertTrue("t=" + t + ", seed=" + seed, t < TimingLeakageDetector.THRESHOLD);
+        }
+    }
+    
+    @Test
+    public void testCenter0Mod3() {
+        for (final int modulus: new int[] {q, 3}) {
+            double t = detector.maxT(new Target<IntegerPolynomial>() {
+                @Override
+                public IntegerPolynomial prepare(boolean fixed) {
+                    return new IntegerPolynomial(coeffs(fixed, -(1<<29), 1<<29));
+                }
+                
+                @Override
+                public int run(IntegerPolynomial input) {
+                    return input.center0Mod3(modulus)[0];
+                }
+            }, NUM_MEASUREMENTS);
+            assertTrue("t=" + t + ", seed=" + seed, t < TimingLeakageDetector.THRESHOLD);
+        }
+    }
+    
+    @Test
+    public void testCount() {
+        double t = detector.maxT(new Target<IntegerPolynomial>() {
+            @Override
+            public IntegerPolynomial prepare(boolean fixed) {
+                return new IntegerPolynomial(coeffs(fixed, -1, 1));
+            }
+            
+            @Override
+            public int run(IntegerPolynomial input) {
+                return input.count(0);
+            }
+        }, NUM_MEASUREMENTS);
+        assertTrue("t=" + t + ", seed=" + seed, t < TimingLeakageDetector.THRESHOLD);
+    }
+    
+    @Test
+    public void testEqualsConstantTime() {
+        final IntegerPolynomial a = new IntegerPolynomial(N);
+        double t = detector.maxT(new Target<IntegerPolynomial>() {
+            @Override
+            public IntegerPolynomial prepare(boolean fixed) {
+                return new IntegerPolynomial(coeffs(fixed, 0, q-1));
+            }
+            
+            @Override
+            public int run(IntegerPolynomial input) {
+                return a.equalsConstantTime(input) ? 1 : 0;
+            }
+        }, NUM_MEASUREMENTS);
+        assertTrue("t=" + t + ", seed=" + seed, t < TimingLeakageDetector.THRESHOLD);
+    }
+    
+    /**
+     * Returns <code>N</code> coefficients that are all zero if <code>fixed=true</code>, or random otherwise.
+     * Both classes of inputs are created the same way so they end up in similar places in memory.
+     */
+    private int[] coeffs(boolean fixed, int min, int max) {
+        int[] coeffs = new int[N];
+        for (int i=0; i<N; i++) {
+            int c = min + rng.nextInt(max-min+1);
+            coeffs[i] = fixed ? 0 : c;
+        }
+        return coeffs;
+    }
+}
\ No newline at end of file
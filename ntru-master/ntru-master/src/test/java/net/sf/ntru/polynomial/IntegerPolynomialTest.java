@@ -35,6 +35,8 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.sf.ntru.encrypt.EncryptionParameters;
 import net.sf.ntru.sign.SignatureParameters;
@@ -113,14 +115,16 @@ public class IntegerPolynomialTest {
         assertEqualsMod(new int[] {5, 9, 6, 16, 4, 15, 16, 22, 20, 18, 30}, b.coeffs, 32);
         verifyInverse(a, b, 32);
         
-        // test 3 random polynomials
-        int numInvertible = 0;
-        while (numInvertible < 3) {
-            a = PolynomialGeneratorForTesting.generateRandom(853);
-            b = a.invertFq(2048);
-            if (b != null) {
-                numInvertible++;
-                verifyInverse(a, b, 2048);
+        // test 3 random polynomials for each q
+        for (int q: new int[] {256, 2048, 4096, 65536, 1<<17, 1<<20}) {
+            int numInvertible = 0;
+            while (numInvertible < 3) {
+                a = PolynomialGeneratorForTesting.generateRandom(853);
+                b = a.invertFq(q);
+                if (b != null) {
+                    numInvertible++;
+                    verifyInverse(a, b, q);
+                }
             }
         }
         
@@ -205,6 +209,29 @@ public class IntegerPolynomialTest {
         verifyResultant(a, a.resultant());
     }
     
+    @Test
+    public void testResultantMultiThread() {
+        SignatureParameters params = SignatureParameters.APR2011_439;
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int i=0; i<3; i++) {
+                IntegerPolynomial a = DenseTernaryPolynomial.generateRandom(params.N, params.d, params.d, new SecureRandom());
+                Resultant r = a.resultant();
+                Resultant r2 = a.resultantMultiThread();
+                assertEquals(r.res, r2.res);
+                assertEquals(r.rho, r2.rho);
+                verifyResultant(a, r2);
+                
+                r2 = a.resultant(executor);
+                assertEquals(r.res, r2.res);
+                assertEquals(r.rho, r2.rho);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
     // verifies that res=rho*a mod x^n-1
     private void verifyResultant(IntegerPolynomial a, Resultant r) {
         BigIntPolynomial b = new BigIntPolynomial(a).multSmall(r.rho);
@@ -229,6 +256,13 @@ public class IntegerPolynomialTest {
             a = PolynomialGeneratorForTesting.generateRandom(853);
             verifyResultant(a, a.resultant(p), p);
         }
+        
+        // small primes and coefficients that are not reduced
+        for (int p2: new int[] {2, 3, 9391}) {
+            a = PolynomialGeneratorForTesting.generateRandom(439, 2048);
+            a.coeffs[0] = -a.coeffs[0];
+            verifyResultant(a, a.resultant(p2), p2);
+        }
     }
     
     // verifies that res=rho*a mod x^n-1 mod p
@@ -259,4 +293,69 @@ public class IntegerPolynomialTest {
         
         assertEquals(c1, c2);
     }
+    
+    /** compares mod3(), center0(), and count() to straightforward implementations */
+    @Test
+    public void testModCenterCount() {
+        Random rng = new Random();
+        int[] coeffs = new int[1000];
+        for (int i=0; i<coeffs.length; i++)
+            coeffs[i] = rng.nextInt();
+        int[] extremes = new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE+1, -65537, -65536, -1025, -1024, -2, -1, 0, 1, 2, 1023, 1024, 65535, 65536, Integer.MAX_VALUE};
+        System.arraycopy(extremes, 0, coeffs, 0, extremes.length);
+        
+        IntegerPolynomial a = new IntegerPolynomial(coeffs.clone());
+        a.mod3();
+        for (int i=0; i<coeffs.length; i++) {
+            int expected = coeffs[i] % 3;
+            if (expected > 1)
+                expected -= 3;
+            if (expected < -1)
+                expected += 3;
+            assertEquals(expected, a.coeffs[i]);
+        }
+        
+        for (int q: new int[] {3, 2048, 256}) {
+            a = new IntegerPolynomial(coeffs.clone());
+            a.center0(q);
+            for (int i=0; i<coeffs.length; i++) {
+                assertTrue(a.coeffs[i]>=-q/2 && a.coeffs[i]<=q/2);
+                assertEquals(0, ((long)a.coeffs[i]-coeffs[i]) % q);
+            }
+        }
+        
+        a = new IntegerPolynomial(coeffs.clone());
+        a.mod3();
+        int[] counts = new int[3];
+        for (int c: a.coeffs)
+            counts[c+1]++;
+        for (int value=-1; value<=1; value++)
+            assertEquals(counts[value+1], a.count(value));
+        assertEquals(0, a.count(Integer.MIN_VALUE));
+    }
+    
+    /** compares center0Mod3() to center0() followed by mod3() and count() */
+    @Test
+    public void testCenter0Mod3() {
+        Random rng = new Random();
+        int[] coeffs = new int[1000];
+        for (int i=0; i<coeffs.length; i++)
+            coeffs[i] = rng.nextInt();
+        int[] extremes = new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE+1, -65537, -65536, -1025, -1024, -2, -1, 0, 1, 2, 1023, 1024, 65535, 65536, Integer.MAX_VALUE};
+        System.arraycopy(extremes, 0, coeffs, 0, extremes.length);
+        
+        for (int q: new int[] {3, 2048, 256, 2, 1000}) {
+            int[] input = coeffs.clone();
+            if (q == 1000)   // center0 only handles small values for moduli that aren't powers of 2
+                for (int i=0; i<input.length; i++)
+                    input[i] %= 4*q;
+            IntegerPolynomial expected = new IntegerPolynomial(input.clone());
+            expected.center0(q);
+            expected.mod3();
+            IntegerPolynomial a = new IntegerPolynomial(input.clone());
+            int[] counts = a.center0Mod3(q);
+            assertArrayEquals(expected.coeffs, a.coeffs);
+            assertArrayEquals(new int[] {expected.count(-1), expected.count(0), expected.count(1)}, counts);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import net.sf.ntru.exception.NtruException;
+
+import org.junit.Test;
+
+public class KaratsubaMultiplierTest {
+    
+    @Test
+    public void testWorkspace() {
+        PolynomialWorkspace workspace = new PolynomialWorkspace(1499);
+        for (int N: new int[] {1, 2, 32, 33, 65, 439, 1499}) {
+            IntegerPolynomial a = PolynomialGeneratorForTesting.generateRandom(N, 2048);
+            IntegerPolynomial b = PolynomialGeneratorForTesting.generateRandom(N, 2048);
+            assertArrayEquals(a.mult(b, new NttMultiplier()).coeffs, a.mult(b, workspace).coeffs);
+        }
+    }
+    
+    @Test(expected=NtruException.class)
+    public void testWorkspaceTooSmall() {
+        IntegerPolynomial a = PolynomialGeneratorForTesting.generateRandom(439, 2048);
+        a.mult(a, new PolynomialWorkspace(107));
+    }
+}
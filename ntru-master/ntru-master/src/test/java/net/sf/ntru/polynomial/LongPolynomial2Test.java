@@ -41,8 +41,8 @@ public class LongPolynomial2Test {
     public void testMult() {
         IntegerPolynomial i1 = new IntegerPolynomial(new int[] {1368, 2047, 672, 871, 1662, 1352, 1099, 1608});
         IntegerPolynomial i2 = new IntegerPolynomial(new int[] {1729, 1924, 806, 179, 1530, 1381, 1695, 60});
-        LongPolynomial2 a = new LongPolynomial2(i1);
-        LongPolynomial2 b = new LongPolynomial2(i2);
+        LongPolynomial2 a = new LongPolynomial2(i1, 2048);
+        LongPolynomial2 b = new LongPolynomial2(i2, 2048);
         IntegerPolynomial c1 = i1.mult(i2, 2048);
         IntegerPolynomial c2 = a.mult(b).toIntegerPolynomial();
         assertArrayEquals(c1.coeffs, c2.coeffs);
@@ -53,21 +53,34 @@ public class LongPolynomial2Test {
             int N = 2 + rng.nextInt(2000);
             i1 = PolynomialGeneratorForTesting.generateRandom(N, 2048);
             i2 = PolynomialGeneratorForTesting.generateRandom(N, 2048);
-            a = new LongPolynomial2(i1);
-            b = new LongPolynomial2(i2);
+            a = new LongPolynomial2(i1, 2048);
+            b = new LongPolynomial2(i2, 2048);
             c1 = i1.mult(i2);
             c1.modPositive(2048);
             c2 = a.mult(b).toIntegerPolynomial();
             assertArrayEquals(c1.coeffs, c2.coeffs);
         }
+        
+        // test other moduli
+        for (int q: new int[] {2, 256, 4096}) {
+            int N = 2 + rng.nextInt(2000);
+            i1 = PolynomialGeneratorForTesting.generateRandom(N, q);
+            i2 = PolynomialGeneratorForTesting.generateRandom(N, q);
+            a = new LongPolynomial2(i1, q);
+            b = new LongPolynomial2(i2, q);
+            c1 = i1.mult(i2);
+            c1.modPositive(q);
+            c2 = a.mult(b).toIntegerPolynomial();
+            assertArrayEquals(c1.coeffs, c2.coeffs);
+        }
     }
     
     @Test
     public void testSubAnd() {
         IntegerPolynomial i1 = new IntegerPolynomial(new int[] {1368, 2047, 672, 871, 1662, 1352, 1099, 1608});
         IntegerPolynomial i2 = new IntegerPolynomial(new int[] {1729, 1924, 806, 179, 1530, 1381, 1695, 60});
-        LongPolynomial2 a = new LongPolynomial2(i1);
-        LongPolynomial2 b = new LongPolynomial2(i2);
+        LongPolynomial2 a = new LongPolynomial2(i1, 2048);
+        LongPolynomial2 b = new LongPolynomial2(i2, 2048);
         a.subAnd(b, 2047);
         i1.sub(i2);
         i1.modPositive(2048);
@@ -77,7 +90,7 @@ public class LongPolynomial2Test {
     @Test
     public void testMult2And() {
         IntegerPolynomial i1 = new IntegerPolynomial(new int[] {1368, 2047, 672, 871, 1662, 1352, 1099, 1608});
-        LongPolynomial2 i2 = new LongPolynomial2(i1);
+        LongPolynomial2 i2 = new LongPolynomial2(i1, 2048);
         i2.mult2And(2047);
         i1.mult(2);
         i1.modPositive(2048);
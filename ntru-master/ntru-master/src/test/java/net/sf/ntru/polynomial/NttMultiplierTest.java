@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NttMultiplierTest {
+    
+    @Test
+    public void testMultiply() {
+        PolynomialMultiplier karatsuba = new KaratsubaMultiplier();
+        PolynomialMultiplier ntt = new NttMultiplier();
+        
+        assertArrayEquals(new int[] {-2}, ntt.multiply(new int[] {2}, new int[] {-1}));
+        assertArrayEquals(new int[] {4, 4, 2}, ntt.multiply(new int[] {1, 1, 0}, new int[] {3, 1, 1}));
+        
+        Random rng = new Random();
+        for (int N: new int[] {2, 3, 31, 33, 64, 107, 439, 743, 1087, 1499}) {
+            // one prime
+            testMultiply(karatsuba, ntt, PolynomialGeneratorForTesting.generateRandom(N).coeffs, PolynomialGeneratorForTesting.generateRandom(N).coeffs);
+            // two primes
+            testMultiply(karatsuba, ntt, PolynomialGeneratorForTesting.generateRandom(N, 2048).coeffs, PolynomialGeneratorForTesting.generateRandom(N, 2048).coeffs);
+            // three primes; the product coefficients overflow
+            int[] a = new int[N];
+            int[] b = new int[N];
+            for (int i=0; i<N; i++) {
+                a[i] = rng.nextInt();
+                b[i] = rng.nextInt();
+            }
+            a[0] = Integer.MIN_VALUE;
+            b[0] = Integer.MIN_VALUE;
+            testMultiply(karatsuba, ntt, a, b);
+            // squaring
+            testMultiply(karatsuba, ntt, a, a);
+        }
+    }
+    
+    private void testMultiply(PolynomialMultiplier expected, PolynomialMultiplier actual, int[] a, int[] b) {
+        int[] aCopy = a.clone();
+        int[] bCopy = b.clone();
+        assertArrayEquals(expected.multiply(a, b), actual.multiply(a, b));
+        assertArrayEquals(aCopy, a);
+        assertArrayEquals(bCopy, b);
+    }
+    
+    @Test
+    public void testCrossover() {
+        IntegerPolynomial a = PolynomialGeneratorForTesting.generateRandom(1087, 2048);
+        IntegerPolynomial b = PolynomialGeneratorForTesting.generateRandom(1087, 2048);
+        PolynomialMultiplier crossover = new CrossoverMultiplier(new KaratsubaMultiplier(), new NttMultiplier(), 500);
+        assertArrayEquals(a.mult(b, new KaratsubaMultiplier()).coeffs, a.mult(b, crossover).coeffs);
+        assertArrayEquals(a.mult(b, new KaratsubaMultiplier()).coeffs, a.mult(b).coeffs);
+        
+        // the crossover depends on the size of the coefficients
+        final int[] calls = new int[2];
+        PolynomialMultiplier small = new PolynomialMultiplier() {
+            @Override
+            public int[] multiply(int[] a, int[] b) {
+                calls[0]++;
+                return new int[a.length];
+            }
+        };
+        PolynomialMultiplier large = new PolynomialMultiplier() {
+            @Override
+            public int[] multiply(int[] a, int[] b) {
+                calls[1]++;
+                return new int[a.length];
+            }
+        };
+        crossover = new CrossoverMultiplier(small, large, 700, 1400, 4000);
+        int[] ternary = PolynomialGeneratorForTesting.generateRandom(1087).coeffs;
+        crossover.multiply(ternary, b.coeffs);   // one prime
+        assertArrayEquals(new int[] {0, 1}, calls);
+        crossover.multiply(a.coeffs, b.coeffs);   // two primes
+        assertArrayEquals(new int[] {1, 1}, calls);
+        crossover.multiply(new int[500], new int[500]);   // below all crossovers
+        assertArrayEquals(new int[] {2, 1}, calls);
+        int[] c = new int[5000];
+        c[0] = Integer.MAX_VALUE;
+        crossover.multiply(c, c);   // above all crossovers
+        assertArrayEquals(new int[] {2, 2}, calls);
+        c = new int[2000];
+        c[0] = Integer.MAX_VALUE;
+        crossover.multiply(c, c);   // three primes
+        assertArrayEquals(new int[] {3, 2}, calls);
+    }
+}
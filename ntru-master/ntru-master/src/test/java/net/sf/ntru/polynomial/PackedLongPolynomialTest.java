@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackedLongPolynomialTest {
+    
+    @Test
+    public void testMult() {
+        Random rng = new Random();
+        for (int q: new int[] {2, 256, 2048, 4096, 65536, 1<<30}) {
+            // N=7, 14, 5, and 4 are multiples of the number of coefficients per long for some q
+            for (int N: new int[] {1, 4, 5, 7, 14, 439, 1 + rng.nextInt(2000)}) {
+                IntegerPolynomial a = PolynomialGeneratorForTesting.generateRandomPositive(N, q);
+                DenseTernaryPolynomial b = PolynomialGeneratorForTesting.generateRandom(N);
+                IntegerPolynomial expected = a.mult(b);
+                expected.modPositive(q);
+                
+                PackedLongPolynomial packed = new PackedLongPolynomial(a, q);
+                assertArrayEquals(a.coeffs, packed.toIntegerPolynomial().coeffs);
+                assertArrayEquals(expected.coeffs, packed.mult(b).toIntegerPolynomial().coeffs);
+                assertArrayEquals(expected.coeffs, b.mult(a, q).coeffs);
+            }
+        }
+    }
+    
+    /** tests that a product can be multiplied again without unpacking it */
+    @Test
+    public void testMultTwice() {
+        Random rng = new Random();
+        for (int q: new int[] {256, 2048, 65536}) {
+            for (int N: new int[] {5, 7, 439, 1 + rng.nextInt(2000)}) {
+                IntegerPolynomial a = PolynomialGeneratorForTesting.generateRandomPositive(N, q);
+                SparseTernaryPolynomial b1 = SparseTernaryPolynomial.generateRandom(N, N/5, N/5, rng);
+                SparseTernaryPolynomial b2 = SparseTernaryPolynomial.generateRandom(N, N/5, N/5, rng);
+                IntegerPolynomial expected = b2.mult(b1.mult(a));
+                expected.modPositive(q);
+                
+                PackedLongPolynomial packed = new PackedLongPolynomial(a, q).mult(b1).mult(b2);
+                assertArrayEquals(expected.coeffs, packed.toIntegerPolynomial().coeffs);
+            }
+        }
+    }
+    
+    @Test
+    public void testIsSupported() {
+        assertTrue(PackedLongPolynomial.isSupported(2));
+        assertTrue(PackedLongPolynomial.isSupported(2048));
+        assertTrue(PackedLongPolynomial.isSupported(1<<30));
+        assertFalse(PackedLongPolynomial.isSupported(1));
+        assertFalse(PackedLongPolynomial.isSupported(3));
+        assertFalse(PackedLongPolynomial.isSupported(1<<31));
+    }
+}
\ No newline at end of file
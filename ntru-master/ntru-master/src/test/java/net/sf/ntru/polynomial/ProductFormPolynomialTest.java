@@ -72,4 +72,14 @@ public class ProductFormPolynomialTest {
         IntegerPolynomial p4 = p1.toIntegerPolynomial().mult(p2);
         assertEquals(p3, p4);
     }
+    
+    @Test
+    public void testMultMod() {
+        ProductFormPolynomial p1 = ProductFormPolynomial.generateRandom(N, df1, df2, df3, df3-1, rng);
+        IntegerPolynomial p2 = PolynomialGeneratorForTesting.generateRandom(N, q);
+        IntegerPolynomial p3 = p1.mult(p2, q);
+        IntegerPolynomial p4 = p1.toIntegerPolynomial().mult(p2, q);
+        p4.modPositive(q);
+        assertEquals(p3, p4);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Random;
+
+import net.sf.ntru.exception.NtruException;
+
+import org.junit.Test;
+
+public class ShortPolynomialTest {
+    
+    /** tests mult(TernaryPolynomial) and mult(Polynomial, int) against IntegerPolynomial */
+    @Test
+    public void testMult() {
+        Random rng = new SecureRandom();
+        for (int q: new int[] {2048, 65536}) {
+            IntegerPolynomial a = PolynomialGeneratorForTesting.generateRandomPositive(439, q);
+            ShortPolynomial as = new ShortPolynomial(a);
+            
+            Polynomial[] polys = new Polynomial[] {
+                    SparseTernaryPolynomial.generateRandom(439, 146, 146, rng),
+                    DenseTernaryPolynomial.generateRandom(439, 146, 145, rng),
+                    ProductFormPolynomial.generateRandom(439, 9, 8, 5, 5, rng),
+                    PolynomialGeneratorForTesting.generateRandom(439, 2048)
+            };
+            for (Polynomial p: polys) {
+                IntegerPolynomial expected = p.mult(a);
+                expected.modPositive(q);
+                ShortPolynomial prod = as.mult(p, q);
+                prod.mod(q);
+                assertEquals(new ShortPolynomial(expected), prod);
+            }
+        }
+    }
+    
+    /** coefficients wrap around mod 2^16 */
+    @Test
+    public void testAddSub() {
+        ShortPolynomial a = new ShortPolynomial(new short[] {32767, -32768, 5, 0});
+        ShortPolynomial b = new ShortPolynomial(new short[] {1, -1, 2});
+        a.add(b);
+        assertArrayEquals(new short[] {-32768, 32767, 7, 0}, a.coeffs);
+        a.sub(b, 2048);
+        assertArrayEquals(new short[] {2047, 0, 5, 0}, a.coeffs);
+    }
+    
+    @Test
+    public void testMod() {
+        ShortPolynomial a = new ShortPolynomial(new short[] {-1, 2048, 4095, -32768});
+        a.mod(2048);
+        assertArrayEquals(new short[] {2047, 0, 2047, 0}, a.coeffs);
+        
+        try {
+            a.mod(3000);
+            fail("An exception should have been thrown!");
+        }
+        catch (NtruException e) {
+        }
+    }
+    
+    @Test
+    public void testFromToBinary() throws IOException {
+        for (int q: new int[] {2048, 65536}) {
+            IntegerPolynomial aInt = PolynomialGeneratorForTesting.generateRandomPositive(1499, q);
+            ShortPolynomial a = new ShortPolynomial(aInt);
+            byte[] data = a.toBinary(q);
+            assertArrayEquals(aInt.toBinary(q), data);
+            assertEquals(a, ShortPolynomial.fromBinary(data, 1499, q));
+            assertEquals(a, ShortPolynomial.fromBinary(new ByteArrayInputStream(data), 1499, q));
+        }
+    }
+}
\ No newline at end of file
@@ -55,6 +55,21 @@ public class SparseTernaryPolynomialTest {
         assertEquals(new BigIntPolynomial(prod1), prod3);
     }
     
+    /** tests mult(IntegerPolynomial, int) with moduli that can and cannot be packed */
+    @Test
+    public void testMultMod() {
+        Random rng = new SecureRandom();
+        for (int q: new int[] {2048, 256, 2, 1<<16, 1000}) {
+            for (int N: new int[] {439, 1000, 1087}) {
+                SparseTernaryPolynomial p1 = SparseTernaryPolynomial.generateRandom(N, N/8, N/8-1, rng);
+                IntegerPolynomial p2 = PolynomialGeneratorForTesting.generateRandom(N, q);
+                IntegerPolynomial expected = p1.mult(p2);
+                expected.modPositive(q);
+                assertEquals(expected, p1.mult(p2, q));
+            }
+        }
+    }
+    
     @Test
     public void testFromToBinary() throws IOException {
         Random rng = new SecureRandom();
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.polynomial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import net.sf.ntru.exception.NtruException;
+
+import org.junit.Test;
+
+public class TernarySamplerTest {
+    
+    @Test
+    public void testGenerateIndices() {
+        Random rng = new Random();
+        for (int i=0; i<10; i++) {
+            int N = rng.nextInt(2000) + 10;
+            int numIndices = rng.nextInt(N+1);
+            int[] indices = TernarySampler.generateIndices(N, numIndices, rng);
+            assertEquals(numIndices, indices.length);
+            boolean[] used = new boolean[N];
+            for (int idx: indices) {
+                assertTrue(idx>=0 && idx<N);
+                assertFalse(used[idx]);
+                used[idx] = true;
+            }
+        }
+        
+        assertEquals(0, TernarySampler.generateIndices(5, 0, rng).length);
+        assertEquals(5, TernarySampler.generateIndices(5, 5, rng).length);
+    }
+    
+    @Test
+    public void testGenerateCoeffs() {
+        Random rng = new Random();
+        for (int i=0; i<10; i++) {
+            int N = rng.nextInt(2000) + 10;
+            int numOnes = rng.nextInt(N);
+            int numNegOnes = rng.nextInt(N-numOnes);
+            int[] coeffs = TernarySampler.generateCoeffs(N, numOnes, numNegOnes, rng);
+            assertEquals(N, coeffs.length);
+            int[] count = new int[3];
+            for (int c: coeffs)
+                count[c+1]++;
+            assertEquals(numNegOnes, count[0]);
+            assertEquals(N-numOnes-numNegOnes, count[1]);
+            assertEquals(numOnes, count[2]);
+        }
+        
+        try {
+            TernarySampler.generateCoeffs(10, 6, 5, rng);
+            fail();
+        }
+        catch (NtruException e) { }
+    }
+    
+    // every coefficient should be 1 or -1 equally often
+    @Test
+    public void testDistribution() {
+        Random rng = new Random();
+        int N = 11;
+        int numSamples = 30000;
+        int[] numOnes = new int[N];
+        int[] numNegOnes = new int[N];
+        for (int i=0; i<numSamples; i++) {
+            int[] coeffs = TernarySampler.generateCoeffs(N, 3, 2, rng);
+            for (int j=0; j<N; j++)
+                if (coeffs[j] == 1)
+                    numOnes[j]++;
+                else if (coeffs[j] == -1)
+                    numNegOnes[j]++;
+        }
+        
+        // expected values are 3/11 and 2/11 of numSamples; allow for 6 standard deviations
+        for (int j=0; j<N; j++) {
+            assertTrue(Math.abs(numOnes[j] - numSamples*3/N) < 6*Math.sqrt(numSamples*3/N));
+            assertTrue(Math.abs(numNegOnes[j] - numSamples*2/N) < 6*Math.sqrt(numSamples*2/N));
+        }
+    }
+}
\ No newline at end of file
@@ -36,6 +36,8 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.sf.ntru.polynomial.IntegerPolynomial;
 import net.sf.ntru.polynomial.Polynomial;
@@ -153,6 +155,33 @@ public class NtruSignTest {
         assertFalse(valid);
     }
     
+    @Test
+    public void testGenerateKeyPairExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (SignatureParameters params: new SignatureParameters[] {TEST157.clone(), TEST157_PROD.clone()}) {
+                NtruSign ntru = new NtruSign(params);
+                for (int parallelism: new int[] {1, 5}) {
+                    SignatureKeyPair kp = ntru.generateKeyPair(executor, parallelism);
+                    assertEquals(params.B+1, kp.priv.getNumBases());
+                    for (int i=0; i<=params.B; i++) {
+                        FGBasis basis = (FGBasis)kp.priv.getBasis(i);
+                        assertTrue(basis.isNormOk());
+                        assertTrue(equalsQ(basis.f, basis.fPrime, basis.F, basis.G, params.q, params.N));
+                    }
+                    
+                    byte[] msg = "test message".getBytes();
+                    byte[] s = ntru.sign(msg, kp);
+                    assertTrue(ntru.verify(msg, s, kp.pub));
+                }
+            }
+            assertFalse(executor.isShutdown());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
     /** test for the initSign/update/sign and initVerify/update/verify variant */
     @Test
     public void testInitUpdateSign() {
@@ -27,9 +27,16 @@
 package net.sf.ntru.util;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
+import net.sf.ntru.exception.NtruException;
 import net.sf.ntru.polynomial.PolynomialGeneratorForTesting;
 import net.sf.ntru.util.ArrayEncoder;
 
@@ -43,6 +50,96 @@ public class ArrayEncoderTest {
         byte[] data = ArrayEncoder.encodeModQ(coeffs, 2048);
         int[] coeffs2 = ArrayEncoder.decodeModQ(data, 1000, 2048);
         assertArrayEquals(coeffs, coeffs2);
+        
+        // ByteBuffers
+        for (int q: new int[] {256, 2048}) {
+            for (int N: new int[] {1, 7, 8, 1000}) {
+                coeffs = PolynomialGeneratorForTesting.generateRandomPositive(N, q).coeffs;
+                data = ArrayEncoder.encodeModQ(coeffs, q);
+                for (ByteBuffer buf: new ByteBuffer[] {ByteBuffer.allocate(data.length+2), ByteBuffer.allocateDirect(data.length+2)}) {
+                    buf.put((byte)1);
+                    ArrayEncoder.encodeModQ(coeffs, q, buf);
+                    assertEquals(data.length+1, buf.position());
+                    buf.flip();
+                    byte[] data2 = new byte[data.length];
+                    buf.get();
+                    buf.get(data2);
+                    assertArrayEquals(data, data2);
+                    
+                    buf.position(1);
+                    assertArrayEquals(coeffs, ArrayEncoder.decodeModQ(buf, N, q));
+                    assertEquals(data.length+1, buf.position());
+                }
+            }
+        }
+    }
+    
+    /** Compares the encoding with a bit-by-bit reference implementation for various moduli and lengths. */
+    @Test
+    public void testEncodeModQBits() {
+        Random rng = new Random();
+        for (int bits=1; bits<=16; bits++) {
+            int q = 1 << bits;
+            for (int N: new int[] {1, 7, 8, 9, 15, 16, 17, 439, 1499}) {
+                int[] coeffs = new int[N];
+                for (int i=0; i<N; i++)
+                    coeffs[i] = rng.nextInt(q);
+                byte[] expected = encodeModQReference(coeffs, bits);
+                assertArrayEquals(expected, ArrayEncoder.encodeModQ(coeffs, q));
+                assertArrayEquals(coeffs, ArrayEncoder.decodeModQ(expected, N, q));
+                
+                // truncated encoding
+                int numBytes = rng.nextInt(expected.length+1);
+                assertArrayEquals(Arrays.copyOf(expected, numBytes), ArrayEncoder.encodeModQTrunc(coeffs, q, numBytes));
+                
+                // existing arrays
+                byte[] dst = new byte[expected.length+5];
+                assertEquals(expected.length, ArrayEncoder.encodeModQ(coeffs, q, dst, 3));
+                assertArrayEquals(expected, Arrays.copyOfRange(dst, 3, 3+expected.length));
+                int[] coeffs2 = new int[N];
+                ArrayEncoder.decodeModQ(dst, 3, q, coeffs2);
+                assertArrayEquals(coeffs, coeffs2);
+            }
+        }
+        
+        // values outside 0..q-1 are reduced mod q
+        assertArrayEquals(ArrayEncoder.encodeModQ(new int[] {2047, 5, 0, 1, 2, 3, 4, 5, 6}, 2048),
+                ArrayEncoder.encodeModQ(new int[] {-1, 2053, 0, 1, 2, 3, 4, 5, 6}, 2048));
+    }
+    
+    private byte[] encodeModQReference(int[] a, int bits) {
+        byte[] data = new byte[(a.length*bits+7) / 8];
+        int bitIndex = 0;
+        for (int i=0; i<a.length; i++)
+            for (int j=0; j<bits; j++) {
+                data[bitIndex/8] |= ((a[i]>>j)&1) << (bitIndex%8);
+                bitIndex++;
+            }
+        return data;
+    }
+    
+    @Test
+    public void testModQBufferTooSmall() {
+        int[] coeffs = PolynomialGeneratorForTesting.generateRandomPositive(439, 2048).coeffs;
+        byte[] data = ArrayEncoder.encodeModQ(coeffs, 2048);
+        for (ByteBuffer buf: new ByteBuffer[] {ByteBuffer.allocate(data.length-1), ByteBuffer.allocateDirect(data.length-1)}) {
+            try {
+                ArrayEncoder.encodeModQ(coeffs, 2048, buf);
+                fail();
+            }
+            catch (BufferOverflowException e) {
+                assertEquals(0, buf.position());
+            }
+            buf.put(data, 0, data.length-1);
+            buf.flip();
+            try {
+                ArrayEncoder.decodeModQ(buf, 439, 2048);
+                fail();
+            }
+            catch (BufferUnderflowException e) {
+                assertEquals(0, buf.position());
+            }
+        }
     }
     
     @Test
@@ -60,6 +157,66 @@ public class ArrayEncoderTest {
             }
     }
     
+    /** Compares the table-based SVES conversion with a conversion that uses the P1363.1 tables directly. */
+    @Test
+    public void testMod3SvesTables() {
+        int[] coeff1 = {0, 0, 0, 1, 1, 1, -1, -1};   // from P1363.1
+        int[] coeff2 = {0, 1, -1, 0, 1, -1, 0, 1};
+        Random rng = new Random();
+        for (boolean skipFirst: new boolean[] {true, false})
+            for (int N: new int[] {1, 2, 3, 16, 17, 18, 19, 33, 439, 743, 1087, 1171, 1499}) {
+                byte[] data = new byte[rng.nextInt(N+5)];
+                rng.nextBytes(data);
+                
+                // decode bit by bit
+                int[] expected = new int[N];
+                int coeffIndex = skipFirst ? 1 : 0;
+                for (int bit=0; bit+3<=data.length/3*24 && coeffIndex<N-1; bit+=3) {
+                    int b0 = (data[bit/8]>>(bit%8)) & 1;
+                    int b1 = (data[(bit+1)/8]>>((bit+1)%8)) & 1;
+                    int b2 = (data[(bit+2)/8]>>((bit+2)%8)) & 1;
+                    expected[coeffIndex++] = coeff1[4*b0+2*b1+b2];
+                    expected[coeffIndex++] = coeff2[4*b0+2*b1+b2];
+                }
+                int[] coeffs = ArrayEncoder.decodeMod3Sves(data, N, skipFirst);
+                assertArrayEquals(expected, coeffs);
+                
+                // decode into an existing array
+                byte[] data2 = new byte[data.length+2];
+                System.arraycopy(data, 0, data2, 2, data.length);
+                int[] coeffs2 = new int[N];
+                Arrays.fill(coeffs2, 5);
+                ArrayEncoder.decodeMod3Sves(data2, 2, data.length, skipFirst, coeffs2);
+                assertArrayEquals(expected, coeffs2);
+                
+                // encoding the decoded coefficients restores the bits that were used
+                byte[] encoded = ArrayEncoder.encodeMod3Sves(coeffs, skipFirst);
+                assertEquals(ArrayEncoder.getMod3SvesLength(N), encoded.length);
+                byte[] padded = Arrays.copyOf(encoded, (encoded.length+2)/3*3);   // the decoder only reads whole groups of 3 bytes
+                assertArrayEquals(coeffs, ArrayEncoder.decodeMod3Sves(padded, N, skipFirst));
+                byte[] dst = new byte[encoded.length+3];
+                Arrays.fill(dst, (byte)-1);
+                assertEquals(encoded.length, ArrayEncoder.encodeMod3Sves(coeffs, skipFirst, dst, 3));
+                assertArrayEquals(encoded, Arrays.copyOfRange(dst, 3, dst.length));
+                ByteBuffer buf = ByteBuffer.allocateDirect(encoded.length);
+                ArrayEncoder.encodeMod3Sves(coeffs, skipFirst, buf);
+                buf.flip();
+                byte[] encoded2 = new byte[encoded.length];
+                buf.get(encoded2);
+                assertArrayEquals(encoded, encoded2);
+            }
+        
+        // (-1,-1) can't be encoded
+        int[] coeffs = new int[100];
+        coeffs[60] = -1;
+        coeffs[61] = -1;
+        try {
+            ArrayEncoder.encodeMod3Sves(coeffs, false);
+            fail();
+        }
+        catch (NtruException e) { }
+    }
+    
     @Test
     public void testEncodeDecodeMod3Tight() {
         int[] coeffs = PolynomialGeneratorForTesting.generateRandom(1000).coeffs;
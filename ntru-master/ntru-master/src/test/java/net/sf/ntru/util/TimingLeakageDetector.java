@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Looks for timing leaks the way dudect does (Reparaz, Balasch, Verbauwhede: "Dude, is my code constant time?").<br/>
+ * An operation is timed on inputs from two classes, typically one fixed input and random inputs, in random order.
+ * Welch's t-test then tells whether the two timing distributions have different means. Long measurements are
+ * mostly caused by interrupts or garbage collection, so the test is repeated on measurements cropped at several
+ * percentiles, and the largest <code>|t|</code> is reported.<br/>
+ * A constant-time operation should stay well below {@link #THRESHOLD}; a clear leak exceeds it by far even with
+ * a few thousand measurements.
+ */
+public class TimingLeakageDetector {
+    /** <code>|t|</code> values above this indicate a timing leak */
+    public static final double THRESHOLD = 10;
+    
+    private static final double[] PERCENTILES = new double[] {0.5, 0.75, 0.9, 0.95, 0.99};
+    private static final int BATCH_SIZE = 500;
+    
+    /** the operation under test */
+    public interface Target<T> {
+        
+        /**
+         * Creates an input. Called before timing starts.
+         * @param fixed whether to return the fixed input or a random one
+         * @return an input that is only passed to {@link #run(Object)} once, so it may be modified
+         */
+        T prepare(boolean fixed);
+        
+        /**
+         * Runs the operation.
+         * @param input an input returned by {@link #prepare(boolean)}
+         * @return any value derived from the result, so the JIT compiler cannot remove the operation
+         */
+        int run(T input);
+    }
+    
+    private Random rng;
+    /** keeps results alive */
+    private volatile int sink;
+    
+    public TimingLeakageDetector(Random rng) {
+        this.rng = rng;
+    }
+    
+    /**
+     * Times an operation on both input classes and returns the largest <code>|t|</code> value.
+     * The same number of runs is done before measuring to give the JIT compiler time to compile the operation.
+     * @param target the operation
+     * @param numMeasurements the number of runs to measure
+     * @return the largest <code>|t|</code> value over the cropped and uncropped measurements
+     */
+    public <T> double maxT(Target<T> target, int numMeasurements) {
+        measure(target, numMeasurements);   // warmup
+        
+        boolean[] fixed = new boolean[numMeasurements];
+        long[] times = new long[numMeasurements];
+        measure(target, fixed, times);
+        
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        double maxT = Math.abs(tStatistic(fixed, times, Long.MAX_VALUE));
+        for (double p: PERCENTILES) {
+            long limit = sorted[(int)(p*(numMeasurements-1))];
+            maxT = Math.max(maxT, Math.abs(tStatistic(fixed, times, limit)));
+        }
+        return maxT;
+    }
+    
+    private <T> void measure(Target<T> target, int numMeasurements) {
+        measure(target, new boolean[numMeasurements], new long[numMeasurements]);
+    }
+    
+    /** Fills <code>fixed</code> with random classes and <code>times</code> with the measured times in nanoseconds. */
+    private <T> void measure(Target<T> target, boolean[] fixed, long[] times) {
+        Object[] inputs = new Object[BATCH_SIZE];
+        int result = 0;
+        for (int start=0; start<times.length; start+=BATCH_SIZE) {
+            int end = Math.min(start+BATCH_SIZE, times.length);
+            for (int i=start; i<end; i++) {
+                fixed[i] = rng.nextBoolean();
+                inputs[i-start] = target.prepare(fixed[i]);
+            }
+            for (int i=start; i<end; i++) {
+                @SuppressWarnings("unchecked")
+                T input = (T)inputs[i-start];
+                long t0 = System.nanoTime();
+                result += target.run(input);
+                times[i] = System.nanoTime() - t0;
+            }
+        }
+        sink = result;
+    }
+    
+    /** Welch's t statistic for the measurements that don't exceed <code>limit</code> */
+    private static double tStatistic(boolean[] fixed, long[] times, long limit) {
+        // Welford's online algorithm for the mean and variance of each class
+        long[] n = new long[2];
+        double[] mean = new double[2];
+        double[] m2 = new double[2];
+        for (int i=0; i<times.length; i++) {
+            if (times[i] > limit)
+                continue;
+            int c = fixed[i] ? 0 : 1;
+            n[c]++;
+            double delta = times[i] - mean[c];
+            mean[c] += delta / n[c];
+            m2[c] += delta * (times[i]-mean[c]);
+        }
+        if (n[0]<2 || n[1]<2)
+            return 0;
+        double var0 = m2[0] / (n[0]-1);
+        double var1 = m2[1] / (n[1]-1);
+        double denominator = Math.sqrt(var0/n[0] + var1/n[1]);
+        return denominator==0 ? 0 : (mean[0]-mean[1]) / denominator;
+    }
+}
\ No newline at end of file
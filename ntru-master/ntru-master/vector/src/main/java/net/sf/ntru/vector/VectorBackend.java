@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.vector;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import net.sf.ntru.polynomial.PackedLongPolynomial;
+import net.sf.ntru.polynomial.PolynomialBackend;
+import net.sf.ntru.polynomial.ScalarBackend;
+import net.sf.ntru.polynomial.TernaryPolynomial;
+
+/**
+ * A {@link PolynomialBackend} that uses the JDK Vector API, which the JIT compiler translates to
+ * SSE, AVX2, AVX-512, or NEON instructions.<br/>
+ * The JVM must be started with <code>--add-modules jdk.incubator.vector</code>, otherwise this class
+ * cannot be loaded and the NTRU library falls back to {@link ScalarBackend}. The same happens if the
+ * CPU has no vector registers that hold at least four <code>int</code>s.<br/>
+ * Cases that don't vectorize well (<code>center0</code> and <code>modPositive</code> for moduli other than
+ * the ones used by the standard parameter sets, and multiplications of a {@link PackedLongPolynomial}) are
+ * delegated to {@link ScalarBackend}.
+ */
+public class VectorBackend implements PolynomialBackend {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int SHORT_LANES = SHORT_SPECIES.length();
+    
+    private ScalarBackend scalar;
+    
+    /**
+     * Constructs a new <code>VectorBackend</code>.
+     * @throws UnsupportedOperationException if the CPU has no usable vector registers
+     */
+    public VectorBackend() {
+        if (LANES < 4)
+            throw new UnsupportedOperationException("Vector registers too small: " + SPECIES);
+        scalar = new ScalarBackend();
+    }
+    
+    /**
+     * Multiplies by a ternary polynomial by summing rotated copies of <code>b</code>.<br/>
+     * <code>b</code> is written out twice in a row so every rotation is a contiguous slice, and each block of
+     * the result stays in a register until all rotations have been added.
+     */
+    @Override
+    public int[] multTernary(int[] b, int[] ones, int[] negOnes) {
+        int N = b.length;
+        int[] b2 = new int[2*N];
+        System.arraycopy(b, 0, b2, 0, N);
+        System.arraycopy(b, 0, b2, N, N);
+        
+        int[] c = new int[N];
+        int upper = SPECIES.loopBound(N);
+        int k = 0;
+        for (; k<upper; k+=LANES) {
+            IntVector sum = IntVector.zero(SPECIES);
+            for (int i: ones)
+                sum = sum.add(IntVector.fromArray(SPECIES, b2, N-i+k));
+            for (int i: negOnes)
+                sum = sum.sub(IntVector.fromArray(SPECIES, b2, N-i+k));
+            sum.intoArray(c, k);
+        }
+        for (; k<N; k++) {
+            int sum = 0;
+            for (int i: ones)
+                sum += b2[N-i+k];
+            for (int i: negOnes)
+                sum -= b2[N-i+k];
+            c[k] = sum;
+        }
+        return c;
+    }
+    
+    /**
+     * Uses 16-bit coefficients if the modulus is a power of 2 no greater than <code>2^16</code>,
+     * because the low bits of a product don't depend on the high bits of the factors.
+     */
+    @Override
+    public int[] multTernary(int[] b, int[] ones, int[] negOnes, int modulus) {
+        if (!fitsShort(modulus)) {
+            int[] c = multTernary(b, ones, negOnes);
+            modPositive(c, modulus);
+            return c;
+        }
+        return toInt(multTernary(toShort(b), ones, negOnes), modulus);
+    }
+    
+    /**
+     * Adds every rotation of <code>b</code> multiplied by the corresponding coefficient of <code>t</code>,
+     * so the loads and the arithmetic are the same for every <code>t</code>.
+     */
+    @Override
+    public int[] multDenseTernary(int[] b, int[] t, int modulus) {
+        int N = b.length;
+        if (!fitsShort(modulus)) {
+            int[] b2 = new int[2*N];
+            System.arraycopy(b, 0, b2, 0, N);
+            System.arraycopy(b, 0, b2, N, N);
+            
+            int[] c = new int[N];
+            int upper = SPECIES.loopBound(N);
+            int k = 0;
+            for (; k<upper; k+=LANES) {
+                IntVector sum = IntVector.zero(SPECIES);
+                for (int i=0; i<N; i++)
+                    sum = sum.add(IntVector.fromArray(SPECIES, b2, N-i+k).mul(t[i]));
+                sum.intoArray(c, k);
+            }
+            for (; k<N; k++) {
+                int sum = 0;
+                for (int i=0; i<N; i++)
+                    sum += t[i] * b2[N-i+k];
+                c[k] = sum;
+            }
+            modPositive(c, modulus);
+            return c;
+        }
+        
+        short[] b2 = new short[2*N];
+        for (int i=0; i<N; i++)
+            b2[i] = b2[i+N] = (short)b[i];
+        short[] c = new short[N];
+        int upper = SHORT_SPECIES.loopBound(N);
+        int k = 0;
+        for (; k<upper; k+=SHORT_LANES) {
+            ShortVector sum = ShortVector.zero(SHORT_SPECIES);
+            for (int i=0; i<N; i++)
+                sum = sum.add(ShortVector.fromArray(SHORT_SPECIES, b2, N-i+k).mul((short)t[i]));
+            sum.intoArray(c, k);
+        }
+        for (; k<N; k++) {
+            short sum = 0;
+            for (int i=0; i<N; i++)
+                sum += t[i] * b2[N-i+k];
+            c[k] = sum;
+        }
+        return toInt(c, modulus);
+    }
+    
+    /** Packed polynomials are multiplied by the {@link ScalarBackend}. */
+    @Override
+    public PackedLongPolynomial multDenseTernary(PackedLongPolynomial b, int[] t) {
+        return scalar.multDenseTernary(b, t);
+    }
+    
+    /** Keeps the intermediate products in 16-bit coefficients if the modulus allows it. */
+    @Override
+    public int[] multProductForm(int[] b, TernaryPolynomial f1, TernaryPolynomial f2, TernaryPolynomial f3, int modulus) {
+        if (!fitsShort(modulus)) {
+            int[] c = multTernary(b, f1.getOnes(), f1.getNegOnes(), modulus);
+            c = multTernary(c, f2.getOnes(), f2.getNegOnes(), modulus);
+            add(c, multTernary(b, f3.getOnes(), f3.getNegOnes(), modulus));
+            modPositive(c, modulus);
+            return c;
+        }
+        
+        short[] bShort = toShort(b);
+        short[] c = multTernary(bShort, f1.getOnes(), f1.getNegOnes());
+        c = multTernary(c, f2.getOnes(), f2.getNegOnes());
+        short[] c3 = multTernary(bShort, f3.getOnes(), f3.getNegOnes());
+        int upper = SHORT_SPECIES.loopBound(c.length);
+        int i = 0;
+        for (; i<upper; i+=SHORT_LANES)
+            ShortVector.fromArray(SHORT_SPECIES, c, i).add(ShortVector.fromArray(SHORT_SPECIES, c3, i)).intoArray(c, i);
+        for (; i<c.length; i++)
+            c[i] += c3[i];
+        return toInt(c, modulus);
+    }
+    
+    private static boolean fitsShort(int modulus) {
+        return modulus>0 && modulus<=(1<<16) && (modulus&(modulus-1))==0;
+    }
+    
+    private static short[] toShort(int[] a) {
+        short[] s = new short[a.length];
+        for (int i=0; i<a.length; i++)
+            s[i] = (short)a[i];
+        return s;
+    }
+    
+    /** converts to <code>int</code>s between <code>0</code> and <code>modulus-1</code> */
+    private static int[] toInt(short[] s, int modulus) {
+        int mask = modulus - 1;
+        int[] a = new int[s.length];
+        for (int i=0; i<s.length; i++)
+            a[i] = s[i] & mask;
+        return a;
+    }
+    
+    /**
+     * Same as {@link #multTernary(int[], int[], int[])} but with twice as many coefficients per vector.
+     * The coefficients wrap around mod <code>2^16</code>.
+     */
+    private short[] multTernary(short[] b, int[] ones, int[] negOnes) {
+        int N = b.length;
+        short[] b2 = new short[2*N];
+        System.arraycopy(b, 0, b2, 0, N);
+        System.arraycopy(b, 0, b2, N, N);
+        
+        short[] c = new short[N];
+        int upper = SHORT_SPECIES.loopBound(N);
+        int k = 0;
+        for (; k<upper; k+=SHORT_LANES) {
+            ShortVector sum = ShortVector.zero(SHORT_SPECIES);
+            for (int i: ones)
+                sum = sum.add(ShortVector.fromArray(SHORT_SPECIES, b2, N-i+k));
+            for (int i: negOnes)
+                sum = sum.sub(ShortVector.fromArray(SHORT_SPECIES, b2, N-i+k));
+            sum.intoArray(c, k);
+        }
+        for (; k<N; k++) {
+            short sum = 0;
+            for (int i: ones)
+                sum += b2[N-i+k];
+            for (int i: negOnes)
+                sum -= b2[N-i+k];
+            c[k] = sum;
+        }
+        return c;
+    }
+    
+    @Override
+    public void add(int[] a, int[] b) {
+        int upper = SPECIES.loopBound(b.length);
+        int i = 0;
+        for (; i<upper; i+=LANES)
+            IntVector.fromArray(SPECIES, a, i).add(IntVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        for (; i<b.length; i++)
+            a[i] += b[i];
+    }
+    
+    /**
+     * Reduces mod 3 without division by repeatedly adding the high bits to the low bits, which works because
+     * <code>2^16</code>, <code>2^8</code>, <code>2^4</code>, and <code>2^2</code> are all <code>1 mod 3</code>.
+     * Any <code>int</code> ends up in <code>[-1, 4]</code> after the last step.
+     */
+    @Override
+    public void mod3(int[] a) {
+        int upper = SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i<upper; i+=LANES)
+            mod3(IntVector.fromArray(SPECIES, a, i)).intoArray(a, i);
+        for (; i<a.length; i++)
+            a[i] = mod3(a[i]);
+    }
+    
+    private static IntVector mod3(IntVector c) {
+        c = c.lanewise(VectorOperators.ASHR, 16).add(c.and(0xFFFF));
+        c = c.lanewise(VectorOperators.ASHR, 8).add(c.and(0xFF));
+        c = c.lanewise(VectorOperators.ASHR, 4).add(c.and(0xF));
+        c = c.lanewise(VectorOperators.ASHR, 2).add(c.and(3));
+        c = c.lanewise(VectorOperators.ASHR, 2).add(c.and(3));
+        c = c.lanewise(VectorOperators.ASHR, 2).add(c.and(3));
+        return c.sub(3, c.compare(VectorOperators.GT, 1));
+    }
+    
+    /** Scalar version of {@link #mod3(int[])} for the coefficients that don't fill a whole vector */
+    private static int mod3(int c) {
+        c = (c>>16) + (c&0xFFFF);
+        c = (c>>8) + (c&0xFF);
+        c = (c>>4) + (c&0xF);
+        c = (c>>2) + (c&3);
+        c = (c>>2) + (c&3);
+        c = (c>>2) + (c&3);
+        return c - (3 & ((1-c)>>31));
+    }
+    
+    @Override
+    public void modPositive(int[] a, int modulus) {
+        // for a power of two, the remainder is just the low bits
+        if (modulus<=0 || (modulus&(modulus-1))!=0) {
+            scalar.modPositive(a, modulus);
+            return;
+        }
+        
+        int mask = modulus - 1;
+        int upper = SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i<upper; i+=LANES)
+            IntVector.fromArray(SPECIES, a, i).and(mask).intoArray(a, i);
+        for (; i<a.length; i++)
+            a[i] &= mask;
+    }
+    
+    @Override
+    public void center0(int[] a, int q) {
+        if (q == 3)
+            mod3(a);
+        else if (q == 2048) {
+            // sign-extend the low 11 bits
+            int upper = SPECIES.loopBound(a.length);
+            int i = 0;
+            for (; i<upper; i+=LANES)
+                IntVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.LSHL, 21).lanewise(VectorOperators.ASHR, 21).intoArray(a, i);
+            for (; i<a.length; i++)
+                a[i] = (a[i]<<21) >> 21;
+        }
+        else
+            scalar.center0(a, q);
+    }
+    
+    @Override
+    public int[] center0Mod3(int[] a, int q) {
+        if (q<=3 || (q&(q-1))!=0)
+            return scalar.center0Mod3(a, q);
+        
+        // sign-extend the low log2(q) bits, reduce mod 3, and count
+        int shift = Integer.numberOfLeadingZeros(q) + 1;
+        int numNegOnes = 0;
+        int numOnes = 0;
+        int upper = SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i<upper; i+=LANES) {
+            IntVector c = IntVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.LSHL, shift).lanewise(VectorOperators.ASHR, shift);
+            c = mod3(c);
+            c.intoArray(a, i);
+            numNegOnes += c.compare(VectorOperators.LT, 0).trueCount();
+            numOnes += c.compare(VectorOperators.GT, 0).trueCount();
+        }
+        for (; i<a.length; i++) {
+            int c = mod3((a[i]<<shift) >> shift);
+            a[i] = c;
+            numNegOnes += c >>> 31;
+            numOnes += (-c) >>> 31;
+        }
+        return new int[] {numNegOnes, a.length-numNegOnes-numOnes, numOnes};
+    }
+}
\ No newline at end of file
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2011, Tim Buktu
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sf.ntru.vector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.ntru.encrypt.EncryptionKeyPair;
+import net.sf.ntru.encrypt.EncryptionParameters;
+import net.sf.ntru.encrypt.NtruEncrypt;
+import net.sf.ntru.polynomial.IntegerPolynomial;
+import net.sf.ntru.polynomial.ScalarBackend;
+import net.sf.ntru.polynomial.SparseTernaryPolynomial;
+
+import org.junit.Test;
+
+public class VectorBackendTest {
+    private static final int[] LENGTHS = new int[] {1, 7, 16, 439, 1499};
+    
+    private VectorBackend vector = new VectorBackend();
+    private ScalarBackend scalar = new ScalarBackend();
+    private Random rng = new Random();
+    
+    @Test
+    public void testServiceLoader() {
+        assertTrue(IntegerPolynomial.getBackend() instanceof VectorBackend);
+    }
+    
+    @Test
+    public void testMultTernary() {
+        for (int N: LENGTHS) {
+            int[] b = randomCoeffs(N, 2048);
+            int[] indices = randomIndices(N, 2*(N/3));
+            int[] ones = Arrays.copyOf(indices, N/3);
+            int[] negOnes = Arrays.copyOfRange(indices, N/3, indices.length);
+            assertArrayEquals(scalar.multTernary(b, ones, negOnes), vector.multTernary(b, ones, negOnes));
+            
+            // coefficients wrap around like in the scalar code
+            b = randomCoeffs(N, 0);
+            assertArrayEquals(scalar.multTernary(b, ones, negOnes), vector.multTernary(b, ones, negOnes));
+        }
+    }
+    
+    @Test
+    public void testMultTernaryMod() {
+        for (int N: LENGTHS)
+            for (int modulus: new int[] {2048, 256, 1<<16, 1<<20, 1000}) {
+                int[] b = randomCoeffs(N, 0);
+                int[] indices = randomIndices(N, 2*(N/3));
+                int[] ones = Arrays.copyOf(indices, N/3);
+                int[] negOnes = Arrays.copyOfRange(indices, N/3, indices.length);
+                assertArrayEquals(scalar.multTernary(b, ones, negOnes, modulus), vector.multTernary(b, ones, negOnes, modulus));
+            }
+    }
+    
+    @Test
+    public void testMultDenseTernary() {
+        for (int N: LENGTHS)
+            for (int modulus: new int[] {2048, 1<<16, 1<<20, 1000}) {
+                int[] b = randomCoeffs(N, 0);
+                int[] t = new int[N];
+                for (int i=0; i<N; i++)
+                    t[i] = rng.nextInt(3) - 1;
+                assertArrayEquals(scalar.multDenseTernary(b, t, modulus), vector.multDenseTernary(b, t, modulus));
+            }
+    }
+    
+    @Test
+    public void testMultProductForm() {
+        for (int N: LENGTHS)
+            for (int modulus: new int[] {2048, 1<<16, 1<<20, 1000}) {
+                int[] b = randomCoeffs(N, 0);
+                SparseTernaryPolynomial f1 = SparseTernaryPolynomial.generateRandom(N, N/10, N/10, rng);
+                SparseTernaryPolynomial f2 = SparseTernaryPolynomial.generateRandom(N, N/10, N/10, rng);
+                SparseTernaryPolynomial f3 = SparseTernaryPolynomial.generateRandom(N, N/8, N/8, rng);
+                assertArrayEquals(scalar.multProductForm(b, f1, f2, f3, modulus), vector.multProductForm(b, f1, f2, f3, modulus));
+            }
+    }
+    
+    @Test
+    public void testAdd() {
+        for (int N: LENGTHS) {
+            int[] a1 = randomCoeffs(N, 0);
+            int[] a2 = a1.clone();
+            int[] b = randomCoeffs(N-N/2, 0);
+            scalar.add(a1, b);
+            vector.add(a2, b);
+            assertArrayEquals(a1, a2);
+        }
+    }
+    
+    @Test
+    public void testMod3() {
+        for (int N: LENGTHS)
+            for (int range: new int[] {3, 2048, 0}) {
+                int[] a1 = randomCoeffs(N, range);
+                int[] a2 = a1.clone();
+                scalar.mod3(a1);
+                vector.mod3(a2);
+                assertArrayEquals(a1, a2);
+            }
+        
+        int[] a1 = new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE+1, -65537, -65536, -2, -1, 0, 1, 2, 65535, 65536, Integer.MAX_VALUE-1, Integer.MAX_VALUE};
+        int[] a2 = a1.clone();
+        scalar.mod3(a1);
+        vector.mod3(a2);
+        assertArrayEquals(a1, a2);
+    }
+    
+    @Test
+    public void testModPositive() {
+        for (int N: LENGTHS)
+            for (int modulus: new int[] {2048, 256, 4096, 3, 1000}) {
+                int[] a1 = randomCoeffs(N, 0);
+                int[] a2 = a1.clone();
+                scalar.modPositive(a1, modulus);
+                vector.modPositive(a2, modulus);
+                assertArrayEquals(a1, a2);
+            }
+    }
+    
+    @Test
+    public void testCenter0() {
+        for (int N: LENGTHS)
+            for (int q: new int[] {2048, 3, 1000}) {
+                int[] a1 = randomCoeffs(N, 4*q);
+                int[] a2 = a1.clone();
+                scalar.center0(a1, q);
+                vector.center0(a2, q);
+                assertArrayEquals(a1, a2);
+            }
+    }
+    
+    @Test
+    public void testCenter0Mod3() {
+        for (int N: LENGTHS)
+            for (int q: new int[] {2048, 256, 3, 1000}) {
+                int[] a1 = randomCoeffs(N, q==1000 ? 4*q : 0);
+                int[] a2 = a1.clone();
+                int[] counts1 = scalar.center0Mod3(a1, q);
+                int[] counts2 = vector.center0Mod3(a2, q);
+                assertArrayEquals(a1, a2);
+                assertArrayEquals(counts1, counts2);
+            }
+    }
+    
+    @Test
+    public void testEncryptDecrypt() {
+        EncryptionParameters[] paramSets = new EncryptionParameters[] {EncryptionParameters.EES1087EP2, EncryptionParameters.APR2011_439_FAST};
+        byte[] plainText = "test message".getBytes();
+        for (EncryptionParameters params: paramSets) {
+            NtruEncrypt ntru = new NtruEncrypt(params);
+            EncryptionKeyPair kp = ntru.generateKeyPair();
+            byte[] encrypted = ntru.encrypt(plainText, kp.getPublic());
+            assertArrayEquals(plainText, ntru.decrypt(encrypted, kp));
+        }
+    }
+    
+    /**
+     * Returns random coefficients in <code>(-range, range)</code>.
+     * @param N number of coefficients
+     * @param range the upper bound for the absolute value, or <code>0</code> for any <code>int</code>
+     * @return an array of length <code>N</code>
+     */
+    private int[] randomCoeffs(int N, int range) {
+        int[] coeffs = new int[N];
+        for (int i=0; i<N; i++)
+            coeffs[i] = range==0 ? rng.nextInt() : rng.nextInt(2*range-1) - range + 1;
+        return coeffs;
+    }
+    
+    /** Returns <code>num</code> distinct random indices less than <code>N</code> */
+    private int[] randomIndices(int N, int num) {
+        boolean[] used = new boolean[N];
+        int[] indices = new int[num];
+        int i = 0;
+        while (i < num) {
+            int idx = rng.nextInt(N);
+            if (!used[idx]) {
+                used[idx] = true;
+                indices[i++] = idx;
+            }
+        }
+        return indices;
+    }
+}
\ No newline at end of file